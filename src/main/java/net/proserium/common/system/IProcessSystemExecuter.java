@@ -6,8 +6,14 @@
  */
 package net.proserium.common.system;
 
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Defines the process system executer
+ * Defines the process system executer. Only the execution of a command has to be implemented, the other methods have
+ * default implementations on top of {@link #executeCommand(String, String...)} which copy the output through the java
+ * process.
  *
  * @author Patrick Meier
  */
@@ -27,9 +33,89 @@ public interface IProcessSystemExecuter {
    *
    * @param path the path to execute the command or null
    * @param numberOfSecondsToWait the number of seconds to wait. If the value less or equals 0, it waits until
-   *        it is executed
+   *        it is executed. If the process has not ended in time, the process and all its descendants are terminated
+   *        gracefully (SIGTERM) and killed (SIGKILL) after a grace period
    * @param commandList the command list
    * @return the process
    */
   Process executeCommand(String path, int numberOfSecondsToWait, String... commandList);
+
+
+  /**
+   * Execute a new command and write its standard and error output directly into a file. The output does not pass the
+   * java process, the returned process has no output to read. The default implementation copies the output into the
+   * file.
+   *
+   * @param path the path to execute the command or null
+   * @param outputFile the file the output is appended to
+   * @param commandList the command list
+   * @return the process
+   */
+  default Process executeCommandToFile(String path, File outputFile, String... commandList) {
+    return ProcessSystemExecuterDefaults.getInstance().executeCommandToFile(this, path, outputFile, commandList);
+  }
+
+
+  /**
+   * Execute a new command asynchronously. The standard and error output are drained concurrently while the process runs,
+   * so the process never blocks on a full pipe buffer.
+   *
+   * @param path the path to execute the command or null
+   * @param commandList the command list
+   * @return the future which is completed with the process result as soon as the process has ended
+   */
+  default CompletableFuture<ProcessResult> executeAsync(String path, String... commandList) {
+    return executeAsync(path, 0, commandList);
+  }
+
+
+  /**
+   * Execute a new command asynchronously with a deadline.
+   *
+   * @param path the path to execute the command or null
+   * @param numberOfSecondsToWait the number of seconds until the process is terminated. If the value less or equals 0, it
+   *        waits until it is executed. If the process has not ended in time, the process and all its descendants are
+   *        terminated gracefully (SIGTERM) and killed (SIGKILL) after a grace period
+   * @param commandList the command list
+   * @return the future which is completed with the process result as soon as the process has ended
+   * @see ProcessResult#isTimedOut()
+   */
+  default CompletableFuture<ProcessResult> executeAsync(String path, int numberOfSecondsToWait, String... commandList) {
+    return ProcessSystemExecuterDefaults.getInstance().executeAsync(this, path, numberOfSecondsToWait, commandList);
+  }
+
+
+  /**
+   * Execute a batch of commands. On unix like systems all commands run one after another in a single shell, so the process
+   * creation and the startup of the shell is paid once per batch. The output of the commands is delimited by unique
+   * markers. Each command runs in a sub shell with its standard input from <code>/dev/null</code>, so it can not affect the
+   * following commands. The timings of the results are the timings of the whole batch. The default implementation
+   * executes the commands one after another.
+   *
+   * @param path the path to execute the commands or null
+   * @param commandList the commands, each one is a command list as in {@link #executeCommand(String, String...)}
+   * @return the results in the order of the commands. A command which could not be executed has the exit value -1 and the
+   *         error as error output.
+   */
+  default List<ProcessResult> executeBatch(String path, List<String[]> commandList) {
+    return ProcessSystemExecuterDefaults.getInstance().executeBatch(this, path, commandList);
+  }
+
+
+  /**
+   * Execute a pipeline of commands. The standard output of each stage is connected to the standard input of the next
+   * stage by an operating system pipe, the data flows from process to process and is not copied through the java process.
+   * The standard input of the first stage is empty. The default implementation copies the output of each stage into the
+   * next stage.
+   *
+   * @param path the path to execute the commands or null
+   * @param outputFile the file the output of the last stage is appended to or null to capture it in the result of the last
+   *        stage
+   * @param commandList the stages, each one is a command list as in {@link #executeCommand(String, String...)}
+   * @return the results with the exit code and the error output of each stage in the order of the stages or null in case
+   *         the pipeline could not be executed
+   */
+  default List<ProcessResult> executePipeline(String path, File outputFile, List<String[]> commandList) {
+    return ProcessSystemExecuterDefaults.getInstance().executePipeline(this, path, outputFile, commandList);
+  }
 }
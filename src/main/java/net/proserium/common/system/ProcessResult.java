@@ -0,0 +1,279 @@
+/*
+ * ProcessResult.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Defines the result of an executed process: the exit value, the captured output and the timings.
+ *
+ * @author Patrick Meier
+ */
+public class ProcessResult implements Serializable {
+  /** serialVersionUID */
+  private static final long serialVersionUID = -1720464017384524916L;
+  private List<String> commandList;
+  private int exitValue;
+  private String output;
+  private String errorOutput;
+  private long startTime;
+  private long endTime;
+  private boolean timedOut;
+  private ProcessStatistics statistics;
+
+
+  /**
+   * Constructor
+   *
+   * @param commandList the executed command list
+   * @param exitValue the exit value of the process
+   * @param output the captured standard output
+   * @param errorOutput the captured error output
+   * @param startTime the start time in milliseconds
+   * @param endTime the end time in milliseconds
+   * @param timedOut true if the process has been terminated since it exceeded its deadline
+   */
+  public ProcessResult(List<String> commandList, int exitValue, String output, String errorOutput, long startTime, long endTime, boolean timedOut) {
+    this(commandList, exitValue, output, errorOutput, startTime, endTime, timedOut, null);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param commandList the executed command list
+   * @param exitValue the exit value of the process
+   * @param output the captured standard output
+   * @param errorOutput the captured error output
+   * @param startTime the start time in milliseconds
+   * @param endTime the end time in milliseconds
+   * @param timedOut true if the process has been terminated since it exceeded its deadline
+   * @param statistics the resource usage of the process tree or null
+   */
+  public ProcessResult(List<String> commandList, int exitValue, String output, String errorOutput, long startTime, long endTime, boolean timedOut, ProcessStatistics statistics) {
+    this.commandList = new ArrayList<String>();
+    if (commandList != null) {
+      this.commandList.addAll(commandList);
+    }
+
+    this.exitValue = exitValue;
+    this.output = output;
+    this.errorOutput = errorOutput;
+    this.startTime = startTime;
+    this.endTime = endTime;
+    this.timedOut = timedOut;
+    this.statistics = statistics;
+  }
+
+
+  /**
+   * Get the executed command list
+   *
+   * @return the command list
+   */
+  public List<String> getCommandList() {
+    return commandList;
+  }
+
+
+  /**
+   * Get the exit value of the process
+   *
+   * @return the exit value
+   */
+  public int getExitValue() {
+    return exitValue;
+  }
+
+
+  /**
+   * Get the captured standard output
+   *
+   * @return the output
+   */
+  public String getOutput() {
+    return output;
+  }
+
+
+  /**
+   * Get the captured error output
+   *
+   * @return the error output
+   */
+  public String getErrorOutput() {
+    return errorOutput;
+  }
+
+
+  /**
+   * Get the start time in milliseconds
+   *
+   * @return the start time
+   */
+  public long getStartTime() {
+    return startTime;
+  }
+
+
+  /**
+   * Get the end time in milliseconds
+   *
+   * @return the end time
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+
+  /**
+   * Get the duration in milliseconds
+   *
+   * @return the duration
+   */
+  public long getDuration() {
+    return endTime - startTime;
+  }
+
+
+  /**
+   * Defines if the process has been terminated since it exceeded its deadline
+   *
+   * @return true if the process has timed out
+   */
+  public boolean isTimedOut() {
+    return timedOut;
+  }
+
+
+  /**
+   * Get the resource usage of the process tree
+   *
+   * @return the statistics or null if they are not supported
+   */
+  public ProcessStatistics getStatistics() {
+    return statistics;
+  }
+
+
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+
+    result = prime * result + commandList.hashCode();
+    result = prime * result + exitValue;
+
+    result = prime * result;
+    if (output != null) {
+      result += output.hashCode();
+    }
+
+    result = prime * result;
+    if (errorOutput != null) {
+      result += errorOutput.hashCode();
+    }
+
+    result = prime * result + (int) (startTime ^ (startTime >>> 32));
+    result = prime * result + (int) (endTime ^ (endTime >>> 32));
+
+    result = prime * result;
+    if (timedOut) {
+      result += 1231;
+    } else {
+      result += 1237;
+    }
+
+    result = prime * result;
+    if (statistics != null) {
+      result += statistics.hashCode();
+    }
+
+    return result;
+  }
+
+
+  /**
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null) {
+      return false;
+    }
+
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+
+    ProcessResult other = (ProcessResult) obj;
+    if (!commandList.equals(other.commandList)) {
+      return false;
+    }
+
+    if (exitValue != other.exitValue) {
+      return false;
+    }
+
+    if (output == null) {
+      if (other.output != null) {
+        return false;
+      }
+    } else if (!output.equals(other.output)) {
+      return false;
+    }
+
+    if (errorOutput == null) {
+      if (other.errorOutput != null) {
+        return false;
+      }
+    } else if (!errorOutput.equals(other.errorOutput)) {
+      return false;
+    }
+
+    if (startTime != other.startTime) {
+      return false;
+    }
+
+    if (endTime != other.endTime) {
+      return false;
+    }
+
+    if (timedOut != other.timedOut) {
+      return false;
+    }
+
+    if (statistics == null) {
+      if (other.statistics != null) {
+        return false;
+      }
+    } else if (!statistics.equals(other.statistics)) {
+      return false;
+    }
+
+    return true;
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "ProcessResult [commandList=" + commandList + ", exitValue=" + exitValue + ", duration=" + getDuration() + "ms, timedOut=" + timedOut + "]";
+  }
+}
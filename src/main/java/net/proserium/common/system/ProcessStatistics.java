@@ -0,0 +1,197 @@
+/*
+ * ProcessStatistics.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system;
+
+import java.io.Serializable;
+
+
+/**
+ * Defines the resource usage of a process tree. The figures are sampled while the processes run, processes which live
+ * shorter than the sample interval may be missing.
+ *
+ * @author Patrick Meier
+ */
+public class ProcessStatistics implements Serializable {
+  /** serialVersionUID */
+  private static final long serialVersionUID = 4702233186651205742L;
+  private int numberOfProcesses;
+  private long userCpuTime;
+  private long systemCpuTime;
+  private long peakResidentSetSize;
+  private long readBytes;
+  private long writeBytes;
+  private long voluntaryContextSwitches;
+  private long involuntaryContextSwitches;
+
+
+  /**
+   * Constructor
+   *
+   * @param numberOfProcesses the number of observed processes of the tree
+   * @param userCpuTime the user cpu time in milliseconds
+   * @param systemCpuTime the system cpu time in milliseconds
+   * @param peakResidentSetSize the peak resident set size in bytes
+   * @param readBytes the number of bytes read from the storage layer
+   * @param writeBytes the number of bytes written to the storage layer
+   * @param voluntaryContextSwitches the number of voluntary context switches
+   * @param involuntaryContextSwitches the number of involuntary context switches
+   */
+  public ProcessStatistics(int numberOfProcesses, long userCpuTime, long systemCpuTime, long peakResidentSetSize, long readBytes, long writeBytes, long voluntaryContextSwitches,
+                           long involuntaryContextSwitches) {
+    this.numberOfProcesses = numberOfProcesses;
+    this.userCpuTime = userCpuTime;
+    this.systemCpuTime = systemCpuTime;
+    this.peakResidentSetSize = peakResidentSetSize;
+    this.readBytes = readBytes;
+    this.writeBytes = writeBytes;
+    this.voluntaryContextSwitches = voluntaryContextSwitches;
+    this.involuntaryContextSwitches = involuntaryContextSwitches;
+  }
+
+
+  /**
+   * Get the number of observed processes of the tree
+   *
+   * @return the number of processes
+   */
+  public int getNumberOfProcesses() {
+    return numberOfProcesses;
+  }
+
+
+  /**
+   * Get the user cpu time in milliseconds
+   *
+   * @return the user cpu time
+   */
+  public long getUserCpuTime() {
+    return userCpuTime;
+  }
+
+
+  /**
+   * Get the system cpu time in milliseconds
+   *
+   * @return the system cpu time
+   */
+  public long getSystemCpuTime() {
+    return systemCpuTime;
+  }
+
+
+  /**
+   * Get the total cpu time in milliseconds
+   *
+   * @return the cpu time
+   */
+  public long getCpuTime() {
+    return userCpuTime + systemCpuTime;
+  }
+
+
+  /**
+   * Get the peak resident set size in bytes
+   *
+   * @return the peak resident set size
+   */
+  public long getPeakResidentSetSize() {
+    return peakResidentSetSize;
+  }
+
+
+  /**
+   * Get the number of bytes read from the storage layer
+   *
+   * @return the read bytes
+   */
+  public long getReadBytes() {
+    return readBytes;
+  }
+
+
+  /**
+   * Get the number of bytes written to the storage layer
+   *
+   * @return the written bytes
+   */
+  public long getWriteBytes() {
+    return writeBytes;
+  }
+
+
+  /**
+   * Get the number of voluntary context switches
+   *
+   * @return the voluntary context switches
+   */
+  public long getVoluntaryContextSwitches() {
+    return voluntaryContextSwitches;
+  }
+
+
+  /**
+   * Get the number of involuntary context switches
+   *
+   * @return the involuntary context switches
+   */
+  public long getInvoluntaryContextSwitches() {
+    return involuntaryContextSwitches;
+  }
+
+
+  /**
+   * @see java.lang.Object#hashCode()
+   */
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + numberOfProcesses;
+    result = prime * result + (int) (userCpuTime ^ (userCpuTime >>> 32));
+    result = prime * result + (int) (systemCpuTime ^ (systemCpuTime >>> 32));
+    result = prime * result + (int) (peakResidentSetSize ^ (peakResidentSetSize >>> 32));
+    result = prime * result + (int) (readBytes ^ (readBytes >>> 32));
+    result = prime * result + (int) (writeBytes ^ (writeBytes >>> 32));
+    result = prime * result + (int) (voluntaryContextSwitches ^ (voluntaryContextSwitches >>> 32));
+    result = prime * result + (int) (involuntaryContextSwitches ^ (involuntaryContextSwitches >>> 32));
+    return result;
+  }
+
+
+  /**
+   * @see java.lang.Object#equals(java.lang.Object)
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+
+    if (obj == null) {
+      return false;
+    }
+
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+
+    ProcessStatistics other = (ProcessStatistics) obj;
+    return numberOfProcesses == other.numberOfProcesses && userCpuTime == other.userCpuTime && systemCpuTime == other.systemCpuTime && peakResidentSetSize == other.peakResidentSetSize
+           && readBytes == other.readBytes && writeBytes == other.writeBytes && voluntaryContextSwitches == other.voluntaryContextSwitches
+           && involuntaryContextSwitches == other.involuntaryContextSwitches;
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "ProcessStatistics [numberOfProcesses=" + numberOfProcesses + ", userCpuTime=" + userCpuTime + "ms, systemCpuTime=" + systemCpuTime + "ms, peakResidentSetSize=" + peakResidentSetSize
+           + ", readBytes=" + readBytes + ", writeBytes=" + writeBytes + ", voluntaryContextSwitches=" + voluntaryContextSwitches + ", involuntaryContextSwitches=" + involuntaryContextSwitches + "]";
+  }
+}
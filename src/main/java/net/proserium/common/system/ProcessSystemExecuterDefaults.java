@@ -0,0 +1,328 @@
+/*
+ * ProcessSystemExecuterDefaults.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import jptools.logger.Logger;
+import net.proserium.common.util.StreamUtil;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Implements the default methods of the {@link IProcessSystemExecuter} on top of
+ * {@link IProcessSystemExecuter#executeCommand(String, String...)}, so an implementation which only provides the
+ * execution of a command supports the other methods as well. The standard input of the commands is empty, the output is
+ * copied by the threads of this class.
+ *
+ * @author Patrick Meier
+ */
+final class ProcessSystemExecuterDefaults {
+  private static final Logger log = Logger.getLogger(ProcessSystemExecuterDefaults.class);
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final ProcessSystemExecuterDefaults INSTANCE = new ProcessSystemExecuterDefaults();
+  }
+
+  private ExecutorService executorService;
+
+
+  /**
+   * Constructor
+   */
+  private ProcessSystemExecuterDefaults() {
+    executorService = Executors.newCachedThreadPool(ThreadUtil.getInstance().createDaemonThreadFactory(ProcessSystemExecuterDefaults.class.getName()));
+  }
+
+
+  /**
+   * Get the instance
+   *
+   * @return the instance
+   */
+  public static ProcessSystemExecuterDefaults getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Execute a command and append its output to a file
+   *
+   * @param processSystemExecuter the process system executer
+   * @param path the path to execute the command or null
+   * @param outputFile the file the output is appended to
+   * @param commandList the command list
+   * @return the process or null if it could not be started
+   * @see IProcessSystemExecuter#executeCommandToFile(String, File, String...)
+   */
+  public Process executeCommandToFile(IProcessSystemExecuter processSystemExecuter, String path, File outputFile, String... commandList) {
+    final OutputStream outputStream;
+    try {
+      outputStream = new FileOutputStream(outputFile, true);
+    } catch (IOException e) {
+      log.warn("Could not open output file " + outputFile + ": " + e.getMessage());
+      return null;
+    }
+
+    Process process = processSystemExecuter.executeCommand(path, commandList);
+    if (process == null) {
+      close(outputStream);
+      return null;
+    }
+
+    close(process.getOutputStream());
+    closeWhenComplete(CompletableFuture.allOf(copy(process.getInputStream(), outputStream), copy(process.getErrorStream(), outputStream)), outputStream);
+    return process;
+  }
+
+
+  /**
+   * Execute a command asynchronously
+   *
+   * @param processSystemExecuter the process system executer
+   * @param path the path to execute the command or null
+   * @param numberOfSecondsToWait the number of seconds until the process is killed or less or equals 0 to wait until it
+   *        has ended
+   * @param commandList the command list
+   * @return the future of the process result
+   * @see IProcessSystemExecuter#executeAsync(String, int, String...)
+   */
+  public CompletableFuture<ProcessResult> executeAsync(IProcessSystemExecuter processSystemExecuter, String path, final int numberOfSecondsToWait, String... commandList) {
+    final List<String> commandParameterList = Arrays.asList(commandList);
+    final long startTime = System.currentTimeMillis();
+    final Process process = processSystemExecuter.executeCommand(path, commandList);
+    if (process == null) {
+      CompletableFuture<ProcessResult> result = new CompletableFuture<ProcessResult>();
+      result.completeExceptionally(new IllegalStateException("Could not execute command " + commandParameterList + "!"));
+      return result;
+    }
+
+    close(process.getOutputStream());
+    final CompletableFuture<String> output = read(process.getInputStream());
+    final CompletableFuture<String> errorOutput = read(process.getErrorStream());
+    return CompletableFuture.supplyAsync(new Supplier<ProcessResult>() {
+      @Override
+      public ProcessResult get() {
+        try {
+          boolean timedOut = false;
+          if (numberOfSecondsToWait > 0 && !process.waitFor(numberOfSecondsToWait, TimeUnit.SECONDS)) {
+            timedOut = true;
+            process.destroyForcibly();
+          }
+
+          process.waitFor();
+          return new ProcessResult(commandParameterList, process.exitValue(), output.get(), errorOutput.get(), startTime, System.currentTimeMillis(), timedOut);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CompletionException(e);
+        } catch (ExecutionException e) {
+          throw new CompletionException(e.getCause());
+        }
+      }
+    }, executorService);
+  }
+
+
+  /**
+   * Execute the commands of a batch one after another. A command which could not be executed gets a result with the exit
+   * value -1 and the error as error output.
+   *
+   * @param processSystemExecuter the process system executer
+   * @param path the path to execute the commands or null
+   * @param commandList the commands
+   * @return the results in the order of the commands
+   * @see IProcessSystemExecuter#executeBatch(String, List)
+   */
+  public List<ProcessResult> executeBatch(IProcessSystemExecuter processSystemExecuter, String path, List<String[]> commandList) {
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    for (String[] command : commandList) {
+      long startTime = System.currentTimeMillis();
+      try {
+        result.add(processSystemExecuter.executeAsync(path, command).get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        result.add(new ProcessResult(Arrays.asList(command), -1, "", "Interrupted", startTime, System.currentTimeMillis(), false));
+      } catch (ExecutionException e) {
+        result.add(new ProcessResult(Arrays.asList(command), -1, "", String.valueOf(e.getCause().getMessage()), startTime, System.currentTimeMillis(), false));
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Execute a pipeline. The output of each stage is copied into the standard input of the next stage.
+   *
+   * @param processSystemExecuter the process system executer
+   * @param path the path to execute the commands or null
+   * @param outputFile the file the output of the last stage is appended to or null
+   * @param commandList the stages
+   * @return the results in the order of the stages or null if the pipeline could not be executed
+   * @see IProcessSystemExecuter#executePipeline(String, File, List)
+   */
+  public List<ProcessResult> executePipeline(IProcessSystemExecuter processSystemExecuter, String path, File outputFile, List<String[]> commandList) {
+    long startTime = System.currentTimeMillis();
+    List<Process> processList = new ArrayList<Process>();
+    List<CompletableFuture<String>> outputList = new ArrayList<CompletableFuture<String>>();
+    List<CompletableFuture<String>> errorOutputList = new ArrayList<CompletableFuture<String>>();
+    OutputStream outputStream = null;
+    try {
+      if (outputFile != null) {
+        outputStream = new FileOutputStream(outputFile, true);
+      }
+
+      for (String[] command : commandList) {
+        Process process = processSystemExecuter.executeCommand(path, command);
+        if (process == null) {
+          throw new IOException("Could not execute command " + Arrays.asList(command) + "!");
+        }
+
+        if (processList.isEmpty()) {
+          close(process.getOutputStream());
+        } else {
+          // the output of the previous stage is the input of this stage
+          closeWhenComplete(copy(processList.get(processList.size() - 1).getInputStream(), process.getOutputStream()), process.getOutputStream());
+        }
+
+        processList.add(process);
+        errorOutputList.add(read(process.getErrorStream()));
+      }
+
+      Process lastProcess = processList.get(processList.size() - 1);
+      for (int i = 0; i < processList.size() - 1; i++) {
+        outputList.add(CompletableFuture.completedFuture(""));
+      }
+
+      if (outputStream != null) {
+        copy(lastProcess.getInputStream(), outputStream).get();
+        outputList.add(CompletableFuture.completedFuture(""));
+      } else {
+        outputList.add(read(lastProcess.getInputStream()));
+      }
+
+      List<ProcessResult> result = new ArrayList<ProcessResult>();
+      for (int i = 0; i < processList.size(); i++) {
+        Process process = processList.get(i);
+        process.waitFor();
+        result.add(new ProcessResult(Arrays.asList(commandList.get(i)), process.exitValue(), outputList.get(i).get(), errorOutputList.get(i).get(), startTime, System.currentTimeMillis(), false));
+      }
+
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing pipeline of " + commandList.size() + " commands.");
+    } catch (Exception e) {
+      log.warn("Error occured while executing pipeline of " + commandList.size() + " commands: " + e.getMessage(), e);
+    } finally {
+      if (outputStream != null) {
+        close(outputStream);
+      }
+    }
+
+    for (Process process : processList) {
+      process.destroyForcibly();
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Read a stream until its end
+   *
+   * @param inputStream the input stream
+   * @return the future of the content
+   */
+  private CompletableFuture<String> read(final InputStream inputStream) {
+    return CompletableFuture.supplyAsync(new Supplier<String>() {
+      @Override
+      public String get() {
+        try {
+          return StreamUtil.getInstance().convertStreamToStr(inputStream);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }
+    }, executorService);
+  }
+
+
+  /**
+   * Copy a stream into an output stream until its end
+   *
+   * @param inputStream the input stream
+   * @param outputStream the output stream, it is not closed
+   * @return the future which is completed at the end of the input stream
+   */
+  private CompletableFuture<Void> copy(final InputStream inputStream, final OutputStream outputStream) {
+    return CompletableFuture.runAsync(new Runnable() {
+      @Override
+      public void run() {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+          int length;
+          while ((length = inputStream.read(buffer)) >= 0) {
+            synchronized (outputStream) {
+              outputStream.write(buffer, 0, length);
+            }
+          }
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }
+    }, executorService);
+  }
+
+
+  /**
+   * Close a stream as soon as a future has been completed
+   *
+   * @param future the future
+   * @param outputStream the stream to close
+   */
+  private void closeWhenComplete(CompletableFuture<?> future, final OutputStream outputStream) {
+    future.whenComplete(new BiConsumer<Object, Throwable>() {
+      @Override
+      public void accept(Object result, Throwable throwable) {
+        close(outputStream);
+      }
+    });
+  }
+
+
+  /**
+   * Close a stream
+   *
+   * @param outputStream the stream to close
+   */
+  private void close(OutputStream outputStream) {
+    try {
+      outputStream.close();
+    } catch (Exception e) {
+      // NOP
+    }
+  }
+}
@@ -8,7 +8,9 @@ package net.proserium.common.system;
 
 import jptools.logger.Logger;
 import net.proserium.common.system.impl.QueueSystemExecuterImpl;
+import net.proserium.common.system.impl.process.CachingProcessSystemExecuterImpl;
 import net.proserium.common.system.impl.process.LinuxProcessSystemCommandExecuterImpl;
+import net.proserium.common.system.impl.process.ShellWorkerPoolProcessSystemExecuterImpl;
 import net.proserium.common.system.impl.process.UnixProcessSystemCommandExecuterImpl;
 import net.proserium.common.system.impl.process.WindowsProcessSystemCommandExecuterImpl;
 
@@ -20,6 +22,8 @@ import net.proserium.common.system.impl.process.WindowsProcessSystemCommandExecu
  */
 public final class SystemExecuterFactory {
   private static final Logger log = Logger.getLogger(SystemExecuterFactory.class);
+  private IProcessSystemExecuter shellWorkerPoolProcessSystemExecuter;
+  private CachingProcessSystemExecuterImpl cachingProcessSystemExecuter;
 
   /**
    * Private class, the only instance of the singelton which will be created by accessing the holder class.
@@ -66,6 +70,43 @@ public final class SystemExecuterFactory {
   }
 
 
+  /**
+   * Gets the shared process system executer which is backed by a pool of long living shells. It avoids the process
+   * creation for short commands. On windows a common process system executer is created.
+   *
+   * @return the process system executer
+   */
+  public synchronized IProcessSystemExecuter createShellWorkerPoolProcessSystemExecuter() {
+    if (System.getProperty("os.name").toLowerCase().startsWith("windows")) {
+      return createProcessSystemExecuter();
+    }
+
+    if (shellWorkerPoolProcessSystemExecuter == null) {
+      log.debug("Create " + ShellWorkerPoolProcessSystemExecuterImpl.class.getName() + " as executer.");
+      shellWorkerPoolProcessSystemExecuter = new ShellWorkerPoolProcessSystemExecuterImpl();
+    }
+
+    return shellWorkerPoolProcessSystemExecuter;
+  }
+
+
+  /**
+   * Gets the shared process system executer which caches the results of idempotent commands for a time to live, e.g. of
+   * probes like <code>uname -a</code> which are executed by different callers. Commands with side effects must not be
+   * executed by it.
+   *
+   * @return the caching process system executer
+   */
+  public synchronized CachingProcessSystemExecuterImpl createCachingProcessSystemExecuter() {
+    if (cachingProcessSystemExecuter == null) {
+      log.debug("Create " + CachingProcessSystemExecuterImpl.class.getName() + " as executer.");
+      cachingProcessSystemExecuter = new CachingProcessSystemExecuterImpl(createProcessSystemExecuter());
+    }
+
+    return cachingProcessSystemExecuter;
+  }
+
+
   /**
    * Creates a queue system executer
    *
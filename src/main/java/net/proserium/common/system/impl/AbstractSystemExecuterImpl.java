@@ -6,6 +6,11 @@
  */
 package net.proserium.common.system.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.proserium.common.system.ProcessResult;
+
 
 /**
  * Base class for the system executer
@@ -13,4 +18,28 @@ package net.proserium.common.system.impl;
  * @author Patrick Meier
  */
 public abstract class AbstractSystemExecuterImpl {
+
+  /**
+   * Complete the results of a batch which could not be executed completely. Each command without a result gets a result
+   * with the exit value -1 and the error as error output.
+   *
+   * @param commandList the commands of the batch
+   * @param resultList the results of the commands which have been executed or null
+   * @param error the error
+   * @param startTime the start time of the batch in milliseconds
+   * @return the results in the order of the commands
+   */
+  protected List<ProcessResult> completeBatchResults(List<String[]> commandList, List<ProcessResult> resultList, Throwable error, long startTime) {
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    if (resultList != null) {
+      result.addAll(resultList);
+    }
+
+    long endTime = System.currentTimeMillis();
+    for (int i = result.size(); i < commandList.size(); i++) {
+      result.add(new ProcessResult(Arrays.asList(commandList.get(i)), -1, "", String.valueOf(error), startTime, endTime, false));
+    }
+
+    return result;
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * AdaptiveReadBuffer.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Implements a read buffer which is reused for all reads of an execution. The buffer is doubled as soon as a read fills
+ * it completely and halved after a number of consecutive reads which used less than a quarter of it, so the size follows
+ * the output rate of the process between the minimum and the maximum size.
+ *
+ * @author Patrick Meier
+ */
+public class AdaptiveReadBuffer {
+  /** The default minimum buffer size */
+  public static final int DEFAULT_MINIMUM_SIZE = 100;
+
+  /** The default maximum buffer size */
+  public static final int DEFAULT_MAXIMUM_SIZE = 64 * 1024;
+
+  private static final int SHRINK_THRESHOLD = 32;
+  private int minimumSize;
+  private int maximumSize;
+  private byte[] buffer;
+  private int length;
+  private int numberOfSmallReads;
+
+
+  /**
+   * Constructor
+   */
+  public AdaptiveReadBuffer() {
+    this(DEFAULT_MINIMUM_SIZE, DEFAULT_MAXIMUM_SIZE);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param minimumSize the minimum size
+   * @param maximumSize the maximum size
+   */
+  public AdaptiveReadBuffer(int minimumSize, int maximumSize) {
+    this.minimumSize = Math.max(minimumSize, 1);
+    this.maximumSize = Math.max(maximumSize, this.minimumSize);
+    this.buffer = new byte[this.minimumSize];
+    this.length = 0;
+    this.numberOfSmallReads = 0;
+  }
+
+
+  /**
+   * Read into the buffer. The read blocks until data is available.
+   *
+   * @param inputStream the input stream
+   * @return the number of bytes read or -1 if the stream has ended
+   * @throws IOException in case of an error
+   */
+  public int read(InputStream inputStream) throws IOException {
+    length = inputStream.read(buffer, 0, buffer.length);
+    if (length < 0) {
+      length = 0;
+      return -1;
+    }
+
+    adapt();
+    return length;
+  }
+
+
+  /**
+   * Get the buffer, the content is valid until the next read
+   *
+   * @return the buffer
+   */
+  public byte[] getBuffer() {
+    return buffer;
+  }
+
+
+  /**
+   * Get the number of bytes of the last read
+   *
+   * @return the length
+   */
+  public int getLength() {
+    return length;
+  }
+
+
+  /**
+   * Get the current capacity of the buffer
+   *
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return buffer.length;
+  }
+
+
+  /**
+   * Adapt the buffer size to the last read. The content of the last read is kept.
+   */
+  protected void adapt() {
+    if (length == buffer.length && buffer.length < maximumSize) {
+      resize(Math.min(buffer.length * 2, maximumSize));
+      numberOfSmallReads = 0;
+    } else if (length < buffer.length / 4 && buffer.length > minimumSize) {
+      numberOfSmallReads++;
+      if (numberOfSmallReads >= SHRINK_THRESHOLD) {
+        resize(Math.max(buffer.length / 2, Math.max(minimumSize, length)));
+        numberOfSmallReads = 0;
+      }
+    } else {
+      numberOfSmallReads = 0;
+    }
+  }
+
+
+  /**
+   * Resize the buffer
+   *
+   * @param size the new size
+   */
+  private void resize(int size) {
+    byte[] newBuffer = new byte[size];
+    System.arraycopy(buffer, 0, newBuffer, 0, length);
+    buffer = newBuffer;
+  }
+}
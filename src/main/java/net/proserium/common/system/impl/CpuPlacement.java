@@ -0,0 +1,220 @@
+/*
+ * CpuPlacement.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import jptools.logger.Logger;
+
+
+/**
+ * Assigns cpus to executions. The available cpus are read from <code>/sys/devices/system/cpu/online</code>, cpus which
+ * are reserved, e.g. for pinned threads of the JVM, can be excluded. The number of executions per cpu is tracked, so
+ * concurrent executions are spread across the cpus.
+ *
+ * @author Patrick Meier
+ */
+public final class CpuPlacement {
+  private static final Logger log = Logger.getLogger(CpuPlacement.class);
+  private static final String ONLINE_CPU_FILE = "/sys/devices/system/cpu/online";
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final CpuPlacement INSTANCE = new CpuPlacement(readOnlineCpus());
+  }
+
+  private Map<Integer, Integer> cpuLoadMap;
+  private int nextIndex;
+
+
+  /**
+   * Constructor
+   *
+   * @param cpuList the available cpus
+   */
+  public CpuPlacement(List<Integer> cpuList) {
+    cpuLoadMap = new LinkedHashMap<Integer, Integer>();
+    for (Integer cpu : cpuList) {
+      cpuLoadMap.put(cpu, 0);
+    }
+
+    nextIndex = 0;
+  }
+
+
+  /**
+   * Get the shared instance with the online cpus of the system
+   *
+   * @return the instance
+   */
+  public static CpuPlacement getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Get the available cpus
+   *
+   * @return the cpus
+   */
+  public synchronized List<Integer> getCpus() {
+    return new ArrayList<Integer>(cpuLoadMap.keySet());
+  }
+
+
+  /**
+   * Exclude cpus from the placement, e.g. since threads of the JVM are pinned to them
+   *
+   * @param cpuList the cpus to exclude
+   */
+  public synchronized void excludeCpus(Collection<Integer> cpuList) {
+    for (Integer cpu : cpuList) {
+      if (cpuLoadMap.size() > 1) {
+        cpuLoadMap.remove(cpu);
+      }
+    }
+
+    nextIndex = 0;
+  }
+
+
+  /**
+   * Get the number of executions which run on a cpu
+   *
+   * @param cpu the cpu
+   * @return the number of executions
+   */
+  public synchronized int getLoad(int cpu) {
+    Integer load = cpuLoadMap.get(cpu);
+    if (load == null) {
+      return 0;
+    }
+
+    return load;
+  }
+
+
+  /**
+   * Assign cpus to an execution. The cpus have to be released when the execution has ended.
+   *
+   * @param policy the placement policy
+   * @param numberOfCpus the number of cpus
+   * @return the assigned cpus
+   */
+  public synchronized List<Integer> acquire(CpuPlacementPolicy policy, int numberOfCpus) {
+    List<Integer> cpuList = new ArrayList<Integer>(cpuLoadMap.keySet());
+    int count = Math.max(1, Math.min(numberOfCpus, cpuList.size()));
+
+    List<Integer> result = new ArrayList<Integer>();
+    if (policy == CpuPlacementPolicy.LEAST_LOADED) {
+      // stable sort, so cpus with the same load are taken in the order of the round robin
+      List<Integer> candidateList = new ArrayList<Integer>();
+      for (int i = 0; i < cpuList.size(); i++) {
+        candidateList.add(cpuList.get((nextIndex + i) % cpuList.size()));
+      }
+
+      Collections.sort(candidateList, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return Integer.compare(cpuLoadMap.get(a), cpuLoadMap.get(b));
+        }
+      });
+      result.addAll(candidateList.subList(0, count));
+      nextIndex = (cpuList.indexOf(result.get(result.size() - 1)) + 1) % cpuList.size();
+    } else {
+      for (int i = 0; i < count; i++) {
+        result.add(cpuList.get(nextIndex));
+        nextIndex = (nextIndex + 1) % cpuList.size();
+      }
+    }
+
+    for (Integer cpu : result) {
+      cpuLoadMap.put(cpu, cpuLoadMap.get(cpu) + 1);
+    }
+
+    Collections.sort(result);
+    return result;
+  }
+
+
+  /**
+   * Release the cpus of an ended execution
+   *
+   * @param cpuList the cpus
+   */
+  public synchronized void release(List<Integer> cpuList) {
+    for (Integer cpu : cpuList) {
+      Integer load = cpuLoadMap.get(cpu);
+      if (load != null && load > 0) {
+        cpuLoadMap.put(cpu, load - 1);
+      }
+    }
+  }
+
+
+  /**
+   * Read the online cpus of the system
+   *
+   * @return the cpus
+   */
+  static List<Integer> readOnlineCpus() {
+    try {
+      List<Integer> result = parseCpuList(new String(Files.readAllBytes(Paths.get(ONLINE_CPU_FILE)), StandardCharsets.US_ASCII));
+      if (!result.isEmpty()) {
+        return result;
+      }
+    } catch (IOException | RuntimeException e) {
+      log.debug("Could not read online cpus: " + e.getMessage());
+    }
+
+    List<Integer> result = new ArrayList<Integer>();
+    for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+      result.add(i);
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Parse a cpu list like <code>0-3,8,10-11</code>
+   *
+   * @param cpuList the cpu list
+   * @return the cpus
+   */
+  static List<Integer> parseCpuList(String cpuList) {
+    List<Integer> result = new ArrayList<Integer>();
+    for (String range : cpuList.trim().split(",")) {
+      if (range.isEmpty()) {
+        continue;
+      }
+
+      int index = range.indexOf('-');
+      if (index < 0) {
+        result.add(Integer.parseInt(range.trim()));
+      } else {
+        int end = Integer.parseInt(range.substring(index + 1).trim());
+        for (int cpu = Integer.parseInt(range.substring(0, index).trim()); cpu <= end; cpu++) {
+          result.add(cpu);
+        }
+      }
+    }
+
+    return result;
+  }
+}
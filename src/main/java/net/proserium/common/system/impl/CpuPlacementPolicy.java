@@ -0,0 +1,21 @@
+/*
+ * CpuPlacementPolicy.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+
+/**
+ * Defines how the {@link CpuPlacement} distributes the executions across the available cpus.
+ *
+ * @author Patrick Meier
+ */
+public enum CpuPlacementPolicy {
+  /** The cpus are assigned one after another */
+  ROUND_ROBIN,
+
+  /** The cpus with the fewest running executions are assigned */
+  LEAST_LOADED
+}
@@ -0,0 +1,302 @@
+/*
+ * ExecutionScheduler.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import jptools.logger.Logger;
+import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Implements a bounded scheduler for the executions of the {@link QueueSystemExecuterImpl}. Not more than the maximum
+ * number of concurrent executions run at once and not more than the maximum number per {@link NodeKey}. Further
+ * executions wait in a priority queue until a running execution has ended. The executions run on a shared pool of
+ * platform threads which is bounded by the maximum number of concurrent executions or, with
+ * {@link ExecutionThreadMode#VIRTUAL}, on virtual threads if the runtime supports them.
+ *
+ * @author Patrick Meier
+ */
+public final class ExecutionScheduler {
+  private static final Logger log = Logger.getLogger(ExecutionScheduler.class);
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final ExecutionScheduler INSTANCE = new ExecutionScheduler(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()), 4);
+  }
+
+  private PriorityQueue<ScheduledExecution> waitingQueue;
+  private Map<NodeKey, Integer> runningExecutionMap;
+  private int numberOfRunningExecutions;
+  private int maximumConcurrentExecutions;
+  private int maximumConcurrentExecutionsPerNode;
+  private long sequence;
+  private ExecutionThreadMode executionThreadMode;
+  private ThreadPoolExecutor platformExecutorService;
+  private ExecutorService executorService;
+
+
+  /**
+   * Constructor
+   *
+   * @param maximumConcurrentExecutions the maximum number of concurrent executions
+   * @param maximumConcurrentExecutionsPerNode the maximum number of concurrent executions per node
+   */
+  public ExecutionScheduler(int maximumConcurrentExecutions, int maximumConcurrentExecutionsPerNode) {
+    this.waitingQueue = new PriorityQueue<ScheduledExecution>();
+    this.runningExecutionMap = new HashMap<NodeKey, Integer>();
+    this.numberOfRunningExecutions = 0;
+    this.maximumConcurrentExecutions = Math.max(maximumConcurrentExecutions, 1);
+    this.maximumConcurrentExecutionsPerNode = Math.max(maximumConcurrentExecutionsPerNode, 1);
+    this.sequence = 0;
+    this.executionThreadMode = ExecutionThreadMode.PLATFORM;
+    this.platformExecutorService = new ThreadPoolExecutor(this.maximumConcurrentExecutions, this.maximumConcurrentExecutions, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                                                          ThreadUtil.getInstance().createDaemonThreadFactory(ExecutionScheduler.class.getName()));
+    this.platformExecutorService.allowCoreThreadTimeOut(true);
+    this.executorService = platformExecutorService;
+  }
+
+
+  /**
+   * Get the shared scheduler instance
+   *
+   * @return the instance
+   */
+  public static ExecutionScheduler getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Submit an execution
+   *
+   * @param scheduledExecution the execution
+   */
+  public void submit(ScheduledExecution scheduledExecution) {
+    synchronized (this) {
+      scheduledExecution.setSequence(sequence++);
+      waitingQueue.add(scheduledExecution);
+    }
+
+    dispatch();
+  }
+
+
+  /**
+   * Get the maximum number of concurrent executions
+   *
+   * @return the maximum number of concurrent executions
+   */
+  public synchronized int getMaximumConcurrentExecutions() {
+    return maximumConcurrentExecutions;
+  }
+
+
+  /**
+   * Set the maximum number of concurrent executions
+   *
+   * @param maximumConcurrentExecutions the maximum number of concurrent executions
+   */
+  public void setMaximumConcurrentExecutions(int maximumConcurrentExecutions) {
+    synchronized (this) {
+      this.maximumConcurrentExecutions = Math.max(maximumConcurrentExecutions, 1);
+
+      // the core size must never exceed the maximum size
+      if (this.maximumConcurrentExecutions > platformExecutorService.getMaximumPoolSize()) {
+        platformExecutorService.setMaximumPoolSize(this.maximumConcurrentExecutions);
+        platformExecutorService.setCorePoolSize(this.maximumConcurrentExecutions);
+      } else {
+        platformExecutorService.setCorePoolSize(this.maximumConcurrentExecutions);
+        platformExecutorService.setMaximumPoolSize(this.maximumConcurrentExecutions);
+      }
+    }
+
+    dispatch();
+  }
+
+
+  /**
+   * Get the maximum number of concurrent executions per node
+   *
+   * @return the maximum number of concurrent executions per node
+   */
+  public synchronized int getMaximumConcurrentExecutionsPerNode() {
+    return maximumConcurrentExecutionsPerNode;
+  }
+
+
+  /**
+   * Set the maximum number of concurrent executions per node
+   *
+   * @param maximumConcurrentExecutionsPerNode the maximum number of concurrent executions per node
+   */
+  public void setMaximumConcurrentExecutionsPerNode(int maximumConcurrentExecutionsPerNode) {
+    synchronized (this) {
+      this.maximumConcurrentExecutionsPerNode = Math.max(maximumConcurrentExecutionsPerNode, 1);
+    }
+
+    dispatch();
+  }
+
+
+  /**
+   * Get the thread mode of the executions
+   *
+   * @return the thread mode
+   */
+  public synchronized ExecutionThreadMode getExecutionThreadMode() {
+    return executionThreadMode;
+  }
+
+
+  /**
+   * Set the thread mode of the executions. The running executions are not affected. If virtual threads are not supported
+   * by the runtime, the executions still run on the shared pool of platform threads.
+   *
+   * @param executionThreadMode the thread mode
+   */
+  public synchronized void setExecutionThreadMode(ExecutionThreadMode executionThreadMode) {
+    if (executionThreadMode == null || executionThreadMode == this.executionThreadMode) {
+      return;
+    }
+
+    ExecutorService newExecutorService = platformExecutorService;
+    if (executionThreadMode == ExecutionThreadMode.VIRTUAL) {
+      newExecutorService = ThreadUtil.getInstance().createVirtualThreadPerTaskExecutor(ExecutionScheduler.class.getName());
+      if (newExecutorService == null) {
+        log.info("Virtual threads are not supported by the runtime, use the shared thread pool.");
+        newExecutorService = platformExecutorService;
+      }
+    }
+
+    if (executorService != platformExecutorService) {
+      // let the running virtual threads end, no further execution is accepted
+      executorService.shutdown();
+    }
+
+    this.executionThreadMode = executionThreadMode;
+    this.executorService = newExecutorService;
+  }
+
+
+  /**
+   * Get the number of running executions
+   *
+   * @return the number of running executions
+   */
+  public synchronized int getNumberOfRunningExecutions() {
+    return numberOfRunningExecutions;
+  }
+
+
+  /**
+   * Get the number of waiting executions
+   *
+   * @return the number of waiting executions
+   */
+  public synchronized int getNumberOfWaitingExecutions() {
+    return waitingQueue.size();
+  }
+
+
+  /**
+   * Start the waiting executions as long as the limits allow it
+   */
+  protected void dispatch() {
+    List<ScheduledExecution> startList = new ArrayList<ScheduledExecution>();
+
+    synchronized (this) {
+      List<ScheduledExecution> blockedList = new ArrayList<ScheduledExecution>();
+      ScheduledExecution scheduledExecution;
+      while (numberOfRunningExecutions < maximumConcurrentExecutions && (scheduledExecution = waitingQueue.poll()) != null) {
+        NodeKey nodeKey = scheduledExecution.getNodeKey();
+        Integer numberOfNodeExecutions = runningExecutionMap.get(nodeKey);
+        if (numberOfNodeExecutions == null) {
+          numberOfNodeExecutions = 0;
+        }
+
+        if (numberOfNodeExecutions >= maximumConcurrentExecutionsPerNode) {
+          blockedList.add(scheduledExecution);
+          continue;
+        }
+
+        runningExecutionMap.put(nodeKey, numberOfNodeExecutions + 1);
+        numberOfRunningExecutions++;
+        startList.add(scheduledExecution);
+      }
+
+      waitingQueue.addAll(blockedList);
+    }
+
+    for (ScheduledExecution scheduledExecution : startList) {
+      start(scheduledExecution);
+    }
+  }
+
+
+  /**
+   * Start an execution
+   *
+   * @param scheduledExecution the execution
+   */
+  protected void start(final ScheduledExecution scheduledExecution) {
+    final long queueWaitTime = scheduledExecution.getWaitingTime();
+
+    Runnable runnable = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          scheduledExecution.execute(queueWaitTime);
+        } finally {
+          ended(scheduledExecution);
+        }
+      }
+    };
+
+    try {
+      // synchronized that the executor service is not shut down by a change of the thread mode in between
+      synchronized (this) {
+        executorService.execute(runnable);
+      }
+    } catch (Exception e) {
+      log.error("Could not start execution:" + e.getMessage(), e);
+      ended(scheduledExecution);
+    }
+  }
+
+
+  /**
+   * Mark an execution as ended and start the next waiting executions
+   *
+   * @param scheduledExecution the execution
+   */
+  protected void ended(ScheduledExecution scheduledExecution) {
+    synchronized (this) {
+      NodeKey nodeKey = scheduledExecution.getNodeKey();
+      Integer numberOfNodeExecutions = runningExecutionMap.get(nodeKey);
+      if (numberOfNodeExecutions == null || numberOfNodeExecutions <= 1) {
+        runningExecutionMap.remove(nodeKey);
+      } else {
+        runningExecutionMap.put(nodeKey, numberOfNodeExecutions - 1);
+      }
+
+      numberOfRunningExecutions--;
+    }
+
+    dispatch();
+  }
+}
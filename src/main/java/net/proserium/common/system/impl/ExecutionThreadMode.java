@@ -0,0 +1,21 @@
+/*
+ * ExecutionThreadMode.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+
+/**
+ * Defines on which threads the {@link ExecutionScheduler} runs the executions and their output watchers.
+ *
+ * @author Patrick Meier
+ */
+public enum ExecutionThreadMode {
+  /** A shared pool of platform threads which is bounded by the maximum number of concurrent executions */
+  PLATFORM,
+
+  /** A virtual thread per execution if the runtime supports it (java 21), otherwise {@link #PLATFORM} */
+  VIRTUAL
+}
@@ -6,20 +6,32 @@
  */
 package net.proserium.common.system.impl;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import jptools.logger.LogInformationHolder;
 import jptools.logger.Logger;
 import jptools.logger.SimpleLogInformation;
 import jptools.util.RandomGenerator;
 import net.proserium.common.environment.SystemEnvironmentFactory;
 import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.system.IProcessSystemExecuter;
 import net.proserium.common.system.IQueueSystemExecuter;
+import net.proserium.common.system.ProcessStatistics;
 import net.proserium.common.system.SystemExecuterFactory;
+import net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl;
+import net.proserium.common.system.impl.process.LinuxProcessSystemCommandExecuterImpl;
+import net.proserium.common.system.impl.process.ProcessResourceLimits;
+import net.proserium.common.system.impl.process.ProcessStatisticsCollector;
+import net.proserium.common.system.impl.process.ProcessStatisticsSampler;
 import net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage;
+import net.proserium.common.system.impl.storage.ProcessOutputDecoder;
 import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.util.ProcessUtil;
 
 
 /**
@@ -31,20 +43,171 @@ public class QueueSystemExecuterImpl extends AbstractSystemExecuterImpl implemen
   private static final Logger log = Logger.getLogger(QueueSystemExecuterImpl.class);
   private static final String SLASH = "/";
   private static final String CONTROL_SH = "control.sh";
+  private static final String EMPTY = "";
+
+  /** The default priority of an execution */
+  public static final int DEFAULT_PRIORITY = 0;
 
   private String consoleEncoding;
   private int bufferSize;
-  private long sleepPollTime;
+  private boolean lineFraming;
+  private boolean outputFileRedirect;
+  private ProcessResourceLimits resourceLimits;
+  private CpuPlacementPolicy cpuPlacementPolicy;
+  private int numberOfCpusPerExecution;
+  private CpuPlacement cpuPlacement;
+  private ExecutionScheduler executionScheduler;
 
 
   /**
    * Constructor
    */
   public QueueSystemExecuterImpl() {
+    this(ExecutionScheduler.getInstance());
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param executionScheduler the scheduler which bounds the concurrent executions
+   */
+  public QueueSystemExecuterImpl(ExecutionScheduler executionScheduler) {
     // StandardCharsets.UTF_8.name() > JDK 7
     consoleEncoding = "UTF-8";
     bufferSize = 100; // 100 byte buffer size
-    sleepPollTime = 200;
+    lineFraming = false;
+    outputFileRedirect = false;
+    resourceLimits = null;
+    cpuPlacementPolicy = null;
+    numberOfCpusPerExecution = 1;
+    cpuPlacement = CpuPlacement.getInstance();
+    this.executionScheduler = executionScheduler;
+  }
+
+
+  /**
+   * Get the execution scheduler
+   *
+   * @return the execution scheduler
+   */
+  public ExecutionScheduler getExecutionScheduler() {
+    return executionScheduler;
+  }
+
+
+  /**
+   * Check if the output is added line by line to the progress storage
+   *
+   * @return true if line framing is enabled
+   */
+  public boolean isLineFraming() {
+    return lineFraming;
+  }
+
+
+  /**
+   * Defines if the output is added line by line to the progress storage. Otherwise each read is added as soon as it has
+   * been decoded.
+   *
+   * @param lineFraming true to add complete lines only
+   */
+  public void setLineFraming(boolean lineFraming) {
+    this.lineFraming = lineFraming;
+  }
+
+
+  /**
+   * Check if the output of the executions is written directly into files
+   *
+   * @return true if the output is redirected into files
+   */
+  public boolean isOutputFileRedirect() {
+    return outputFileRedirect;
+  }
+
+
+  /**
+   * Defines if the output of the executions is written by the process directly into a file in the log path. The progress
+   * storage follows the file when the progress is read, so the output does not pass the heap until it is read.
+   *
+   * @param outputFileRedirect true to redirect the output into files
+   */
+  public void setOutputFileRedirect(boolean outputFileRedirect) {
+    this.outputFileRedirect = outputFileRedirect;
+  }
+
+
+  /**
+   * Get the default resource limits of the executions
+   *
+   * @return the resource limits or null
+   */
+  public ProcessResourceLimits getResourceLimits() {
+    return resourceLimits;
+  }
+
+
+  /**
+   * Set the default resource limits of the executions, e.g. to run maintenance jobs with a low cpu and io priority. They
+   * are applied if the executions run on linux and no resource limits are passed to the start of an execution.
+   *
+   * @param resourceLimits the resource limits or null
+   */
+  public void setResourceLimits(ProcessResourceLimits resourceLimits) {
+    this.resourceLimits = resourceLimits;
+  }
+
+
+  /**
+   * Get the cpu placement policy
+   *
+   * @return the cpu placement policy or null if the executions are not pinned
+   */
+  public CpuPlacementPolicy getCpuPlacementPolicy() {
+    return cpuPlacementPolicy;
+  }
+
+
+  /**
+   * Set the cpu placement policy. If a policy is set, each execution is pinned to its own cpus, so concurrent executions
+   * do not compete for the same cores. The cpus are assigned by the {@link CpuPlacement}, which is shared by all
+   * executers. The affinity is applied if the executions run on linux.
+   *
+   * @param cpuPlacementPolicy the cpu placement policy or null to run the executions on all cpus
+   */
+  public void setCpuPlacementPolicy(CpuPlacementPolicy cpuPlacementPolicy) {
+    this.cpuPlacementPolicy = cpuPlacementPolicy;
+  }
+
+
+  /**
+   * Get the number of cpus an execution is pinned to
+   *
+   * @return the number of cpus
+   */
+  public int getNumberOfCpusPerExecution() {
+    return numberOfCpusPerExecution;
+  }
+
+
+  /**
+   * Set the number of cpus an execution is pinned to
+   *
+   * @param numberOfCpusPerExecution the number of cpus
+   */
+  public void setNumberOfCpusPerExecution(int numberOfCpusPerExecution) {
+    this.numberOfCpusPerExecution = Math.max(1, numberOfCpusPerExecution);
+  }
+
+
+  /**
+   * Get the cpu placement
+   *
+   * @return the cpu placement
+   */
+  public CpuPlacement getCpuPlacement() {
+    return cpuPlacement;
   }
 
 
@@ -59,7 +222,43 @@ public class QueueSystemExecuterImpl extends AbstractSystemExecuterImpl implemen
   public SystemExecuterProgressKey startExecution(ISystemExecuterProgressStorage systemExecuterProgressStorage,
                                                   NodeKey nodeKey,
                                                   String parameter) {
-    return startExecution(systemExecuterProgressStorage, nodeKey.getHostname(), nodeKey.getEnvironmentType(), nodeKey.getName(), parameter);
+    return startExecution(systemExecuterProgressStorage, nodeKey, parameter, DEFAULT_PRIORITY);
+  }
+
+
+  /**
+   * Starts the exceution
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param nodeKey the node key
+   * @param parameter the parameter
+   * @param priority the priority, a higher value is started first
+   * @return the system executer progress key
+   */
+  public SystemExecuterProgressKey startExecution(ISystemExecuterProgressStorage systemExecuterProgressStorage,
+                                                  NodeKey nodeKey,
+                                                  String parameter,
+                                                  int priority) {
+    return startExecution(systemExecuterProgressStorage, nodeKey, parameter, priority, resourceLimits);
+  }
+
+
+  /**
+   * Starts the exceution
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param nodeKey the node key
+   * @param parameter the parameter
+   * @param priority the priority, a higher value is started first
+   * @param resourceLimits the resource limits of this execution or null to run it without limits
+   * @return the system executer progress key
+   */
+  public SystemExecuterProgressKey startExecution(ISystemExecuterProgressStorage systemExecuterProgressStorage,
+                                                  NodeKey nodeKey,
+                                                  String parameter,
+                                                  int priority,
+                                                  ProcessResourceLimits resourceLimits) {
+    return startExecution(systemExecuterProgressStorage, nodeKey.getHostname(), nodeKey.getEnvironmentType(), nodeKey.getName(), parameter, priority, resourceLimits);
   }
 
 
@@ -76,87 +275,273 @@ public class QueueSystemExecuterImpl extends AbstractSystemExecuterImpl implemen
                                                   final String environmentType,
                                                   final String name,
                                                   final String parameter) {
+    return startExecution(systemExecuterProgressStorage, hostname, environmentType, name, parameter, DEFAULT_PRIORITY);
+  }
+
+
+  /**
+   * Starts the exceution with the default resource limits
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param environmentType the environment type
+   * @param parameter the parameter
+   * @param priority the priority, a higher value is started first
+   * @return the system executer progress key or null if the execution could not be started
+   */
+  public SystemExecuterProgressKey startExecution(final ISystemExecuterProgressStorage systemExecuterProgressStorage,
+                                                  final String hostname,
+                                                  final String environmentType,
+                                                  final String name,
+                                                  final String parameter,
+                                                  final int priority) {
+    return startExecution(systemExecuterProgressStorage, hostname, environmentType, name, parameter, priority, resourceLimits);
+  }
+
+
+  /**
+   * Starts the exceution. The execution is queued until the {@link ExecutionScheduler} allows to start it, the time it
+   * waited is reported to the system executer progress storage. If the execution could not be queued, its progress is
+   * ended at once. The resource limits apply to this execution only and only if it runs on linux.
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param environmentType the environment type
+   * @param parameter the parameter
+   * @param priority the priority, a higher value is started first
+   * @param resourceLimits the resource limits of this execution or null to run it without limits
+   * @return the system executer progress key or null if the execution could not be started
+   */
+  public SystemExecuterProgressKey startExecution(final ISystemExecuterProgressStorage systemExecuterProgressStorage,
+                                                  final String hostname,
+                                                  final String environmentType,
+                                                  final String name,
+                                                  final String parameter,
+                                                  final int priority,
+                                                  final ProcessResourceLimits resourceLimits) {
     final String relativePath = prepareRelativePath(environmentType, name);
     final SystemExecuterProgressKey serverProgressKey = createServerProgressKey(hostname, environmentType, name);
 
     try {
-      Thread thread = new Thread(QueueSystemExecuterImpl.class.getName() + ": execution (progress id:" + serverProgressKey.getIdentifier() + ")") {
+      systemExecuterProgressStorage.startProcessing(serverProgressKey);
+      executionScheduler.submit(new ScheduledExecution(serverProgressKey.getNodeKey(), priority) {
         @Override
-        public void run() {
-          // set the proper log information
-          LogInformationHolder.set(new SimpleLogInformation("" + serverProgressKey.getIdentifier()));
-          String command = relativePath + CONTROL_SH;
+        protected void execute(long queueWaitTime) {
+          systemExecuterProgressStorage.setQueueWaitTime(serverProgressKey, queueWaitTime);
+          runExecution(systemExecuterProgressStorage, serverProgressKey, relativePath, parameter, resourceLimits);
+        }
+      });
+    } catch (Exception e) {
+      log.error("Could not run application job step runner:" + e.getMessage(), e);
+
+      // the execution never runs, so nobody else would end its progress
+      systemExecuterProgressStorage.endProcessing(serverProgressKey);
+      return null;
+    }
 
+    return serverProgressKey;
+  }
+
+
+  /**
+   * Runs the execution and captures its output
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param serverProgressKey the system executer progress key
+   * @param relativePath the relative path of the control script
+   * @param parameter the parameter
+   * @param resourceLimits the resource limits or null
+   */
+  protected void runExecution(ISystemExecuterProgressStorage systemExecuterProgressStorage,
+                              SystemExecuterProgressKey serverProgressKey,
+                              String relativePath,
+                              String parameter,
+                              ProcessResourceLimits resourceLimits) {
+    // set the proper log information
+    LogInformationHolder.set(new SimpleLogInformation("" + serverProgressKey.getIdentifier()));
+    String command = relativePath + CONTROL_SH;
+
+    try {
+      log.debug("Start execution...");
+      Process process = null;
+      AdaptiveReadBuffer readBuffer = new AdaptiveReadBuffer(bufferSize, AdaptiveReadBuffer.DEFAULT_MAXIMUM_SIZE);
+      ProcessOutputDecoder outputDecoder = createOutputDecoder();
+      ProcessStatisticsCollector statisticsCollector = null;
+      List<Integer> cpuList = null;
+
+      try {
+        log.increaseHierarchyLevel();
+        if (parameter != null && !parameter.isEmpty()) {
+          command += " " + parameter;
+        }
+
+        log.info("Execute [" + command + "], path [" + SystemEnvironmentFactory.getInstance().getSystemEnvironment().getSystemPath().getWorkingPath() + "]...");
+        IProcessSystemExecuter processSystemExecuter = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+        if (resourceLimits != null && processSystemExecuter instanceof LinuxProcessSystemCommandExecuterImpl) {
+          ((LinuxProcessSystemCommandExecuterImpl) processSystemExecuter).setResourceLimits(resourceLimits);
+        }
+
+        if (cpuPlacementPolicy != null && processSystemExecuter instanceof LinuxProcessSystemCommandExecuterImpl) {
+          cpuList = cpuPlacement.acquire(cpuPlacementPolicy, numberOfCpusPerExecution);
+          log.debug("Pin execution to cpus " + cpuList + ".");
+          ((LinuxProcessSystemCommandExecuterImpl) processSystemExecuter).setCpuAffinity(cpuList);
+        }
+
+        if (outputFileRedirect) {
+          File outputFile = createOutputFile(serverProgressKey);
+          systemExecuterProgressStorage.attachOutputFile(serverProgressKey, outputFile, Charset.forName(getConsoleEncoding()), lineFraming);
+          process = processSystemExecuter.executeCommandToFile(null, outputFile, command);
+        } else {
+          process = processSystemExecuter.executeCommand(null, command);
+        }
+
+        if (process == null) {
+          log.warn("Could not start execution [" + command + "] on [" + serverProgressKey.getUniqueKey() + "].");
+          systemExecuterProgressStorage.addError(serverProgressKey, "Could not start execution [" + command + "].");
+        } else {
+          statisticsCollector = startStatistics(systemExecuterProgressStorage, serverProgressKey, processSystemExecuter, process);
+          if (!outputFileRedirect) {
+            // the error output is redirected to the output, the reads block until data arrives
+            captureOutput(systemExecuterProgressStorage, serverProgressKey, process.getInputStream(), readBuffer, outputDecoder);
+          }
+
+          waitForExit(process);
+        }
+      } finally {
+        if (process != null) {
           try {
-            log.debug("Start execution...");
-            systemExecuterProgressStorage.startProcessing(serverProgressKey);
-            Process process = null;
-
-            try {
-              log.increaseHierarchyLevel();
-              if (parameter != null && !parameter.isEmpty()) {
-                command += " " + parameter;
-              }
-
-              log.info("Execute [" + command + "], path [" + SystemEnvironmentFactory.getInstance().getSystemEnvironment().getSystemPath().getWorkingPath() + "]...");
-              process = SystemExecuterFactory.getInstance().createProcessSystemExecuter().executeCommand(null, command);
-
-              do {
-                systemExecuterProgressStorage.addInput(serverProgressKey, processInputStream(process.getInputStream(), getConsoleEncoding(), bufferSize, false));
-                systemExecuterProgressStorage.addError(serverProgressKey, processInputStream(process.getErrorStream(), getConsoleEncoding(), bufferSize, false));
-                threadSleep(sleepPollTime);
-              } while (isProcessAlive(process));
-            } finally {
-              if (process != null) {
-                try {
-                  systemExecuterProgressStorage.addInput(serverProgressKey, processInputStream(process.getInputStream(), getConsoleEncoding(), bufferSize, true));
-                  systemExecuterProgressStorage.addError(serverProgressKey, processInputStream(process.getErrorStream(), getConsoleEncoding(), bufferSize, true));
-
-                  process = null;
-                } catch (Exception e) {
-                  // NOP
-                }
-              }
-
-              log.info("End of execution [" + command + "], path [" + new File("").getAbsolutePath() + "].");
-              systemExecuterProgressStorage.endProcessing(serverProgressKey);
-
-              log.decreaseHierarchyLevel();
-            }
+            systemExecuterProgressStorage.addInput(serverProgressKey, processInputStream(process.getInputStream(), outputDecoder, readBuffer, true));
+            systemExecuterProgressStorage.addError(serverProgressKey, processInputStream(process.getErrorStream(), createOutputDecoder(), readBuffer, true));
+
+            process = null;
           } catch (Exception e) {
-            log.warn("Catched exception during execution of " + "[" + command + "] on [" + serverProgressKey.getUniqueKey() + "]");
+            // NOP
           }
         }
-      };
 
-      thread.setDaemon(true);
-      thread.start();
+        if (statisticsCollector != null) {
+          ProcessStatisticsSampler.getInstance().unregister(statisticsCollector);
+          systemExecuterProgressStorage.setProcessStatistics(serverProgressKey, statisticsCollector.getStatistics());
+          log.debug("Resource usage of [" + command + "]: " + statisticsCollector.getStatistics());
+        }
+
+        if (cpuList != null) {
+          cpuPlacement.release(cpuList);
+        }
+
+        log.info("End of execution [" + command + "], path [" + new File("").getAbsolutePath() + "].");
+        systemExecuterProgressStorage.endProcessing(serverProgressKey);
+
+        log.decreaseHierarchyLevel();
+      }
     } catch (Exception e) {
-      log.error("Could not run application job step runner:" + e.getMessage(), e);
+      log.warn("Catched exception during execution of " + "[" + command + "] on [" + serverProgressKey.getUniqueKey() + "]");
     }
+  }
 
-    return serverProgressKey;
+  /**
+   * Start the sampling of the resource usage of an execution if the process system executer supports it. The samples are
+   * set into the storage.
+   *
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param serverProgressKey the system executer progress key
+   * @param processSystemExecuter the process system executer which started the process
+   * @param process the process
+   * @return the registered collector or null
+   */
+  protected ProcessStatisticsCollector startStatistics(final ISystemExecuterProgressStorage systemExecuterProgressStorage, final SystemExecuterProgressKey serverProgressKey,
+      IProcessSystemExecuter processSystemExecuter, Process process) {
+    if (!(processSystemExecuter instanceof AbstractProcessSystemCommandExecuterImpl)) {
+      return null;
+    }
+
+    ProcessStatisticsCollector statisticsCollector = ((AbstractProcessSystemCommandExecuterImpl) processSystemExecuter).createStatisticsCollector(process);
+    if (statisticsCollector != null) {
+      statisticsCollector.setListener(new Consumer<ProcessStatistics>() {
+        @Override
+        public void accept(ProcessStatistics processStatistics) {
+          systemExecuterProgressStorage.setProcessStatistics(serverProgressKey, processStatistics);
+        }
+      });
+      ProcessStatisticsSampler.getInstance().register(statisticsCollector);
+    }
+
+    return statisticsCollector;
   }
 
+
   private String getConsoleEncoding() {
     return consoleEncoding;
   }
 
 
   /**
-   * Check if the process is alive or not
+   * Capture the output of a process until the end of the stream. Each chunk is added to the storage as soon as it has
+   * been read. If the storage blocks since its buffer is full, the pipe is not drained and the process blocks on its next
+   * write until the output has been read.
    *
-   * @param process the procss
-   * @return true if it is alive or not
+   * @param systemExecuterProgressStorage the system executer progress storage
+   * @param serverProgressKey the system executer progress key
+   * @param inputStream the output stream of the process
+   * @param readBuffer the read buffer of the execution
+   * @param outputDecoder the output decoder of the execution
    */
-  protected boolean isProcessAlive(Process process) {
-    // jdk 1.8return e.getValue().isAlive();
+  protected void captureOutput(ISystemExecuterProgressStorage systemExecuterProgressStorage, SystemExecuterProgressKey serverProgressKey, InputStream inputStream, AdaptiveReadBuffer readBuffer,
+      ProcessOutputDecoder outputDecoder) {
+    try {
+      while (readBuffer.read(inputStream) != -1) {
+        String text = outputDecoder.decode(readBuffer.getBuffer(), 0, readBuffer.getLength());
+        if (!text.isEmpty()) {
+          systemExecuterProgressStorage.addInput(serverProgressKey, text);
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Error: " + e.getMessage(), e);
+    }
+
+    String text = outputDecoder.flush();
+    if (!text.isEmpty()) {
+      systemExecuterProgressStorage.addInput(serverProgressKey, text);
+    }
+  }
+
+
+  /**
+   * Create the output file of an execution in the log path
+   *
+   * @param serverProgressKey the system executer progress key
+   * @return the output file
+   */
+  protected File createOutputFile(SystemExecuterProgressKey serverProgressKey) {
+    File logPath = new File(SystemEnvironmentFactory.getInstance().getSystemEnvironment().getSystemPath().getLogPath());
+    if (!logPath.exists() && !logPath.mkdirs()) {
+      log.warn("Could not create log path " + logPath + ".");
+    }
 
+    return new File(logPath, "execution-" + serverProgressKey.getUniqueKey().replaceAll("[^a-zA-Z0-9._-]", "_") + ".log");
+  }
+
+
+  /**
+   * Create the decoder of the output of an execution
+   *
+   * @return the output decoder
+   */
+  protected ProcessOutputDecoder createOutputDecoder() {
+    return new ProcessOutputDecoder(Charset.forName(getConsoleEncoding()), lineFraming);
+  }
+
+
+  /**
+   * Wait until the process has ended
+   *
+   * @param process the procss
+   */
+  protected void waitForExit(Process process) {
     try {
-      process.exitValue();
-      return false;
-    } catch (IllegalThreadStateException e) {
-      return true;
+      ProcessUtil.getInstance().onExit(process).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.debug("Error while waiting for the end of the process: " + e.getMessage(), e);
     }
   }
 
@@ -210,47 +595,35 @@ public class QueueSystemExecuterImpl extends AbstractSystemExecuterImpl implemen
    * Process the input stream
    *
    * @param inputStream the input stream
-   * @param bufferSize the buffer size
-   * @param encoding the encoding
+   * @param outputDecoder the output decoder of the execution
+   * @param readBuffer the read buffer of the execution
    * @param untilEnd read until end of input buffer
-   * @return the processed input stream
+   * @return the processed input stream, an empty string if nothing was read
    */
-  protected String processInputStream(InputStream inputStream, String encoding, int bufferSize,
-      boolean untilEnd) {
-    ByteArrayOutputStream result = new ByteArrayOutputStream();
-    byte[] buffer = new byte[bufferSize];
+  protected String processInputStream(InputStream inputStream, ProcessOutputDecoder outputDecoder, AdaptiveReadBuffer readBuffer, boolean untilEnd) {
     try {
-      int length;
-
-      if (untilEnd) {
-        while ((length = inputStream.read(buffer)) != -1) {
-          result.write(buffer, 0, length);
-        }
-      } else {
-        length = inputStream.read(buffer);
-        if (length != -1) {
-          result.write(buffer, 0, length);
+      if (!untilEnd) {
+        if (readBuffer.read(inputStream) == -1) {
+          return outputDecoder.flush();
         }
+
+        return outputDecoder.decode(readBuffer.getBuffer(), 0, readBuffer.getLength());
       }
 
-      return result.toString(encoding);
+      StringBuilder result = new StringBuilder();
+      while (readBuffer.read(inputStream) != -1) {
+        result.append(outputDecoder.decode(readBuffer.getBuffer(), 0, readBuffer.getLength()));
+      }
+
+      result.append(outputDecoder.flush());
+      if (result.length() == 0) {
+        return EMPTY;
+      }
+
+      return result.toString();
     } catch (IOException e) {
       log.debug("Error: " + e.getMessage(), e);
       return e.getMessage();
     }
   }
-
-
-  /**
-   * Sleep
-   *
-   * @param sleepTime sleep time
-   */
-  protected void threadSleep(long sleepTime) {
-    try {
-      Thread.sleep(sleepTime);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
-    }
-  }
 }
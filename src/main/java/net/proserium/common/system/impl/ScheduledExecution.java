@@ -0,0 +1,99 @@
+/*
+ * ScheduledExecution.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.util.concurrent.TimeUnit;
+import net.proserium.common.sdo.NodeKey;
+
+
+/**
+ * Defines an execution which waits in the {@link ExecutionScheduler}. Executions with a higher priority are started first,
+ * executions with the same priority in the order they were submitted.
+ *
+ * @author Patrick Meier
+ */
+public abstract class ScheduledExecution implements Comparable<ScheduledExecution> {
+  private NodeKey nodeKey;
+  private int priority;
+  private long sequence;
+  private long submitTime;
+
+
+  /**
+   * Constructor
+   *
+   * @param nodeKey the node key
+   * @param priority the priority, a higher value is started first
+   */
+  public ScheduledExecution(NodeKey nodeKey, int priority) {
+    this.nodeKey = nodeKey;
+    this.priority = priority;
+    this.sequence = 0;
+    this.submitTime = System.nanoTime();
+  }
+
+
+  /**
+   * Get the node key
+   *
+   * @return the node key
+   */
+  public NodeKey getNodeKey() {
+    return nodeKey;
+  }
+
+
+  /**
+   * Get the priority
+   *
+   * @return the priority
+   */
+  public int getPriority() {
+    return priority;
+  }
+
+
+  /**
+   * Set the sequence number which is assigned by the scheduler
+   *
+   * @param sequence the sequence number
+   */
+  protected void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+
+  /**
+   * Get the time in milliseconds since the execution has been submitted
+   *
+   * @return the waiting time
+   */
+  public long getWaitingTime() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitTime);
+  }
+
+
+  /**
+   * Run the execution
+   *
+   * @param queueWaitTime the time in milliseconds the execution waited in the queue
+   */
+  protected abstract void execute(long queueWaitTime);
+
+
+  /**
+   * @see java.lang.Comparable#compareTo(java.lang.Object)
+   */
+  @Override
+  public int compareTo(ScheduledExecution other) {
+    if (priority != other.priority) {
+      return Integer.compare(other.priority, priority);
+    }
+
+    return Long.compare(sequence, other.sequence);
+  }
+}
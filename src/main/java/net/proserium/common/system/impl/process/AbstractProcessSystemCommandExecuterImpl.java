@@ -9,11 +9,20 @@ package net.proserium.common.system.impl.process;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import jptools.logger.Logger;
 import net.proserium.common.system.IProcessSystemExecuter;
+import net.proserium.common.system.ProcessResult;
 import net.proserium.common.system.impl.AbstractSystemExecuterImpl;
+import net.proserium.common.util.ProcessUtil;
 import net.proserium.common.util.StreamUtil;
 
 
@@ -24,6 +33,36 @@ import net.proserium.common.util.StreamUtil;
  */
 public abstract class AbstractProcessSystemCommandExecuterImpl extends AbstractSystemExecuterImpl implements IProcessSystemExecuter {
   private static final Logger log = Logger.getLogger(AbstractProcessSystemCommandExecuterImpl.class);
+  private static final String NULL_DEVICE = System.getProperty("os.name").toLowerCase().startsWith("windows") ? "NUL" : "/dev/null";
+  private long terminationGracePeriod;
+
+
+  /**
+   * Constructor
+   */
+  public AbstractProcessSystemCommandExecuterImpl() {
+    terminationGracePeriod = 5000; // 5 seconds between SIGTERM and SIGKILL
+  }
+
+
+  /**
+   * Get the time in milliseconds between the graceful termination and the kill of a process which exceeded its deadline
+   *
+   * @return the termination grace period
+   */
+  public long getTerminationGracePeriod() {
+    return terminationGracePeriod;
+  }
+
+
+  /**
+   * Set the time in milliseconds between the graceful termination and the kill of a process which exceeded its deadline
+   *
+   * @param terminationGracePeriod the termination grace period
+   */
+  public void setTerminationGracePeriod(long terminationGracePeriod) {
+    this.terminationGracePeriod = terminationGracePeriod;
+  }
 
 
   /**
@@ -37,22 +76,9 @@ public abstract class AbstractProcessSystemCommandExecuterImpl extends AbstractS
 
     List<String> commandParameterList = Arrays.asList(commandList);
 
-    // create process builder
-    ProcessBuilder processBuilder = createProcessBuilder(commandParameterList);
-    processBuilder.redirectErrorStream(true);
-
     Process process = null;
     try {
-      String pathInfo = " in current path.";
-
-      if (path != null) {
-        // System.getProperty("user.home")
-        processBuilder.directory(new File(path));
-        pathInfo = " in path [" + path + "].";
-      }
-
-      log.debug("Execute command: [" + commandParameterList + "]" + pathInfo);
-      process = processBuilder.start();
+      process = startProcess(path, true, commandParameterList);
     } catch (Exception e) {
       log.warn("Error occured while executing command " + commandParameterList + ": " + e.getMessage(), e);
     }
@@ -73,32 +99,26 @@ public abstract class AbstractProcessSystemCommandExecuterImpl extends AbstractS
     List<String> commandParameterList = Arrays.asList(commandList);
 
     Process process = null;
-    InputStream processOutput = null;
-    InputStream processErrorOutput = null;
     try {
       process = executeCommand(path, commandList);
+      if (process == null) {
+        return null;
+      }
 
-      // to capture output from the shell
-      processOutput = process.getInputStream();
-      processErrorOutput = process.getErrorStream();
-      boolean hasEnded = false;
+      // the output is drained by the process monitor while waiting, a full pipe buffer can not block the process.
+      // wait for the shell to finish and get the return code, the monitor terminates the process tree at the deadline
+      ProcessResult result = monitorProcess(process, commandParameterList, System.currentTimeMillis(), numberOfSecondsToWait).get();
 
-      // wait for the shell to finish and get the return code
-      if (numberOfSecondsToWait <= 0) {
-        process.waitFor();
-        hasEnded = true;
-      } else {
-        process.waitFor();
-        hasEnded = true;
-        // TODO java 8: hasEnded = process.waitFor(numberOfSecondsToWait, TimeUnit.SECONDS);
-      }
+      if (result != null) {
+        String message = "Command [" + commandParameterList + "] -> returns " + result.getExitValue();
+        if (result.isTimedOut()) {
+          message += " (terminated after " + numberOfSecondsToWait + " seconds)";
+        }
 
-      if (hasEnded) {
-        String message = "Command [" + commandParameterList + "] -> returns " + process.exitValue();
         boolean messageLogged = false;
 
-        String outputMessage = convertStreamToStr(processOutput);
-        String errorMessage = convertStreamToStr(processErrorOutput);
+        String outputMessage = result.getOutput();
+        String errorMessage = result.getErrorOutput();
 
         if (outputMessage != null && !outputMessage.isEmpty()) {
           log.debug(message + ", output:\n" + outputMessage);
@@ -113,28 +133,407 @@ public abstract class AbstractProcessSystemCommandExecuterImpl extends AbstractS
           }
         }
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing command " + commandParameterList + ".");
     } catch (Exception e) {
       log.warn(
           "Error occured while executing command " + commandParameterList + ": " + e.getMessage(),
           e);
-    } finally {
-      if (processOutput != null) {
-        try {
-          processOutput.close();
-        } catch (Exception e) {
-          // NOP
-        }
+    }
+
+    return process;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommandToFile(java.lang.String, java.io.File, java.lang.String[])
+   */
+  @Override
+  public Process executeCommandToFile(String path, File outputFile, String... commandList) {
+    if (commandList == null || commandList.length == 0) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    List<String> commandParameterList = Arrays.asList(commandList);
+
+    Process process = null;
+    try {
+      ProcessBuilder processBuilder = prepareProcessBuilder(path, commandParameterList);
+      processBuilder.redirectErrorStream(true);
+      processBuilder.redirectOutput(ProcessBuilder.Redirect.appendTo(outputFile));
+      process = processBuilder.start();
+    } catch (Exception e) {
+      log.warn("Error occured while executing command " + commandParameterList + ": " + e.getMessage(), e);
+    }
+
+    return process;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(String path, String... commandList) {
+    return executeAsync(path, 0, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, int, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(String path, int numberOfSecondsToWait, String... commandList) {
+    if (commandList == null || commandList.length == 0) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    List<String> commandParameterList = Arrays.asList(commandList);
+    long startTime = System.currentTimeMillis();
+
+    try {
+      Process process = startProcess(path, false, commandParameterList);
+      return monitorProcess(process, commandParameterList, startTime, numberOfSecondsToWait);
+    } catch (Exception e) {
+      log.warn("Error occured while executing command " + commandParameterList + ": " + e.getMessage(), e);
+      CompletableFuture<ProcessResult> result = new CompletableFuture<ProcessResult>();
+      result.completeExceptionally(e);
+      return result;
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeBatch(java.lang.String, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executeBatch(String path, List<String[]> commandList) {
+    if (commandList == null || commandList.isEmpty()) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    for (String[] command : commandList) {
+      if (command == null || command.length == 0) {
+        throw new IllegalArgumentException("Invalid command!");
+      }
+    }
+
+    long startTime = System.currentTimeMillis();
+    try {
+      List<String> shellCommandList = getBatchShellCommandList();
+      if (shellCommandList == null) {
+        return executeBatchSequentially(path, commandList);
+      }
+
+      return executeBatchInShell(path, commandList, shellCommandList);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing batch of " + commandList.size() + " commands.");
+      return completeBatchResults(commandList, null, e, startTime);
+    } catch (Exception e) {
+      log.warn("Error occured while executing batch of " + commandList.size() + " commands: " + e.getMessage(), e);
+      return completeBatchResults(commandList, null, e, startTime);
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executePipeline(java.lang.String, java.io.File, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executePipeline(String path, File outputFile, List<String[]> commandList) {
+    if (commandList == null || commandList.isEmpty()) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    for (String[] command : commandList) {
+      if (command == null || command.length == 0) {
+        throw new IllegalArgumentException("Invalid command!");
       }
-      if (processErrorOutput != null) {
-        try {
-          processErrorOutput.close();
-        } catch (Exception e) {
-          // NOP
+    }
+
+    try {
+      if (ProcessUtil.getInstance().isPipelineSupported()) {
+        return executePipelineProcesses(path, outputFile, commandList);
+      }
+
+      List<String> shellCommandList = getBatchShellCommandList();
+      if (shellCommandList == null) {
+        log.warn("Pipelines are not supported on this platform.");
+        return null;
+      }
+
+      return executePipelineInShell(path, outputFile, commandList, shellCommandList);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing pipeline of " + commandList.size() + " commands.");
+    } catch (Exception e) {
+      log.warn("Error occured while executing pipeline of " + commandList.size() + " commands: " + e.getMessage(), e);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Get the command list of the shell which executes a batch. The shell reads the framed commands from its standard input.
+   *
+   * @return the shell command list or null if the commands of a batch are executed one after another
+   */
+  protected List<String> getBatchShellCommandList() {
+    return null;
+  }
+
+
+  /**
+   * Execute the commands of a batch one after another. A command which could not be executed gets a result with the
+   * exit value -1 and the error as error output.
+   *
+   * @param path the path to execute the commands or null
+   * @param commandList the commands
+   * @return the results
+   * @throws InterruptedException if the thread was interrupted
+   */
+  protected List<ProcessResult> executeBatchSequentially(String path, List<String[]> commandList) throws InterruptedException {
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    for (String[] command : commandList) {
+      long startTime = System.currentTimeMillis();
+      try {
+        result.add(executeAsync(path, command).get());
+      } catch (ExecutionException e) {
+        log.warn("Error occured while executing command " + Arrays.asList(command) + " of batch: " + e.getCause().getMessage());
+        result.add(completeBatchResults(Collections.singletonList(command), null, e.getCause(), startTime).get(0));
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Execute the commands of a batch in a single shell
+   *
+   * @param path the path to execute the commands or null
+   * @param commandList the commands
+   * @param shellCommandList the command list of the shell
+   * @return the results
+   * @throws IOException if the shell could not be started
+   * @throws InterruptedException if the thread was interrupted
+   * @throws ExecutionException if the output of the shell could not be captured
+   */
+  protected List<ProcessResult> executeBatchInShell(String path, List<String[]> commandList, List<String> shellCommandList) throws IOException, InterruptedException, ExecutionException {
+    List<ShellCommandFrame> frameList = new ArrayList<ShellCommandFrame>();
+    StringBuilder script = new StringBuilder();
+    for (String[] command : commandList) {
+      ShellCommandFrame frame = new ShellCommandFrame();
+      frameList.add(frame);
+      script.append(frame.createScript(path, Arrays.asList(command)));
+    }
+
+    log.debug("Execute batch of " + commandList.size() + " commands: " + shellCommandList);
+    long startTime = System.currentTimeMillis();
+    Process process = new ProcessBuilder(shellCommandList).start();
+
+    // the monitor drains the output while the script is written, a full pipe can not block the shell
+    CompletableFuture<ProcessResult> future = monitorProcess(process, shellCommandList, startTime, 0);
+    try (OutputStream outputStream = process.getOutputStream()) {
+      outputStream.write(script.toString().getBytes(Charset.defaultCharset()));
+    }
+
+    ProcessResult shellResult = future.get();
+    String output = shellResult.getOutput();
+    String errorOutput = shellResult.getErrorOutput();
+    int outputIndex = 0;
+    int errorIndex = 0;
+
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    for (int i = 0; i < commandList.size(); i++) {
+      String marker = frameList.get(i).getMarker();
+      String commandOutput = "";
+      String commandErrorOutput = "";
+      int exitValue = -1;
+
+      int markerIndex = output.indexOf("\n" + marker + " ", outputIndex);
+      if (markerIndex >= 0) {
+        commandOutput = output.substring(outputIndex, markerIndex);
+        int exitValueIndex = markerIndex + marker.length() + 2;
+        int endOfLine = output.indexOf('\n', exitValueIndex);
+        if (endOfLine < 0) {
+          endOfLine = output.length();
         }
+
+        exitValue = ShellCommandFrame.parseExitValue(output.substring(exitValueIndex, endOfLine));
+        outputIndex = Math.min(endOfLine + 1, output.length());
+      } else {
+        // the shell has ended before the command has been completed
+        commandOutput = output.substring(outputIndex);
+        outputIndex = output.length();
+      }
+
+      markerIndex = errorOutput.indexOf("\n" + marker + "\n", errorIndex);
+      if (markerIndex >= 0) {
+        commandErrorOutput = errorOutput.substring(errorIndex, markerIndex);
+        errorIndex = markerIndex + marker.length() + 2;
+      } else {
+        commandErrorOutput = errorOutput.substring(errorIndex);
+        errorIndex = errorOutput.length();
       }
+
+      result.add(new ProcessResult(Arrays.asList(commandList.get(i)), exitValue, commandOutput, commandErrorOutput, shellResult.getStartTime(), shellResult.getEndTime(), false));
     }
 
-    return process;
+    log.debug("Batch of " + commandList.size() + " commands -> " + shellResult.getDuration() + "ms.");
+    return result;
+  }
+
+
+  /**
+   * Execute a pipeline whose processes are connected by the runtime
+   *
+   * @param path the path to execute the commands or null
+   * @param outputFile the file the output of the last stage is appended to or null
+   * @param commandList the stages
+   * @return the results
+   * @throws IOException if the processes could not be started
+   * @throws InterruptedException if the thread was interrupted
+   * @throws ExecutionException if the output of a process could not be captured
+   */
+  protected List<ProcessResult> executePipelineProcesses(String path, File outputFile, List<String[]> commandList) throws IOException, InterruptedException, ExecutionException {
+    List<ProcessBuilder> processBuilderList = new ArrayList<ProcessBuilder>();
+    for (String[] command : commandList) {
+      processBuilderList.add(prepareProcessBuilder(path, Arrays.asList(command)));
+    }
+
+    processBuilderList.get(0).redirectInput(ProcessBuilder.Redirect.from(new File(NULL_DEVICE)));
+    if (outputFile != null) {
+      processBuilderList.get(processBuilderList.size() - 1).redirectOutput(ProcessBuilder.Redirect.appendTo(outputFile));
+    }
+
+    long startTime = System.currentTimeMillis();
+    List<Process> processList = ProcessUtil.getInstance().startPipeline(processBuilderList);
+
+    // the monitor drains the error output of each stage and the output of the last stage
+    List<CompletableFuture<ProcessResult>> futureList = new ArrayList<CompletableFuture<ProcessResult>>();
+    for (int i = 0; i < processList.size(); i++) {
+      futureList.add(monitorProcess(processList.get(i), Arrays.asList(commandList.get(i)), startTime, 0));
+    }
+
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    for (CompletableFuture<ProcessResult> future : futureList) {
+      result.add(future.get());
+    }
+
+    log.debug("Pipeline of " + commandList.size() + " commands -> " + (System.currentTimeMillis() - startTime) + "ms.");
+    return result;
+  }
+
+
+  /**
+   * Execute a pipeline in a shell, the processes are connected by the shell
+   *
+   * @param path the path to execute the commands or null
+   * @param outputFile the file the output of the last stage is appended to or null
+   * @param commandList the stages
+   * @param shellCommandList the command list of the shell
+   * @return the results
+   * @throws IOException if the shell could not be started
+   * @throws InterruptedException if the thread was interrupted
+   * @throws ExecutionException if the output of the shell could not be captured
+   */
+  protected List<ProcessResult> executePipelineInShell(String path, File outputFile, List<String[]> commandList, List<String> shellCommandList) throws IOException, InterruptedException, ExecutionException {
+    ShellPipelineScript pipelineScript = new ShellPipelineScript(commandList, outputFile);
+    try {
+      log.debug("Execute pipeline of " + commandList.size() + " commands: " + shellCommandList);
+      long startTime = System.currentTimeMillis();
+      Process process = new ProcessBuilder(shellCommandList).start();
+
+      CompletableFuture<ProcessResult> future = monitorProcess(process, shellCommandList, startTime, 0);
+      try (OutputStream outputStream = process.getOutputStream()) {
+        outputStream.write(pipelineScript.createScript(path).getBytes(Charset.defaultCharset()));
+      }
+
+      ProcessResult shellResult = future.get();
+      log.debug("Pipeline of " + commandList.size() + " commands -> " + shellResult.getDuration() + "ms.");
+      return pipelineScript.createResults(shellResult, Charset.defaultCharset());
+    } finally {
+      pipelineScript.delete();
+    }
+  }
+
+
+  /**
+   * Start a process
+   *
+   * @param path the path to execute the command or null
+   * @param redirectErrorStream true to merge the error output into the standard output
+   * @param commandParameterList the command parameter list to execute
+   * @return the started process
+   * @throws IOException in case the process could not be started
+   */
+  protected Process startProcess(String path, boolean redirectErrorStream, List<String> commandParameterList) throws IOException {
+    ProcessBuilder processBuilder = prepareProcessBuilder(path, commandParameterList);
+    processBuilder.redirectErrorStream(redirectErrorStream);
+    return processBuilder.start();
+  }
+
+
+  /**
+   * Prepare the process builder of a command
+   *
+   * @param path the path to execute the command or null
+   * @param commandParameterList the command parameter list to execute
+   * @return the process builder
+   */
+  protected ProcessBuilder prepareProcessBuilder(String path, List<String> commandParameterList) {
+    // create process builder
+    ProcessBuilder processBuilder = createProcessBuilder(commandParameterList);
+
+    String pathInfo = " in current path.";
+    if (path != null) {
+      // System.getProperty("user.home")
+      processBuilder.directory(new File(path));
+      pathInfo = " in path [" + path + "].";
+    }
+
+    log.debug("Execute command: [" + commandParameterList + "]" + pathInfo);
+    return processBuilder;
+  }
+
+
+  /**
+   * Hands a started process over to the {@link ProcessMonitor} which drains its output until it has ended.
+   *
+   * @param process the process
+   * @param commandParameterList the command parameter list
+   * @param startTime the start time in milliseconds
+   * @param numberOfSecondsToWait the number of seconds until the process tree is terminated. If the value less or equals 0,
+   *        it waits until it is executed
+   * @return the future which is completed with the process result
+   */
+  protected CompletableFuture<ProcessResult> monitorProcess(Process process, List<String> commandParameterList, long startTime, int numberOfSecondsToWait) {
+    long timeout = TimeUnit.SECONDS.toMillis(Math.max(numberOfSecondsToWait, 0));
+    MonitoredProcess monitoredProcess = new MonitoredProcess(process, commandParameterList, Charset.defaultCharset(), startTime, timeout, terminationGracePeriod);
+    ProcessStatisticsCollector statisticsCollector = createStatisticsCollector(process);
+    if (statisticsCollector != null) {
+      monitoredProcess.setStatisticsCollector(statisticsCollector);
+      ProcessStatisticsSampler.getInstance().register(statisticsCollector);
+    }
+
+    ProcessMonitor.getInstance().add(monitoredProcess);
+    return monitoredProcess.getFuture();
+  }
+
+
+  /**
+   * Create the collector of the resource usage of a started process. The collector has to be registered at the
+   * {@link ProcessStatisticsSampler} to be sampled.
+   *
+   * @param process the process
+   * @return the collector or null if the statistics are not supported on this platform
+   */
+  public ProcessStatisticsCollector createStatisticsCollector(Process process) {
+    return null;
   }
 
 
@@ -0,0 +1,478 @@
+/*
+ * CachingProcessSystemExecuterImpl.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import jptools.logger.Logger;
+import net.proserium.common.system.IProcessSystemExecuter;
+import net.proserium.common.system.ProcessResult;
+import net.proserium.common.system.impl.AbstractSystemExecuterImpl;
+
+
+/**
+ * Implements a caching decorator of an {@link IProcessSystemExecuter} for idempotent commands like <code>uname -a</code>.
+ * The results are cached by path and command list for a time to live which can be defined per command. Concurrent
+ * executions of the same command are coalesced into one execution. Only successful results which are not larger than the
+ * maximum result size are kept, the number of entries is bounded by a least recently used eviction. Commands with side
+ * effects must not be executed through this executer, {@link #executeCommandToFile(String, File, String...)} and
+ * {@link #executeBatch(String, List)} are passed to the delegate without caching.
+ *
+ * @author Patrick Meier
+ */
+public class CachingProcessSystemExecuterImpl extends AbstractSystemExecuterImpl implements IProcessSystemExecuter {
+  private static final Logger log = Logger.getLogger(CachingProcessSystemExecuterImpl.class);
+
+  /** The default time to live in milliseconds */
+  public static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+  /** The default maximum number of entries */
+  public static final int DEFAULT_MAXIMUM_NUMBER_OF_ENTRIES = 1000;
+
+  /** The default maximum size of a cached result in characters */
+  public static final int DEFAULT_MAXIMUM_RESULT_SIZE = 64 * 1024;
+
+  private IProcessSystemExecuter delegate;
+  private Charset charset;
+  private long defaultTimeToLive;
+  private Map<List<String>, Long> timeToLiveMap;
+  private int maximumNumberOfEntries;
+  private int maximumResultSize;
+  private LinkedHashMap<List<String>, CacheEntry> cacheMap;
+  private AtomicLong numberOfHits;
+  private AtomicLong numberOfMisses;
+  private AtomicLong numberOfCoalescedRequests;
+  private AtomicLong numberOfEvictions;
+
+
+  /**
+   * Constructor
+   *
+   * @param delegate the executer which executes the commands
+   */
+  public CachingProcessSystemExecuterImpl(IProcessSystemExecuter delegate) {
+    this(delegate, DEFAULT_MAXIMUM_NUMBER_OF_ENTRIES);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param delegate the executer which executes the commands
+   * @param maximumNumberOfEntries the maximum number of cached results
+   */
+  public CachingProcessSystemExecuterImpl(IProcessSystemExecuter delegate, int maximumNumberOfEntries) {
+    this.delegate = delegate;
+    this.charset = Charset.defaultCharset();
+    this.defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+    this.timeToLiveMap = new HashMap<List<String>, Long>();
+    this.maximumNumberOfEntries = Math.max(maximumNumberOfEntries, 1);
+    this.maximumResultSize = DEFAULT_MAXIMUM_RESULT_SIZE;
+    this.numberOfHits = new AtomicLong();
+    this.numberOfMisses = new AtomicLong();
+    this.numberOfCoalescedRequests = new AtomicLong();
+    this.numberOfEvictions = new AtomicLong();
+
+    // the access order makes the eldest entry the least recently used one
+    this.cacheMap = new LinkedHashMap<List<String>, CacheEntry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<List<String>, CacheEntry> eldest) {
+        if (size() > CachingProcessSystemExecuterImpl.this.maximumNumberOfEntries) {
+          numberOfEvictions.incrementAndGet();
+          return true;
+        }
+
+        return false;
+      }
+    };
+  }
+
+
+  /**
+   * Get the delegate
+   *
+   * @return the executer which executes the commands
+   */
+  public IProcessSystemExecuter getDelegate() {
+    return delegate;
+  }
+
+
+  /**
+   * Set the time to live of the commands without an own time to live
+   *
+   * @param defaultTimeToLive the time to live in milliseconds, less or equals 0 disables the caching
+   */
+  public synchronized void setDefaultTimeToLive(long defaultTimeToLive) {
+    this.defaultTimeToLive = defaultTimeToLive;
+  }
+
+
+  /**
+   * Set the time to live of a command in any path
+   *
+   * @param timeToLive the time to live in milliseconds, less or equals 0 disables the caching of the command
+   * @param commandList the command list
+   */
+  public synchronized void setTimeToLive(long timeToLive, String... commandList) {
+    timeToLiveMap.put(Arrays.asList(commandList), timeToLive);
+  }
+
+
+  /**
+   * Set the maximum size of a cached result. Larger results are not cached.
+   *
+   * @param maximumResultSize the maximum number of characters of the output and the error output
+   */
+  public synchronized void setMaximumResultSize(int maximumResultSize) {
+    this.maximumResultSize = maximumResultSize;
+  }
+
+
+  /**
+   * Get the number of requests which were answered from the cache
+   *
+   * @return the number of hits
+   */
+  public long getNumberOfHits() {
+    return numberOfHits.get();
+  }
+
+
+  /**
+   * Get the number of requests which executed the command
+   *
+   * @return the number of misses
+   */
+  public long getNumberOfMisses() {
+    return numberOfMisses.get();
+  }
+
+
+  /**
+   * Get the number of requests which waited for the execution of a concurrent request. They are counted as hits as well.
+   *
+   * @return the number of coalesced requests
+   */
+  public long getNumberOfCoalescedRequests() {
+    return numberOfCoalescedRequests.get();
+  }
+
+
+  /**
+   * Get the number of results which were removed since they were least recently used or expired
+   *
+   * @return the number of evictions
+   */
+  public long getNumberOfEvictions() {
+    return numberOfEvictions.get();
+  }
+
+
+  /**
+   * Get the number of cached results including the running executions
+   *
+   * @return the size
+   */
+  public int getSize() {
+    synchronized (cacheMap) {
+      return cacheMap.size();
+    }
+  }
+
+
+  /**
+   * Remove all cached results
+   */
+  public void clear() {
+    synchronized (cacheMap) {
+      cacheMap.clear();
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommand(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public Process executeCommand(String path, String... commandList) {
+    return executeCommand(path, 0, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommand(java.lang.String, int, java.lang.String[])
+   */
+  @Override
+  public Process executeCommand(String path, int numberOfSecondsToWait, String... commandList) {
+    try {
+      return new CompletedProcess(executeAsync(path, numberOfSecondsToWait, commandList).get(), charset);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing command " + Arrays.asList(commandList) + ".");
+    } catch (Exception e) {
+      log.warn("Error occured while executing command " + Arrays.asList(commandList) + ": " + e.getMessage(), e);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommandToFile(java.lang.String, java.io.File, java.lang.String[])
+   */
+  @Override
+  public Process executeCommandToFile(String path, File outputFile, String... commandList) {
+    return delegate.executeCommandToFile(path, outputFile, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(String path, String... commandList) {
+    return executeAsync(path, 0, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, int, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(String path, int numberOfSecondsToWait, String... commandList) {
+    if (commandList == null || commandList.length == 0) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    long timeToLive = getTimeToLive(commandList);
+    if (timeToLive <= 0) {
+      return delegate.executeAsync(path, numberOfSecondsToWait, commandList);
+    }
+
+    List<String> key = new ArrayList<String>(commandList.length + 1);
+    key.add(path);
+    key.addAll(Arrays.asList(commandList));
+
+    CacheEntry entry;
+    synchronized (cacheMap) {
+      entry = cacheMap.get(key);
+      if (entry != null && entry.isExpired(System.nanoTime())) {
+        cacheMap.remove(key);
+        numberOfEvictions.incrementAndGet();
+        entry = null;
+      }
+
+      if (entry != null) {
+        numberOfHits.incrementAndGet();
+        if (!entry.getFuture().isDone()) {
+          numberOfCoalescedRequests.incrementAndGet();
+        }
+      } else {
+        numberOfMisses.incrementAndGet();
+        entry = new CacheEntry(new CompletableFuture<ProcessResult>());
+        cacheMap.put(key, entry);
+        execute(key, entry, timeToLive, path, numberOfSecondsToWait, commandList);
+      }
+    }
+
+    // each caller gets an own future, a cancellation does not affect the cached result
+    return entry.getFuture().thenApply(Function.<ProcessResult>identity());
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeBatch(java.lang.String, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executeBatch(String path, List<String[]> commandList) {
+    return delegate.executeBatch(path, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executePipeline(java.lang.String, java.io.File, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executePipeline(String path, File outputFile, List<String[]> commandList) {
+    return delegate.executePipeline(path, outputFile, commandList);
+  }
+
+
+  /**
+   * Remove the expired results
+   *
+   * @return the number of removed results
+   */
+  public int removeExpiredEntries() {
+    int result = 0;
+    long now = System.nanoTime();
+    synchronized (cacheMap) {
+      for (Iterator<CacheEntry> it = cacheMap.values().iterator(); it.hasNext();) {
+        if (it.next().isExpired(now)) {
+          it.remove();
+          result++;
+        }
+      }
+    }
+
+    numberOfEvictions.addAndGet(result);
+    return result;
+  }
+
+
+  /**
+   * Execute a command of a cache miss. The entry is removed if the result can not be cached.
+   *
+   * @param key the key
+   * @param entry the entry
+   * @param timeToLive the time to live in milliseconds
+   * @param path the path to execute the command or null
+   * @param numberOfSecondsToWait the number of seconds until the command is terminated or less or equals 0
+   * @param commandList the command list
+   */
+  protected void execute(final List<String> key, final CacheEntry entry, final long timeToLive, String path, int numberOfSecondsToWait, String... commandList) {
+    CompletableFuture<ProcessResult> execution;
+    try {
+      execution = delegate.executeAsync(path, numberOfSecondsToWait, commandList);
+    } catch (RuntimeException e) {
+      execution = new CompletableFuture<ProcessResult>();
+      execution.completeExceptionally(e);
+    }
+
+    execution.whenComplete(new BiConsumer<ProcessResult, Throwable>() {
+      @Override
+      public void accept(ProcessResult result, Throwable throwable) {
+        synchronized (cacheMap) {
+          if (throwable != null || !isCacheable(result)) {
+            if (cacheMap.get(key) == entry) {
+              cacheMap.remove(key);
+            }
+          } else {
+            entry.setExpiryTime(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeToLive));
+          }
+        }
+
+        if (throwable != null) {
+          entry.getFuture().completeExceptionally(throwable);
+        } else {
+          entry.getFuture().complete(result);
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Check if a result can be cached
+   *
+   * @param result the result
+   * @return true if the command was successful and the result is not too large
+   */
+  protected boolean isCacheable(ProcessResult result) {
+    if (result == null || result.isTimedOut() || result.getExitValue() != 0) {
+      return false;
+    }
+
+    int size = 0;
+    if (result.getOutput() != null) {
+      size += result.getOutput().length();
+    }
+
+    if (result.getErrorOutput() != null) {
+      size += result.getErrorOutput().length();
+    }
+
+    synchronized (this) {
+      return size <= maximumResultSize;
+    }
+  }
+
+
+  /**
+   * Get the time to live of a command
+   *
+   * @param commandList the command list
+   * @return the time to live in milliseconds
+   */
+  protected synchronized long getTimeToLive(String... commandList) {
+    Long timeToLive = timeToLiveMap.get(Arrays.asList(commandList));
+    if (timeToLive != null) {
+      return timeToLive;
+    }
+
+    return defaultTimeToLive;
+  }
+
+
+  /**
+   * Holds a cached result
+   */
+  protected static class CacheEntry {
+    private CompletableFuture<ProcessResult> future;
+    private volatile long expiryTime;
+    private volatile boolean completed;
+
+
+    /**
+     * Constructor
+     *
+     * @param future the future of the result
+     */
+    CacheEntry(CompletableFuture<ProcessResult> future) {
+      this.future = future;
+      this.expiryTime = 0;
+      this.completed = false;
+    }
+
+
+    /**
+     * Get the future of the result
+     *
+     * @return the future
+     */
+    CompletableFuture<ProcessResult> getFuture() {
+      return future;
+    }
+
+
+    /**
+     * Set the expiry time
+     *
+     * @param expiryTime the expiry time in nano seconds
+     */
+    void setExpiryTime(long expiryTime) {
+      this.expiryTime = expiryTime;
+      this.completed = true;
+    }
+
+
+    /**
+     * Check if the result has expired, a running execution does not expire
+     *
+     * @param now the current time in nano seconds
+     * @return true if it has expired
+     */
+    boolean isExpired(long now) {
+      return completed && now - expiryTime >= 0;
+    }
+  }
+}
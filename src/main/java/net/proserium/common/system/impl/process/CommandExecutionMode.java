@@ -0,0 +1,24 @@
+/*
+ * CommandExecutionMode.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+
+/**
+ * Defines how a command is started by the process system executer.
+ *
+ * @author Patrick Meier
+ */
+public enum CommandExecutionMode {
+  /** The command is passed to a shell, e.g. <code>bash -c command</code> */
+  SHELL,
+
+  /** The command is executed directly as argument vector without a shell */
+  DIRECT,
+
+  /** The command is executed directly if it contains no shell meta characters, otherwise it is passed to a shell */
+  AUTO
+}
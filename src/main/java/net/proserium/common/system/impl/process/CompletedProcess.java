@@ -0,0 +1,126 @@
+/*
+ * CompletedProcess.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import net.proserium.common.system.ProcessResult;
+
+
+/**
+ * Represents an already ended process by its {@link ProcessResult}, e.g. for a command which was executed by a shell
+ * worker or which was taken from a cache.
+ *
+ * @author Patrick Meier
+ */
+public class CompletedProcess extends Process {
+  private ProcessResult processResult;
+  private Charset charset;
+
+
+  /**
+   * Constructor
+   *
+   * @param processResult the process result
+   * @param charset the charset of the output
+   */
+  public CompletedProcess(ProcessResult processResult, Charset charset) {
+    this.processResult = processResult;
+    this.charset = charset;
+  }
+
+
+  /**
+   * Get the process result
+   *
+   * @return the process result
+   */
+  public ProcessResult getProcessResult() {
+    return processResult;
+  }
+
+
+  /**
+   * @see java.lang.Process#getOutputStream()
+   */
+  @Override
+  public OutputStream getOutputStream() {
+    return new ByteArrayOutputStream();
+  }
+
+
+  /**
+   * @see java.lang.Process#getInputStream()
+   */
+  @Override
+  public InputStream getInputStream() {
+    return createInputStream(processResult.getOutput());
+  }
+
+
+  /**
+   * @see java.lang.Process#getErrorStream()
+   */
+  @Override
+  public InputStream getErrorStream() {
+    return createInputStream(processResult.getErrorOutput());
+  }
+
+
+  /**
+   * @see java.lang.Process#waitFor()
+   */
+  @Override
+  public int waitFor() {
+    return processResult.getExitValue();
+  }
+
+
+  /**
+   * @see java.lang.Process#exitValue()
+   */
+  @Override
+  public int exitValue() {
+    return processResult.getExitValue();
+  }
+
+
+  /**
+   * @see java.lang.Process#isAlive()
+   */
+  @Override
+  public boolean isAlive() {
+    return false;
+  }
+
+
+  /**
+   * @see java.lang.Process#destroy()
+   */
+  @Override
+  public void destroy() {
+    // NOP
+  }
+
+
+  /**
+   * Create an input stream
+   *
+   * @param data the data
+   * @return the input stream
+   */
+  private InputStream createInputStream(String data) {
+    if (data == null) {
+      return new ByteArrayInputStream(new byte[0]);
+    }
+
+    return new ByteArrayInputStream(data.getBytes(charset));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * ExecutablePathResolver.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import jptools.logger.Logger;
+
+
+/**
+ * Resolves executables against the <code>PATH</code> environment variable. The resolved paths are cached, so a command
+ * which is executed many times is looked up only once. An executable which could not be found is not cached, so it is
+ * resolved as soon as it has been installed. An explicit path is checked on each call and not cached.
+ *
+ * @author Patrick Meier
+ */
+public final class ExecutablePathResolver {
+  private static final Logger log = Logger.getLogger(ExecutablePathResolver.class);
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final ExecutablePathResolver INSTANCE = new ExecutablePathResolver();
+  }
+
+  private Map<String, String> executablePathMap;
+
+
+  /**
+   * Constructor
+   */
+  private ExecutablePathResolver() {
+    executablePathMap = new ConcurrentHashMap<String, String>();
+  }
+
+
+  /**
+   * Get the instance
+   *
+   * @return the instance
+   */
+  public static ExecutablePathResolver getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Resolve an executable. A name which contains a path separator is returned unchanged if it is an absolute path of an
+   * executable file. A relative path is not resolved, since it depends on the working directory of the process.
+   *
+   * @param executable the name of the executable
+   * @return the absolute path of the executable or null if it could not be found
+   */
+  public String resolve(String executable) {
+    if (executable == null || executable.isEmpty()) {
+      return null;
+    }
+
+    if (executable.indexOf(File.separatorChar) >= 0) {
+      File file = new File(executable);
+      if (file.isAbsolute() && file.isFile() && file.canExecute()) {
+        return executable;
+      }
+
+      return null;
+    }
+
+    String result = executablePathMap.get(executable);
+    if (result == null) {
+      result = lookup(executable);
+      if (result != null) {
+        executablePathMap.put(executable, result);
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Clear the cache, e.g. after the <code>PATH</code> or installed executables have changed
+   */
+  public void clear() {
+    executablePathMap.clear();
+  }
+
+
+  /**
+   * Lookup an executable
+   *
+   * @param executable the name of the executable
+   * @return the absolute path of the executable or null if it could not be found
+   */
+  private String lookup(String executable) {
+    String path = System.getenv("PATH");
+    if (path != null) {
+      for (String directory : path.split(File.pathSeparator)) {
+        if (directory.isEmpty()) {
+          continue;
+        }
+
+        File file = new File(directory, executable);
+        if (file.isFile() && file.canExecute()) {
+          log.debug("Resolved executable [" + executable + "] to [" + file.getAbsolutePath() + "].");
+          return file.getAbsolutePath();
+        }
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * FrameBuffer.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * Implements a growable byte buffer to search the frame markers in the output of a shell.
+ *
+ * @author Patrick Meier
+ */
+public class FrameBuffer {
+  private byte[] data;
+  private int length;
+
+
+  /**
+   * Constructor
+   *
+   * @param initialCapacity the initial capacity
+   */
+  public FrameBuffer(int initialCapacity) {
+    data = new byte[Math.max(initialCapacity, 16)];
+    length = 0;
+  }
+
+
+  /**
+   * Append data
+   *
+   * @param buffer the buffer
+   * @param offset the offset
+   * @param len the number of bytes to append
+   */
+  public void append(byte[] buffer, int offset, int len) {
+    if (length + len > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + len));
+    }
+
+    System.arraycopy(buffer, offset, data, length, len);
+    length += len;
+  }
+
+
+  /**
+   * Get the number of buffered bytes
+   *
+   * @return the length
+   */
+  public int length() {
+    return length;
+  }
+
+
+  /**
+   * Get a byte
+   *
+   * @param index the index
+   * @return the byte
+   */
+  public byte get(int index) {
+    return data[index];
+  }
+
+
+  /**
+   * Search a pattern
+   *
+   * @param pattern the pattern
+   * @param fromIndex the index to start the search from
+   * @return the index of the pattern or -1
+   */
+  public int indexOf(byte[] pattern, int fromIndex) {
+    int last = length - pattern.length;
+    for (int i = Math.max(fromIndex, 0); i <= last; i++) {
+      int j = 0;
+      while (j < pattern.length && data[i + j] == pattern[j]) {
+        j++;
+      }
+
+      if (j == pattern.length) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * Search a byte
+   *
+   * @param value the byte to search
+   * @param fromIndex the index to start the search from
+   * @return the index of the byte or -1
+   */
+  public int indexOf(byte value, int fromIndex) {
+    for (int i = Math.max(fromIndex, 0); i < length; i++) {
+      if (data[i] == value) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * Decode a part of the buffer
+   *
+   * @param fromIndex the start index
+   * @param toIndex the end index (exclusive)
+   * @param charset the charset
+   * @return the decoded string
+   */
+  public String toString(int fromIndex, int toIndex, Charset charset) {
+    return new String(data, fromIndex, toIndex - fromIndex, charset);
+  }
+
+
+  /**
+   * Remove the bytes before an index
+   *
+   * @param index the index of the first byte to keep
+   */
+  public void discard(int index) {
+    System.arraycopy(data, index, data, 0, length - index);
+    length -= index;
+  }
+
+
+  /**
+   * Remove all bytes
+   */
+  public void clear() {
+    length = 0;
+  }
+}
@@ -7,24 +7,314 @@
 package net.proserium.common.system.impl.process;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import jptools.logger.Logger;
 
 /**
- * Implements a linux based system command executer
+ * Implements a linux based system command executer. Depending on the {@link CommandExecutionMode} a command is passed
+ * to <code>bash -c</code> or executed directly, which saves the additional fork/exec and the startup of the shell.
+ * Optional {@link ProcessResourceLimits} are applied by prefixing the command with <code>nice</code>,
+ * <code>ionice</code> and <code>prlimit</code>, an optional cpu affinity by prefixing it with <code>taskset</code>.
  *
  * @author Patrick Meier
  */
 public class LinuxProcessSystemCommandExecuterImpl extends AbstractProcessSystemCommandExecuterImpl {
+  private static final Logger log = Logger.getLogger(LinuxProcessSystemCommandExecuterImpl.class);
+  private static final String SHELL_META_CHARACTERS = "|&;<>()$`\\\"'*?[]{}#~=%!\n";
+  private static final Set<String> SHELL_BUILTINS = new HashSet<String>(Arrays.asList("alias", "bg", "bind", "break", "builtin", "cd", "command", "continue", "declare", "dirs", "disown", "echo", "enable", "eval", "exec", "exit", "export", "fc", "fg", "getopts", "hash", "help", "history", "jobs", "kill", "let", "local", "logout", "popd", "printf", "pushd", "pwd", "read", "readonly", "return", "set", "shift", "shopt", "source", "test", "time", "times", "trap", "type", "typeset", "ulimit", "umask", "unalias", "unset", "wait", "."));
+  private CommandExecutionMode commandExecutionMode;
+  private ProcessResourceLimits resourceLimits;
+  private List<Integer> cpuAffinity;
+
+
+  /**
+   * Constructor, the commands are passed to a shell
+   */
+  public LinuxProcessSystemCommandExecuterImpl() {
+    this(CommandExecutionMode.SHELL);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param commandExecutionMode the command execution mode
+   */
+  public LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode commandExecutionMode) {
+    super();
+    this.commandExecutionMode = commandExecutionMode;
+    this.resourceLimits = null;
+    this.cpuAffinity = null;
+  }
+
+
+  /**
+   * Get the command execution mode
+   *
+   * @return the command execution mode
+   */
+  public CommandExecutionMode getCommandExecutionMode() {
+    return commandExecutionMode;
+  }
+
+
+  /**
+   * Set the command execution mode
+   *
+   * @param commandExecutionMode the command execution mode
+   */
+  public void setCommandExecutionMode(CommandExecutionMode commandExecutionMode) {
+    this.commandExecutionMode = commandExecutionMode;
+  }
+
+
+  /**
+   * Get the resource limits of the executed commands
+   *
+   * @return the resource limits or null
+   */
+  public ProcessResourceLimits getResourceLimits() {
+    return resourceLimits;
+  }
+
+
+  /**
+   * Set the resource limits of the executed commands
+   *
+   * @param resourceLimits the resource limits or null
+   */
+  public void setResourceLimits(ProcessResourceLimits resourceLimits) {
+    this.resourceLimits = resourceLimits;
+  }
+
+
+  /**
+   * Get the cpus the executed commands are pinned to
+   *
+   * @return the cpus or null
+   */
+  public List<Integer> getCpuAffinity() {
+    return cpuAffinity;
+  }
+
+
+  /**
+   * Set the cpus the executed commands are pinned to. The affinity is inherited by all child processes.
+   *
+   * @param cpuAffinity the cpus or null to run on all cpus
+   */
+  public void setCpuAffinity(List<Integer> cpuAffinity) {
+    this.cpuAffinity = cpuAffinity;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl#createStatisticsCollector(java.lang.Process)
+   */
+  @Override
+  public ProcessStatisticsCollector createStatisticsCollector(Process process) {
+    if (process == null || !ProcessStatisticsCollector.isSupported()) {
+      return null;
+    }
+
+    return new ProcessStatisticsCollector(process);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl#getBatchShellCommandList()
+   */
+  @Override
+  protected List<String> getBatchShellCommandList() {
+    return applyResourceLimits(Arrays.asList("bash", "--noprofile", "--norc"));
+  }
+
+
   /**
    * @see net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl#preparePlatformDependentCommandList(java.lang.String, java.util.List)
    */
   @Override
   protected List<String> preparePlatformDependentCommandList(String osName, List<String> commandList) {
+    List<String> directCommandList = prepareDirectCommandList(commandList);
+    if (directCommandList != null) {
+      return applyResourceLimits(directCommandList);
+    }
+
     List<String> commandParameterList = new ArrayList<String>();
     commandParameterList.add("bash");
     commandParameterList.add("-c");
     commandParameterList.addAll(commandList);
     // to proper use under linux you have to close streams: > my.log 2>&1 </dev/zero &
-    return commandParameterList;
+    return applyResourceLimits(commandParameterList);
+  }
+
+
+  /**
+   * Prefix a command with the tools which apply the cpu affinity and the resource limits. A tool which is not installed
+   * is skipped, the resource limits are then set by <code>ulimit</code> of a shell.
+   *
+   * @param commandList the command list
+   * @return the command list with the prefixes
+   */
+  protected List<String> applyResourceLimits(List<String> commandList) {
+    ProcessResourceLimits limits = resourceLimits;
+    List<Integer> cpuList = cpuAffinity;
+    if (limits == null && (cpuList == null || cpuList.isEmpty())) {
+      return commandList;
+    }
+
+    List<String> result = new ArrayList<String>();
+    if (cpuList != null && !cpuList.isEmpty()) {
+      StringBuilder cpus = new StringBuilder();
+      for (Integer cpu : cpuList) {
+        if (cpus.length() > 0) {
+          cpus.append(',');
+        }
+
+        cpus.append(cpu);
+      }
+
+      addTool(result, "taskset", "-c", cpus.toString());
+    }
+
+    if (limits == null) {
+      result.addAll(commandList);
+      return result;
+    }
+
+    if (limits.getNiceness() != null) {
+      addTool(result, "nice", "-n", String.valueOf(limits.getNiceness()));
+    }
+
+    if (limits.getIoSchedulingClass() != null) {
+      List<String> ioniceList = new ArrayList<String>(Arrays.asList("-c", String.valueOf(limits.getIoSchedulingClass().getValue())));
+      if (limits.getIoPriority() != null && limits.getIoSchedulingClass() != ProcessResourceLimits.IoSchedulingClass.IDLE) {
+        ioniceList.add("-n");
+        ioniceList.add(String.valueOf(limits.getIoPriority()));
+      }
+
+      addTool(result, "ionice", ioniceList.toArray(new String[ioniceList.size()]));
+    }
+
+    if (limits.hasResourceLimit()) {
+      List<String> prlimitList = new ArrayList<String>();
+      List<String> ulimitList = new ArrayList<String>();
+      if (limits.getMaximumAddressSpace() != null) {
+        prlimitList.add("--as=" + limits.getMaximumAddressSpace());
+        ulimitList.add("ulimit -v " + limits.getMaximumAddressSpace() / 1024);
+      }
+
+      if (limits.getMaximumOpenFiles() != null) {
+        prlimitList.add("--nofile=" + limits.getMaximumOpenFiles());
+        ulimitList.add("ulimit -n " + limits.getMaximumOpenFiles());
+      }
+
+      if (limits.getMaximumCpuTime() != null) {
+        prlimitList.add("--cpu=" + limits.getMaximumCpuTime());
+        ulimitList.add("ulimit -t " + limits.getMaximumCpuTime());
+      }
+
+      prlimitList.add("--");
+      if (!addTool(result, "prlimit", prlimitList.toArray(new String[prlimitList.size()]))) {
+        ulimitList.add("exec \"$@\"");
+        result.add("bash");
+        result.add("-c");
+        result.add(String.join("; ", ulimitList));
+        result.add("bash");
+      }
+    }
+
+    result.addAll(commandList);
+    return result;
+  }
+
+
+  /**
+   * Prepare the argument vector to execute a command without shell. In {@link CommandExecutionMode#DIRECT} a single
+   * command is split by whitespaces and a command list with more elements is taken as argument vector. In
+   * {@link CommandExecutionMode#AUTO} only a single command without shell meta characters is executed directly and only
+   * if its executable could be resolved, otherwise the shell reports the error of a missing or not executable file.
+   *
+   * @param commandList the command list
+   * @return the argument vector or null if the command has to be passed to a shell
+   */
+  protected List<String> prepareDirectCommandList(List<String> commandList) {
+    if (commandExecutionMode == null || commandExecutionMode == CommandExecutionMode.SHELL) {
+      return null;
+    }
+
+    List<String> argumentList;
+    if (commandList.size() == 1) {
+      String command = commandList.get(0);
+      if (commandExecutionMode == CommandExecutionMode.AUTO && containsShellMetaCharacter(command)) {
+        return null;
+      }
+
+      argumentList = new ArrayList<String>(Arrays.asList(command.trim().split("\\s+")));
+    } else if (commandExecutionMode == CommandExecutionMode.DIRECT) {
+      argumentList = new ArrayList<String>(commandList);
+    } else {
+      return null;
+    }
+
+    if (argumentList.isEmpty() || argumentList.get(0).isEmpty()) {
+      return null;
+    }
+
+    if (commandExecutionMode == CommandExecutionMode.AUTO && SHELL_BUILTINS.contains(argumentList.get(0))) {
+      return null;
+    }
+
+    String executable = ExecutablePathResolver.getInstance().resolve(argumentList.get(0));
+    if (executable == null) {
+      if (commandExecutionMode == CommandExecutionMode.AUTO) {
+        return null;
+      }
+    } else {
+      argumentList.set(0, executable);
+    }
+
+    return argumentList;
+  }
+
+
+  /**
+   * Add a tool with its arguments to a command list
+   *
+   * @param commandList the command list
+   * @param tool the name of the tool
+   * @param argumentList the arguments
+   * @return true if the tool is installed and has been added
+   */
+  private boolean addTool(List<String> commandList, String tool, String... argumentList) {
+    String executable = ExecutablePathResolver.getInstance().resolve(tool);
+    if (executable == null) {
+      log.warn("Could not apply resource limit since " + tool + " is not installed.");
+      return false;
+    }
+
+    commandList.add(executable);
+    commandList.addAll(Arrays.asList(argumentList));
+    return true;
+  }
+
+
+  /**
+   * Check if a command contains shell meta characters
+   *
+   * @param command the command
+   * @return true if the command needs a shell
+   */
+  protected boolean containsShellMetaCharacter(String command) {
+    for (int i = 0; i < command.length(); i++) {
+      if (SHELL_META_CHARACTERS.indexOf(command.charAt(i)) >= 0) {
+        return true;
+      }
+    }
+
+    return false;
   }
 }
@@ -0,0 +1,422 @@
+/*
+ * MonitoredProcess.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import jptools.logger.Logger;
+import net.proserium.common.system.ProcessResult;
+import net.proserium.common.system.ProcessStatistics;
+import net.proserium.common.util.ProcessUtil;
+
+
+/**
+ * Holds the state of a process which is watched by the {@link ProcessMonitor}. The standard and the error output are
+ * drained by blocking reads, the future is completed as soon as the process has ended and both outputs have reached
+ * their end. A child which keeps an output open after the process has ended is not waited for longer than the pipe grace
+ * period. If the process exceeds its deadline, the process and all its descendants are terminated gracefully and killed
+ * after the termination grace period. The future is completed by the completion executor of the {@link ProcessMonitor}.
+ *
+ * @author Patrick Meier
+ */
+public class MonitoredProcess {
+  private static final Logger log = Logger.getLogger(MonitoredProcess.class);
+  private static final long PIPE_GRACE_PERIOD = 50;
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private Process process;
+  private List<String> commandList;
+  private Charset charset;
+  private long startTime;
+  private ByteArrayOutputStream output;
+  private ByteArrayOutputStream errorOutput;
+  private boolean outputEnded;
+  private boolean errorOutputEnded;
+  private boolean exited;
+  private boolean pipeGracePeriodExpired;
+  private long timeout;
+  private long terminationGracePeriod;
+  private boolean terminated;
+  private boolean killed;
+  private List<Object> descendantList;
+  private Future<?> deadlineTask;
+  private Future<?> killTask;
+  private ProcessStatisticsCollector statisticsCollector;
+  private CompletableFuture<ProcessResult> future;
+  private boolean completed;
+
+
+  /**
+   * Constructor
+   *
+   * @param process the process
+   * @param commandList the command list
+   * @param charset the charset of the process output
+   * @param startTime the start time in milliseconds
+   * @param timeout the timeout in milliseconds. If the value less or equals 0, the process is not terminated
+   * @param terminationGracePeriod the time in milliseconds between the graceful termination and the kill
+   */
+  public MonitoredProcess(Process process, List<String> commandList, Charset charset, long startTime, long timeout, long terminationGracePeriod) {
+    this.process = process;
+    this.commandList = commandList;
+    this.charset = charset;
+    this.startTime = startTime;
+    this.output = new ByteArrayOutputStream();
+    this.errorOutput = new ByteArrayOutputStream();
+    this.outputEnded = false;
+    this.errorOutputEnded = false;
+    this.exited = false;
+    this.pipeGracePeriodExpired = false;
+    this.timeout = timeout;
+    this.terminationGracePeriod = terminationGracePeriod;
+    this.terminated = false;
+    this.killed = false;
+    this.descendantList = null;
+    this.deadlineTask = null;
+    this.killTask = null;
+    this.statisticsCollector = null;
+    this.future = new CompletableFuture<ProcessResult>();
+    this.completed = false;
+  }
+
+
+  /**
+   * Get the process
+   *
+   * @return the process
+   */
+  public Process getProcess() {
+    return process;
+  }
+
+
+  /**
+   * Set the collector of the resource usage which is sampled until the process has ended
+   *
+   * @param statisticsCollector the statistics collector
+   */
+  public void setStatisticsCollector(ProcessStatisticsCollector statisticsCollector) {
+    this.statisticsCollector = statisticsCollector;
+  }
+
+
+  /**
+   * Get the future which is completed as soon as the process has ended
+   *
+   * @return the future
+   */
+  public CompletableFuture<ProcessResult> getFuture() {
+    return future;
+  }
+
+
+  /**
+   * Start to drain the output, to wait for the end of the process and to watch its deadline
+   */
+  public void start() {
+    drain(process.getInputStream(), output, false);
+    drain(process.getErrorStream(), errorOutput, true);
+
+    ProcessUtil.getInstance().onExit(process).whenCompleteAsync(new BiConsumer<Process, Throwable>() {
+      @Override
+      public void accept(Process p, Throwable throwable) {
+        if (throwable != null && process.isAlive()) {
+          fail(throwable);
+        } else {
+          processExited();
+        }
+      }
+    }, ProcessMonitor.getInstance().getCompletionExecutor());
+
+    if (timeout > 0) {
+      synchronized (this) {
+        if (!completed) {
+          deadlineTask = ProcessMonitor.getInstance().getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+              deadlineExpired();
+            }
+          }, timeout, TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Check if the monitored process is done
+   *
+   * @return true if the completion of the future has been started
+   */
+  public synchronized boolean isDone() {
+    return completed;
+  }
+
+
+  /**
+   * Completes the future exceptionally
+   *
+   * @param throwable the cause
+   */
+  public synchronized void fail(final Throwable throwable) {
+    if (completed) {
+      return;
+    }
+
+    completed = true;
+    cancelTasks();
+    if (statisticsCollector != null) {
+      ProcessStatisticsSampler.getInstance().unregister(statisticsCollector);
+    }
+
+    ProcessMonitor.getInstance().getCompletionExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        future.completeExceptionally(throwable);
+      }
+    });
+  }
+
+
+  /**
+   * Drain an output of the process by blocking reads until its end
+   *
+   * @param inputStream the output of the process
+   * @param outputStream the output stream to write into
+   * @param error true for the error output
+   */
+  protected void drain(final InputStream inputStream, final ByteArrayOutputStream outputStream, final boolean error) {
+    ProcessMonitor.getInstance().getCompletionExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+          int length;
+          while ((length = inputStream.read(buffer)) >= 0) {
+            synchronized (outputStream) {
+              outputStream.write(buffer, 0, length);
+            }
+          }
+        } catch (IOException e) {
+          // the stream has been closed
+        } finally {
+          outputEnded(error);
+        }
+      }
+    });
+  }
+
+
+  /**
+   * Called as soon as an output of the process has reached its end
+   *
+   * @param error true for the error output
+   */
+  protected synchronized void outputEnded(boolean error) {
+    if (error) {
+      errorOutputEnded = true;
+    } else {
+      outputEnded = true;
+    }
+
+    tryComplete();
+  }
+
+
+  /**
+   * Called as soon as the process has ended. A child which keeps an output open is waited for the pipe grace period.
+   */
+  protected synchronized void processExited() {
+    exited = true;
+    tryComplete();
+
+    if (!completed && !(outputEnded && errorOutputEnded)) {
+      ProcessMonitor.getInstance().getScheduler().schedule(new Runnable() {
+        @Override
+        public void run() {
+          pipeGracePeriodExpired();
+        }
+      }, PIPE_GRACE_PERIOD, TimeUnit.MILLISECONDS);
+    }
+  }
+
+
+  /**
+   * Called after the pipe grace period, the output which is still open is not waited for anymore
+   */
+  protected synchronized void pipeGracePeriodExpired() {
+    pipeGracePeriodExpired = true;
+    tryComplete();
+  }
+
+
+  /**
+   * Called as soon as the deadline has expired
+   */
+  protected synchronized void deadlineExpired() {
+    if (completed || !process.isAlive()) {
+      return;
+    }
+
+    terminate();
+    killTask = ProcessMonitor.getInstance().getScheduler().schedule(new Runnable() {
+      @Override
+      public void run() {
+        kill();
+      }
+    }, terminationGracePeriod, TimeUnit.MILLISECONDS);
+  }
+
+
+  /**
+   * Completes the future if the process has ended and its output has been drained. The descendants of a terminated
+   * process are waited for until the kill.
+   */
+  protected synchronized void tryComplete() {
+    if (completed || !exited) {
+      return;
+    }
+
+    if (terminated && !killed && isDescendantAlive()) {
+      // wait for the grace period of the terminated descendants
+      return;
+    }
+
+    if (!(outputEnded && errorOutputEnded) && !pipeGracePeriodExpired) {
+      return;
+    }
+
+    complete();
+  }
+
+
+  /**
+   * Completes the future with the captured result
+   */
+  protected void complete() {
+    completed = true;
+    cancelTasks();
+
+    // a child which keeps the pipe open is not waited for
+    closeStream(process.getInputStream());
+    closeStream(process.getErrorStream());
+
+    ProcessStatistics statistics = null;
+    if (statisticsCollector != null) {
+      ProcessStatisticsSampler.getInstance().unregister(statisticsCollector);
+      statistics = statisticsCollector.getStatistics();
+    }
+
+    int exitValue = process.exitValue();
+    final ProcessResult result = new ProcessResult(commandList, exitValue, toString(output), toString(errorOutput), startTime, System.currentTimeMillis(), terminated, statistics);
+    log.debug("Command " + commandList + " -> returns " + exitValue + " (" + result.getDuration() + "ms).");
+
+    // the dependent stages of the caller must not run on a thread of the monitor
+    ProcessMonitor.getInstance().getCompletionExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        future.complete(result);
+      }
+    });
+  }
+
+
+  /**
+   * Terminate the process and all its descendants gracefully
+   */
+  protected void terminate() {
+    log.info("Command " + commandList + " exceeded its deadline, terminate process tree.");
+    terminated = true;
+    // the process handles are kept, a process id could be reused by an unrelated process until the kill
+    descendantList = ProcessUtil.getInstance().destroyProcessTree(process, null, false);
+  }
+
+
+  /**
+   * Kill the process and all its descendants
+   */
+  protected synchronized void kill() {
+    if (completed) {
+      return;
+    }
+
+    killed = true;
+    if (process.isAlive() || isDescendantAlive()) {
+      log.info("Command " + commandList + " did not end within the grace period, kill process tree.");
+      ProcessUtil.getInstance().destroyProcessTree(process, descendantList, true);
+    }
+
+    tryComplete();
+  }
+
+
+  /**
+   * Check if any of the descendants which were known at termination time is still alive
+   *
+   * @return true if a descendant is alive
+   */
+  protected boolean isDescendantAlive() {
+    if (descendantList == null) {
+      return false;
+    }
+
+    for (Object processHandle : descendantList) {
+      if (ProcessUtil.getInstance().isProcessAlive(processHandle)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+
+  /**
+   * Cancel the scheduled deadline and kill
+   */
+  private void cancelTasks() {
+    if (deadlineTask != null) {
+      deadlineTask.cancel(false);
+    }
+
+    if (killTask != null) {
+      killTask.cancel(false);
+    }
+  }
+
+
+  /**
+   * Decode the drained output
+   *
+   * @param outputStream the output stream
+   * @return the output
+   */
+  private String toString(ByteArrayOutputStream outputStream) {
+    synchronized (outputStream) {
+      return new String(outputStream.toByteArray(), charset);
+    }
+  }
+
+
+  /**
+   * Close a stream
+   *
+   * @param inputStream the stream to close
+   */
+  private void closeStream(InputStream inputStream) {
+    try {
+      inputStream.close();
+    } catch (Exception e) {
+      // NOP
+    }
+  }
+}
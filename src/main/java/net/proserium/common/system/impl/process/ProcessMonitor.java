@@ -0,0 +1,97 @@
+/*
+ * ProcessMonitor.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import jptools.logger.Logger;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Watches all asynchronously executed processes. The output of a process is drained by blocking reads and its end is
+ * signalled by the exit future of the process, so a result is completed as soon as the process has ended and its output
+ * has been read, without polling. The deadlines of the processes are enforced by a scheduler thread which only wakes up
+ * if a deadline or the grace period of a terminated process has expired.
+ * <p>
+ * The output is drained and the futures of the processes are completed by the completion executor, so the dependent
+ * stages of a caller never run on the scheduler thread. A slow or blocking callback therefore neither stops the draining
+ * of the other processes nor delays their deadlines.
+ *
+ * @author Patrick Meier
+ */
+public final class ProcessMonitor {
+  private static final Logger log = Logger.getLogger(ProcessMonitor.class);
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final ProcessMonitor INSTANCE = new ProcessMonitor();
+  }
+
+  private ExecutorService completionExecutor;
+  private ScheduledExecutorService scheduler;
+
+
+  /**
+   * Constructor
+   */
+  private ProcessMonitor() {
+    completionExecutor = Executors.newCachedThreadPool(ThreadUtil.getInstance().createDaemonThreadFactory(ProcessMonitor.class.getName() + ": completion"));
+    ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, ThreadUtil.getInstance().createDaemonThreadFactory(ProcessMonitor.class.getName() + ": scheduler"));
+    scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+    scheduler = scheduledThreadPoolExecutor;
+  }
+
+
+  /**
+   * Get the instance
+   *
+   * @return the instance
+   */
+  public static ProcessMonitor getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Get the executor which drains the output of the processes and completes their futures
+   *
+   * @return the completion executor
+   */
+  public ExecutorService getCompletionExecutor() {
+    return completionExecutor;
+  }
+
+
+  /**
+   * Get the scheduler which enforces the deadlines of the processes
+   *
+   * @return the scheduler
+   */
+  public ScheduledExecutorService getScheduler() {
+    return scheduler;
+  }
+
+
+  /**
+   * Add a process to monitor
+   *
+   * @param monitoredProcess the monitored process
+   */
+  public void add(MonitoredProcess monitoredProcess) {
+    try {
+      monitoredProcess.start();
+    } catch (Exception e) {
+      log.warn("Error occured while monitoring process: " + e.getMessage(), e);
+      monitoredProcess.fail(e);
+    }
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * ProcessResourceLimits.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.Serializable;
+
+
+/**
+ * Defines the resource limits of a process: the cpu niceness, the io scheduling and the resource limits (rlimits) for
+ * the address space, the open files and the cpu time. A value which is null is not limited.
+ *
+ * @author Patrick Meier
+ */
+public class ProcessResourceLimits implements Serializable {
+  /** serialVersionUID */
+  private static final long serialVersionUID = -3958117736451580262L;
+
+  /**
+   * Defines the io scheduling class of a process
+   */
+  public enum IoSchedulingClass {
+    /** Gets the disk first, requires root privileges */
+    REALTIME(1),
+
+    /** The default class */
+    BEST_EFFORT(2),
+
+    /** Gets the disk only if no other process needs it */
+    IDLE(3);
+
+    private int value;
+
+
+    /**
+     * Constructor
+     *
+     * @param value the value of the class
+     */
+    IoSchedulingClass(int value) {
+      this.value = value;
+    }
+
+
+    /**
+     * Get the value of the class as used by ionice
+     *
+     * @return the value
+     */
+    public int getValue() {
+      return value;
+    }
+  }
+
+  private Integer niceness;
+  private IoSchedulingClass ioSchedulingClass;
+  private Integer ioPriority;
+  private Long maximumAddressSpace;
+  private Long maximumOpenFiles;
+  private Long maximumCpuTime;
+
+
+  /**
+   * Get the cpu niceness
+   *
+   * @return the niceness from -20 (highest priority) to 19 (lowest priority) or null
+   */
+  public Integer getNiceness() {
+    return niceness;
+  }
+
+
+  /**
+   * Set the cpu niceness, a negative value requires root privileges
+   *
+   * @param niceness the niceness from -20 (highest priority) to 19 (lowest priority) or null
+   */
+  public void setNiceness(Integer niceness) {
+    this.niceness = niceness;
+  }
+
+
+  /**
+   * Get the io scheduling class
+   *
+   * @return the io scheduling class or null
+   */
+  public IoSchedulingClass getIoSchedulingClass() {
+    return ioSchedulingClass;
+  }
+
+
+  /**
+   * Set the io scheduling class
+   *
+   * @param ioSchedulingClass the io scheduling class or null
+   */
+  public void setIoSchedulingClass(IoSchedulingClass ioSchedulingClass) {
+    this.ioSchedulingClass = ioSchedulingClass;
+  }
+
+
+  /**
+   * Get the io priority within the io scheduling class
+   *
+   * @return the io priority from 0 (highest) to 7 (lowest) or null
+   */
+  public Integer getIoPriority() {
+    return ioPriority;
+  }
+
+
+  /**
+   * Set the io priority within the io scheduling class, it is ignored for {@link IoSchedulingClass#IDLE}
+   *
+   * @param ioPriority the io priority from 0 (highest) to 7 (lowest) or null
+   */
+  public void setIoPriority(Integer ioPriority) {
+    this.ioPriority = ioPriority;
+  }
+
+
+  /**
+   * Get the maximum address space
+   *
+   * @return the maximum address space in bytes or null
+   */
+  public Long getMaximumAddressSpace() {
+    return maximumAddressSpace;
+  }
+
+
+  /**
+   * Set the maximum address space
+   *
+   * @param maximumAddressSpace the maximum address space in bytes or null
+   */
+  public void setMaximumAddressSpace(Long maximumAddressSpace) {
+    this.maximumAddressSpace = maximumAddressSpace;
+  }
+
+
+  /**
+   * Get the maximum number of open files
+   *
+   * @return the maximum number of open files or null
+   */
+  public Long getMaximumOpenFiles() {
+    return maximumOpenFiles;
+  }
+
+
+  /**
+   * Set the maximum number of open files
+   *
+   * @param maximumOpenFiles the maximum number of open files or null
+   */
+  public void setMaximumOpenFiles(Long maximumOpenFiles) {
+    this.maximumOpenFiles = maximumOpenFiles;
+  }
+
+
+  /**
+   * Get the maximum cpu time
+   *
+   * @return the maximum cpu time in seconds or null
+   */
+  public Long getMaximumCpuTime() {
+    return maximumCpuTime;
+  }
+
+
+  /**
+   * Set the maximum cpu time, the process gets SIGXCPU when it is exceeded
+   *
+   * @param maximumCpuTime the maximum cpu time in seconds or null
+   */
+  public void setMaximumCpuTime(Long maximumCpuTime) {
+    this.maximumCpuTime = maximumCpuTime;
+  }
+
+
+  /**
+   * Check if any resource limit (rlimit) is defined
+   *
+   * @return true if the address space, the open files or the cpu time is limited
+   */
+  public boolean hasResourceLimit() {
+    return maximumAddressSpace != null || maximumOpenFiles != null || maximumCpuTime != null;
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "ProcessResourceLimits [niceness=" + niceness + ", ioSchedulingClass=" + ioSchedulingClass + ", ioPriority=" + ioPriority + ", maximumAddressSpace=" + maximumAddressSpace
+           + ", maximumOpenFiles=" + maximumOpenFiles + ", maximumCpuTime=" + maximumCpuTime + "]";
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * ProcessStatisticsCollector.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import net.proserium.common.system.ProcessStatistics;
+import net.proserium.common.util.ProcessUtil;
+
+
+/**
+ * Collects the resource usage of a process tree from <code>/proc/&lt;pid&gt;/stat</code>, <code>status</code> and
+ * <code>io</code>. The last sample of each process is kept, so processes which have ended are still accounted with
+ * their last observed values. The collector is sampled by the {@link ProcessStatisticsSampler}.
+ *
+ * @author Patrick Meier
+ */
+public class ProcessStatisticsCollector {
+  private static final String PROC_PATH = "/proc/";
+
+  // the clock ticks of /proc/<pid>/stat are defined as USER_HZ which is fixed to 100 by the kernel ABI
+  private static final long MILLISECONDS_PER_TICK = 10;
+  private static final int USER_TIME = 0;
+  private static final int SYSTEM_TIME = 1;
+  private static final int RESIDENT_SET_SIZE = 2;
+  private static final int PEAK_RESIDENT_SET_SIZE = 3;
+  private static final int READ_BYTES = 4;
+  private static final int WRITE_BYTES = 5;
+  private static final int VOLUNTARY_CONTEXT_SWITCHES = 6;
+  private static final int INVOLUNTARY_CONTEXT_SWITCHES = 7;
+  private static final int NUMBER_OF_VALUES = 8;
+  private Process process;
+  private long pid;
+  private Map<Long, long[]> sampleMap;
+  private long peakResidentSetSize;
+  private Consumer<ProcessStatistics> listener;
+
+
+  /**
+   * Constructor
+   *
+   * @param process the process
+   */
+  public ProcessStatisticsCollector(Process process) {
+    this.process = process;
+    this.pid = ProcessUtil.getInstance().getPid(process);
+    this.sampleMap = new HashMap<Long, long[]>();
+    this.peakResidentSetSize = 0;
+    this.listener = null;
+  }
+
+
+  /**
+   * Check if the statistics can be collected on this system
+   *
+   * @return true if the proc file system and the process ids are available
+   */
+  public static boolean isSupported() {
+    return ProcessUtil.getInstance().isProcessHandleSupported() && new File(PROC_PATH + "self/stat").exists();
+  }
+
+
+  /**
+   * Set a listener which is called after each sample
+   *
+   * @param listener the listener or null
+   */
+  public synchronized void setListener(Consumer<ProcessStatistics> listener) {
+    this.listener = listener;
+  }
+
+
+  /**
+   * Sample the process tree
+   */
+  public void sample() {
+    if (pid < 0) {
+      return;
+    }
+
+    List<Long> pidList = new ArrayList<Long>();
+    if (process.isAlive()) {
+      pidList.add(pid);
+    }
+    pidList.addAll(ProcessUtil.getInstance().getDescendantPids(process));
+
+    ProcessStatistics statistics;
+    Consumer<ProcessStatistics> currentListener;
+    synchronized (this) {
+      long residentSetSize = 0;
+      for (Long processId : pidList) {
+        long[] values = readValues(processId);
+        if (values != null) {
+          sampleMap.put(processId, values);
+          residentSetSize += values[RESIDENT_SET_SIZE];
+        }
+      }
+
+      peakResidentSetSize = Math.max(peakResidentSetSize, residentSetSize);
+      statistics = getStatistics();
+      currentListener = listener;
+    }
+
+    if (currentListener != null) {
+      currentListener.accept(statistics);
+    }
+  }
+
+
+  /**
+   * Get the statistics of the samples so far
+   *
+   * @return the statistics
+   */
+  public synchronized ProcessStatistics getStatistics() {
+    long[] total = new long[NUMBER_OF_VALUES];
+    long peak = peakResidentSetSize;
+    for (long[] values : sampleMap.values()) {
+      for (int i = 0; i < NUMBER_OF_VALUES; i++) {
+        total[i] += values[i];
+      }
+
+      peak = Math.max(peak, values[PEAK_RESIDENT_SET_SIZE]);
+    }
+
+    return new ProcessStatistics(sampleMap.size(), total[USER_TIME] * MILLISECONDS_PER_TICK, total[SYSTEM_TIME] * MILLISECONDS_PER_TICK, peak, total[READ_BYTES], total[WRITE_BYTES],
+                                 total[VOLUNTARY_CONTEXT_SWITCHES], total[INVOLUNTARY_CONTEXT_SWITCHES]);
+  }
+
+
+  /**
+   * Read the values of a process
+   *
+   * @param processId the process id
+   * @return the values or null if the process has ended
+   */
+  protected long[] readValues(long processId) {
+    long[] values = new long[NUMBER_OF_VALUES];
+    String path = PROC_PATH + processId + "/";
+
+    try {
+      // the command name may contain spaces, the fields start after the closing parenthesis with the state (field 3)
+      String stat = new String(Files.readAllBytes(Paths.get(path + "stat")), StandardCharsets.US_ASCII);
+      String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+      values[USER_TIME] = Long.parseLong(fields[11]);
+      values[SYSTEM_TIME] = Long.parseLong(fields[12]);
+
+      for (String line : Files.readAllLines(Paths.get(path + "status"), StandardCharsets.US_ASCII)) {
+        if (line.startsWith("VmRSS:")) {
+          values[RESIDENT_SET_SIZE] = parseValue(line) * 1024;
+        } else if (line.startsWith("VmHWM:")) {
+          values[PEAK_RESIDENT_SET_SIZE] = parseValue(line) * 1024;
+        } else if (line.startsWith("voluntary_ctxt_switches:")) {
+          values[VOLUNTARY_CONTEXT_SWITCHES] = parseValue(line);
+        } else if (line.startsWith("nonvoluntary_ctxt_switches:")) {
+          values[INVOLUNTARY_CONTEXT_SWITCHES] = parseValue(line);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // the process has ended in between
+      return null;
+    }
+
+    try {
+      for (String line : Files.readAllLines(Paths.get(path + "io"), StandardCharsets.US_ASCII)) {
+        if (line.startsWith("read_bytes:")) {
+          values[READ_BYTES] = parseValue(line);
+        } else if (line.startsWith("write_bytes:")) {
+          values[WRITE_BYTES] = parseValue(line);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // the io accounting is not readable for every process
+      long[] lastValues = sampleMap.get(processId);
+      if (lastValues != null) {
+        values[READ_BYTES] = lastValues[READ_BYTES];
+        values[WRITE_BYTES] = lastValues[WRITE_BYTES];
+      }
+    }
+
+    return values;
+  }
+
+
+  /**
+   * Parse the value of a line like <code>VmHWM:	  1234 kB</code>
+   *
+   * @param line the line
+   * @return the value
+   */
+  private long parseValue(String line) {
+    String value = line.substring(line.indexOf(':') + 1).trim();
+    int index = value.indexOf(' ');
+    if (index > 0) {
+      value = value.substring(0, index);
+    }
+
+    return Long.parseLong(value);
+  }
+}
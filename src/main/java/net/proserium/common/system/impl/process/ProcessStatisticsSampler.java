@@ -0,0 +1,133 @@
+/*
+ * ProcessStatisticsSampler.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import jptools.logger.Logger;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Samples all registered {@link ProcessStatisticsCollector} from one daemon thread. The sampling runs only while
+ * collectors are registered.
+ *
+ * @author Patrick Meier
+ */
+public final class ProcessStatisticsSampler {
+  private static final Logger log = Logger.getLogger(ProcessStatisticsSampler.class);
+
+  /** The default sample interval in milliseconds */
+  public static final long DEFAULT_SAMPLE_INTERVAL = 250;
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   */
+  private static class HOLDER {
+    static final ProcessStatisticsSampler INSTANCE = new ProcessStatisticsSampler();
+  }
+
+  private Set<ProcessStatisticsCollector> collectorSet;
+  private ScheduledExecutorService scheduledExecutorService;
+  private ScheduledFuture<?> scheduledFuture;
+  private long sampleInterval;
+
+
+  /**
+   * Constructor
+   */
+  private ProcessStatisticsSampler() {
+    collectorSet = ConcurrentHashMap.newKeySet();
+    scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(ThreadUtil.getInstance().createDaemonThreadFactory(ProcessStatisticsSampler.class.getName()));
+    scheduledFuture = null;
+    sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+  }
+
+
+  /**
+   * Get the instance
+   *
+   * @return the instance
+   */
+  public static ProcessStatisticsSampler getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Get the sample interval in milliseconds
+   *
+   * @return the sample interval
+   */
+  public synchronized long getSampleInterval() {
+    return sampleInterval;
+  }
+
+
+  /**
+   * Set the sample interval in milliseconds, it is used as soon as the sampling is started again
+   *
+   * @param sampleInterval the sample interval
+   */
+  public synchronized void setSampleInterval(long sampleInterval) {
+    this.sampleInterval = Math.max(sampleInterval, 1);
+  }
+
+
+  /**
+   * Register a collector, it is sampled immediately and then periodically
+   *
+   * @param collector the collector
+   */
+  public void register(ProcessStatisticsCollector collector) {
+    collector.sample();
+
+    synchronized (this) {
+      collectorSet.add(collector);
+      if (scheduledFuture == null) {
+        scheduledFuture = scheduledExecutorService.scheduleWithFixedDelay(new Runnable() {
+          @Override
+          public void run() {
+            sampleAll();
+          }
+        }, sampleInterval, sampleInterval, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+
+  /**
+   * Unregister a collector
+   *
+   * @param collector the collector
+   */
+  public synchronized void unregister(ProcessStatisticsCollector collector) {
+    collectorSet.remove(collector);
+    if (collectorSet.isEmpty() && scheduledFuture != null) {
+      scheduledFuture.cancel(false);
+      scheduledFuture = null;
+    }
+  }
+
+
+  /**
+   * Sample all registered collectors
+   */
+  private void sampleAll() {
+    for (ProcessStatisticsCollector collector : collectorSet) {
+      try {
+        collector.sample();
+      } catch (Exception e) {
+        log.debug("Could not sample process statistics: " + e.getMessage());
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * ShellCommandFrame.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.List;
+
+
+/**
+ * Frames a command which is written to a long living shell. The command runs in a sub shell, so it can neither change
+ * the state of the shell nor end it. After the command the shell writes a unique marker and the exit code to the standard
+ * output and the marker to the error output, which delimits the output of the command.
+ *
+ * @author Patrick Meier
+ */
+public class ShellCommandFrame {
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final String EXIT_CODE_VARIABLE = "__proserium_rc";
+  private String marker;
+
+
+  /**
+   * Constructor
+   */
+  public ShellCommandFrame() {
+    marker = "__proserium_frame_" + Long.toHexString(RANDOM.nextLong()) + Long.toHexString(System.nanoTime());
+  }
+
+
+  /**
+   * Get the marker
+   *
+   * @return the marker
+   */
+  public String getMarker() {
+    return marker;
+  }
+
+
+  /**
+   * Create the framed script of a command
+   *
+   * @param path the path to execute the command or null
+   * @param commandList the command list as in {@link #toCommand(List)}
+   * @return the script
+   */
+  public String createScript(String path, List<String> commandList) {
+    String command = toCommand(commandList);
+    StringBuilder script = new StringBuilder();
+    script.append("( ");
+    if (path != null) {
+      script.append("cd -- ").append(quote(path)).append(" && ");
+    }
+
+    // eval keeps a syntax error of the command inside the sub shell
+    script.append("eval ").append(quote(command)).append(" ) </dev/null\n");
+    script.append(EXIT_CODE_VARIABLE).append("=$?\n");
+    script.append("printf '\\n%s %d\\n' '").append(marker).append("' \"$").append(EXIT_CODE_VARIABLE).append("\"\n");
+    script.append("printf '\\n%s\\n' '").append(marker).append("' >&2\n");
+    return script.toString();
+  }
+
+
+  /**
+   * Convert a command list into a shell command. A single element is a shell command, e.g. with pipes or redirections.
+   * More elements are an argument vector, each element is quoted, so an argument with blanks or shell meta characters is
+   * passed unchanged.
+   *
+   * @param commandList the command list
+   * @return the shell command
+   */
+  public static String toCommand(List<String> commandList) {
+    if (commandList.size() == 1) {
+      return commandList.get(0);
+    }
+
+    StringBuilder command = new StringBuilder();
+    for (String c : commandList) {
+      if (command.length() > 0) {
+        command.append(' ');
+      }
+
+      command.append(quote(c));
+    }
+
+    return command.toString();
+  }
+
+
+  /**
+   * Parse the exit code which follows the marker
+   *
+   * @param value the exit code
+   * @return the exit code or -1 if it is not a number
+   */
+  public static int parseExitValue(String value) {
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+
+  /**
+   * Get the marker which ends the standard output, it is followed by the exit code and a new line
+   *
+   * @param charset the charset
+   * @return the marker
+   */
+  public byte[] getOutputMarker(Charset charset) {
+    return ("\n" + marker + " ").getBytes(charset);
+  }
+
+
+  /**
+   * Get the marker which ends the error output
+   *
+   * @param charset the charset
+   * @return the marker
+   */
+  public byte[] getErrorMarker(Charset charset) {
+    return ("\n" + marker + "\n").getBytes(charset);
+  }
+
+
+  /**
+   * Quote a string for the shell
+   *
+   * @param value the value
+   * @return the quoted value
+   */
+  public static String quote(String value) {
+    return "'" + value.replace("'", "'\\''") + "'";
+  }
+}
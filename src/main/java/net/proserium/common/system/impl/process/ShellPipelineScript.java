@@ -0,0 +1,164 @@
+/*
+ * ShellPipelineScript.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import jptools.logger.Logger;
+import net.proserium.common.system.ProcessResult;
+
+
+/**
+ * Creates the shell script of a pipeline for runtimes which can not connect processes. The stages are connected by the
+ * pipes of the shell, so the data does not pass the java process either. The error output and the exit code of each
+ * stage are written into files of a temporary directory, since a plain <code>sh</code> has no
+ * <code>PIPESTATUS</code>.
+ *
+ * @author Patrick Meier
+ */
+public class ShellPipelineScript {
+  private static final Logger log = Logger.getLogger(ShellPipelineScript.class);
+  private List<String[]> commandList;
+  private File outputFile;
+  private File directory;
+
+
+  /**
+   * Constructor
+   *
+   * @param commandList the commands of the stages
+   * @param outputFile the file the output of the last stage is appended to or null
+   * @throws IOException in case the temporary directory could not be created
+   */
+  public ShellPipelineScript(List<String[]> commandList, File outputFile) throws IOException {
+    this.commandList = commandList;
+    this.outputFile = outputFile;
+    this.directory = Files.createTempDirectory("pipeline").toFile();
+  }
+
+
+  /**
+   * Create the script
+   *
+   * @param path the path to execute the pipeline or null
+   * @return the script
+   */
+  public String createScript(String path) {
+    StringBuilder script = new StringBuilder();
+    if (path != null) {
+      script.append("cd -- ").append(ShellCommandFrame.quote(path)).append(" || exit 1\n");
+    }
+
+    for (int i = 0; i < commandList.size(); i++) {
+      if (i > 0) {
+        script.append(" | ");
+      }
+
+      // eval keeps a syntax error of a stage inside its sub shell
+      script.append("{ ( eval ").append(ShellCommandFrame.quote(ShellCommandFrame.toCommand(Arrays.asList(commandList.get(i))))).append(" ) 2>").append(ShellCommandFrame.quote(getErrorFile(i).getPath()));
+      if (i == 0) {
+        script.append(" </dev/null");
+      }
+
+      script.append("; echo $? >").append(ShellCommandFrame.quote(getExitValueFile(i).getPath())).append("; }");
+    }
+
+    if (outputFile != null) {
+      script.append(" >>").append(ShellCommandFrame.quote(outputFile.getPath()));
+    }
+
+    script.append('\n');
+    return script.toString();
+  }
+
+
+  /**
+   * Create the results of the stages from the result of the shell. The output of the shell is the output of the last
+   * stage.
+   *
+   * @param shellResult the result of the shell
+   * @param charset the charset of the error output
+   * @return the results of the stages
+   */
+  public List<ProcessResult> createResults(ProcessResult shellResult, Charset charset) {
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    for (int i = 0; i < commandList.size(); i++) {
+      int exitValue = -1;
+      String errorOutput = "";
+      try {
+        File exitValueFile = getExitValueFile(i);
+        if (exitValueFile.exists()) {
+          exitValue = Integer.parseInt(new String(Files.readAllBytes(exitValueFile.toPath()), charset).trim());
+        }
+
+        File errorFile = getErrorFile(i);
+        if (errorFile.exists()) {
+          errorOutput = new String(Files.readAllBytes(errorFile.toPath()), charset);
+        }
+      } catch (IOException | NumberFormatException e) {
+        log.warn("Could not read result of pipeline stage " + Arrays.asList(commandList.get(i)) + ": " + e.getMessage());
+      }
+
+      boolean last = i == commandList.size() - 1;
+      String output = "";
+      if (last) {
+        output = shellResult.getOutput();
+        errorOutput = shellResult.getErrorOutput() + errorOutput;
+      }
+
+      result.add(new ProcessResult(Arrays.asList(commandList.get(i)), exitValue, output, errorOutput, shellResult.getStartTime(), shellResult.getEndTime(), shellResult.isTimedOut()));
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Delete the temporary directory
+   */
+  public void delete() {
+    File[] fileList = directory.listFiles();
+    if (fileList != null) {
+      for (File file : fileList) {
+        if (!file.delete()) {
+          log.debug("Could not delete " + file + ".");
+        }
+      }
+    }
+
+    if (!directory.delete()) {
+      log.debug("Could not delete " + directory + ".");
+    }
+  }
+
+
+  /**
+   * Get the file of the error output of a stage
+   *
+   * @param index the index of the stage
+   * @return the file
+   */
+  private File getErrorFile(int index) {
+    return new File(directory, index + ".err");
+  }
+
+
+  /**
+   * Get the file of the exit code of a stage
+   *
+   * @param index the index of the stage
+   * @return the file
+   */
+  private File getExitValueFile(int index) {
+    return new File(directory, index + ".rc");
+  }
+}
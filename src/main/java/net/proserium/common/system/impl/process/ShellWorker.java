@@ -0,0 +1,278 @@
+/*
+ * ShellWorker.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import jptools.logger.Logger;
+import net.proserium.common.system.ProcessResult;
+import net.proserium.common.util.ProcessUtil;
+
+
+/**
+ * Implements a long living shell which executes the commands written to its standard input. The output of each command
+ * is delimited by a {@link ShellCommandFrame}. The standard output is read by the calling thread, the error output is
+ * drained by a daemon thread of the worker. A worker executes only one command at once.
+ *
+ * @author Patrick Meier
+ */
+public class ShellWorker {
+  private static final Logger log = Logger.getLogger(ShellWorker.class);
+  private static final int BUFFER_SIZE = 8192;
+  private Process process;
+  private OutputStream inputStream;
+  private InputStream outputStream;
+  private Charset charset;
+  private byte[] readBuffer;
+  private FrameBuffer outputBuffer;
+  private FrameBuffer errorBuffer;
+  private boolean errorEnded;
+  private Thread errorReaderThread;
+  private long createTime;
+  private volatile long lastUsedTime;
+  private int numberOfCommands;
+  private volatile boolean terminated;
+  private List<Object> descendantList;
+
+
+  /**
+   * Constructor
+   *
+   * @param shellCommandList the command list to start the shell
+   * @param charset the charset of the shell
+   * @throws IOException in case the shell could not be started
+   */
+  public ShellWorker(List<String> shellCommandList, Charset charset) throws IOException {
+    this.charset = charset;
+    this.process = new ProcessBuilder(shellCommandList).start();
+    this.inputStream = process.getOutputStream();
+    this.outputStream = process.getInputStream();
+    this.readBuffer = new byte[BUFFER_SIZE];
+    this.outputBuffer = new FrameBuffer(BUFFER_SIZE);
+    this.errorBuffer = new FrameBuffer(BUFFER_SIZE);
+    this.errorEnded = false;
+    this.createTime = System.currentTimeMillis();
+    this.lastUsedTime = createTime;
+    this.numberOfCommands = 0;
+    this.terminated = false;
+    this.descendantList = null;
+
+    errorReaderThread = new Thread(ShellWorker.class.getName() + ": error reader (pid:" + ProcessUtil.getInstance().getPid(process) + ")") {
+      @Override
+      public void run() {
+        readErrorStream();
+      }
+    };
+    errorReaderThread.setDaemon(true);
+    errorReaderThread.start();
+  }
+
+
+  /**
+   * Execute a command
+   *
+   * @param path the path to execute the command or null
+   * @param commandList the command list
+   * @return the process result
+   * @throws IOException in case the worker has ended before the command has been completed
+   */
+  public ProcessResult execute(String path, List<String> commandList) throws IOException {
+    long startTime = System.currentTimeMillis();
+    numberOfCommands++;
+
+    ShellCommandFrame frame = new ShellCommandFrame();
+    inputStream.write(frame.createScript(path, commandList).getBytes(charset));
+    inputStream.flush();
+
+    byte[] outputMarker = frame.getOutputMarker(charset);
+    int exitValue = -1;
+    String output = null;
+    outputBuffer.clear();
+    int searchIndex = 0;
+    while (output == null) {
+      int length = outputStream.read(readBuffer);
+      if (length < 0) {
+        return createIncompleteResult(commandList, startTime);
+      }
+
+      outputBuffer.append(readBuffer, 0, length);
+      int markerIndex = outputBuffer.indexOf(outputMarker, searchIndex);
+      if (markerIndex >= 0) {
+        int endOfLine = outputBuffer.indexOf((byte) '\n', markerIndex + outputMarker.length);
+        if (endOfLine >= 0) {
+          exitValue = ShellCommandFrame.parseExitValue(outputBuffer.toString(markerIndex + outputMarker.length, endOfLine, charset));
+          output = outputBuffer.toString(0, markerIndex, charset);
+        }
+      } else {
+        searchIndex = Math.max(0, outputBuffer.length() - outputMarker.length);
+      }
+    }
+
+    String errorOutput = readErrorOutput(frame.getErrorMarker(charset));
+    if (errorOutput == null) {
+      return createIncompleteResult(commandList, startTime);
+    }
+
+    lastUsedTime = System.currentTimeMillis();
+    return new ProcessResult(commandList, exitValue, output, errorOutput, startTime, lastUsedTime, false);
+  }
+
+
+  /**
+   * Terminate the shell and all running commands. The descendants which were found by a previous termination are
+   * destroyed as well, even if the shell has ended and they have been reparented.
+   *
+   * @param forcibly true to kill the processes
+   */
+  public synchronized void terminate(boolean forcibly) {
+    terminated = true;
+    descendantList = ProcessUtil.getInstance().destroyProcessTree(process, descendantList, forcibly);
+  }
+
+
+  /**
+   * Check if the worker is alive
+   *
+   * @return true if it is alive
+   */
+  public boolean isAlive() {
+    return !terminated && process.isAlive();
+  }
+
+
+  /**
+   * Check if the worker has been terminated
+   *
+   * @return true if it has been terminated
+   */
+  public boolean isTerminated() {
+    return terminated;
+  }
+
+
+  /**
+   * Get the creation time in milliseconds
+   *
+   * @return the creation time
+   */
+  public long getCreateTime() {
+    return createTime;
+  }
+
+
+  /**
+   * Get the time in milliseconds of the last successful command
+   *
+   * @return the last used time
+   */
+  public long getLastUsedTime() {
+    return lastUsedTime;
+  }
+
+
+  /**
+   * Get the number of executed commands
+   *
+   * @return the number of commands
+   */
+  public int getNumberOfCommands() {
+    return numberOfCommands;
+  }
+
+
+  /**
+   * Wait for the error output of a command
+   *
+   * @param errorMarker the error marker
+   * @return the error output or null if the worker has ended
+   */
+  private String readErrorOutput(byte[] errorMarker) {
+    synchronized (errorBuffer) {
+      int searchIndex = 0;
+      while (true) {
+        int markerIndex = errorBuffer.indexOf(errorMarker, searchIndex);
+        if (markerIndex >= 0) {
+          String result = errorBuffer.toString(0, markerIndex, charset);
+          errorBuffer.discard(markerIndex + errorMarker.length);
+          return result;
+        }
+
+        if (errorEnded) {
+          return null;
+        }
+
+        searchIndex = Math.max(0, errorBuffer.length() - errorMarker.length);
+        try {
+          errorBuffer.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return null;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Drain the error stream of the shell
+   */
+  private void readErrorStream() {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    InputStream errorStream = process.getErrorStream();
+    try {
+      int length;
+      while ((length = errorStream.read(buffer)) != -1) {
+        synchronized (errorBuffer) {
+          errorBuffer.append(buffer, 0, length);
+          errorBuffer.notifyAll();
+        }
+      }
+    } catch (IOException e) {
+      log.debug("Error stream of shell worker has been closed: " + e.getMessage());
+    } finally {
+      synchronized (errorBuffer) {
+        errorEnded = true;
+        errorBuffer.notifyAll();
+      }
+    }
+  }
+
+
+  /**
+   * Create the result of a command which could not be completed since the worker has ended
+   *
+   * @param commandList the command list
+   * @param startTime the start time
+   * @return the process result
+   * @throws IOException if the worker has not been terminated on purpose
+   */
+  private ProcessResult createIncompleteResult(List<String> commandList, long startTime) throws IOException {
+    if (!terminated) {
+      throw new IOException("Shell worker has ended unexpectedly while executing " + commandList + "!");
+    }
+
+    String output = outputBuffer.toString(0, outputBuffer.length(), charset);
+    String errorOutput;
+    synchronized (errorBuffer) {
+      errorOutput = errorBuffer.toString(0, errorBuffer.length(), charset);
+    }
+
+    return new ProcessResult(commandList, -1, output, errorOutput, startTime, System.currentTimeMillis(), true);
+  }
+
+
+  /**
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "ShellWorker [pid=" + ProcessUtil.getInstance().getPid(process) + ", numberOfCommands=" + numberOfCommands + "]";
+  }
+}
@@ -0,0 +1,485 @@
+/*
+ * ShellWorkerPoolProcessSystemExecuterImpl.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import jptools.logger.Logger;
+import net.proserium.common.system.IProcessSystemExecuter;
+import net.proserium.common.system.ProcessResult;
+import net.proserium.common.system.impl.AbstractSystemExecuterImpl;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Implements the {@link IProcessSystemExecuter} by a pool of long living shells. The commands are written to the
+ * standard input of an idle {@link ShellWorker}, so no process has to be created for a short command. The workers are
+ * checked before they are used and recycled after a maximum number of commands or a maximum age. The returned
+ * {@link Process} of {@link #executeCommand(String, String...)} is a {@link CompletedProcess}, the method returns when the
+ * command has been executed.
+ *
+ * @author Patrick Meier
+ */
+public class ShellWorkerPoolProcessSystemExecuterImpl extends AbstractSystemExecuterImpl implements IProcessSystemExecuter {
+  private static final Logger log = Logger.getLogger(ShellWorkerPoolProcessSystemExecuterImpl.class);
+  private static final List<String> HEALTH_CHECK_COMMAND = Arrays.asList(":");
+  private List<String> shellCommandList;
+  private Charset charset;
+  private int maximumNumberOfWorkers;
+  private int maximumNumberOfCommandsPerWorker;
+  private long maximumWorkerAge;
+  private long healthCheckInterval;
+  private long terminationGracePeriod;
+  private BlockingQueue<ShellWorker> idleWorkerQueue;
+  private Semaphore workerPermits;
+  private ExecutorService executorService;
+  private ScheduledExecutorService watchdogService;
+
+
+  /**
+   * Constructor
+   */
+  public ShellWorkerPoolProcessSystemExecuterImpl() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param maximumNumberOfWorkers the maximum number of shell workers
+   */
+  public ShellWorkerPoolProcessSystemExecuterImpl(int maximumNumberOfWorkers) {
+    this.shellCommandList = Arrays.asList("bash", "--noprofile", "--norc");
+    this.charset = Charset.defaultCharset();
+    this.maximumNumberOfWorkers = Math.max(maximumNumberOfWorkers, 1);
+    this.maximumNumberOfCommandsPerWorker = 1000;
+    this.maximumWorkerAge = TimeUnit.MINUTES.toMillis(10);
+    this.healthCheckInterval = TimeUnit.SECONDS.toMillis(30);
+    this.terminationGracePeriod = 5000;
+    this.idleWorkerQueue = new LinkedBlockingQueue<ShellWorker>();
+    this.workerPermits = new Semaphore(this.maximumNumberOfWorkers, true);
+    this.executorService = Executors.newFixedThreadPool(this.maximumNumberOfWorkers, ThreadUtil.getInstance().createDaemonThreadFactory(ShellWorkerPoolProcessSystemExecuterImpl.class.getName()));
+    this.watchdogService = Executors.newSingleThreadScheduledExecutor(ThreadUtil.getInstance().createDaemonThreadFactory(ShellWorkerPoolProcessSystemExecuterImpl.class.getName() + ": watchdog"));
+  }
+
+
+  /**
+   * Get the maximum number of shell workers
+   *
+   * @return the maximum number of shell workers
+   */
+  public int getMaximumNumberOfWorkers() {
+    return maximumNumberOfWorkers;
+  }
+
+
+  /**
+   * Set the maximum number of commands after which a worker is recycled
+   *
+   * @param maximumNumberOfCommandsPerWorker the maximum number of commands
+   */
+  public void setMaximumNumberOfCommandsPerWorker(int maximumNumberOfCommandsPerWorker) {
+    this.maximumNumberOfCommandsPerWorker = maximumNumberOfCommandsPerWorker;
+  }
+
+
+  /**
+   * Set the maximum age in milliseconds after which a worker is recycled
+   *
+   * @param maximumWorkerAge the maximum age
+   */
+  public void setMaximumWorkerAge(long maximumWorkerAge) {
+    this.maximumWorkerAge = maximumWorkerAge;
+  }
+
+
+  /**
+   * Set the idle time in milliseconds after which a worker is checked before it is used
+   *
+   * @param healthCheckInterval the health check interval
+   */
+  public void setHealthCheckInterval(long healthCheckInterval) {
+    this.healthCheckInterval = healthCheckInterval;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommand(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public Process executeCommand(String path, String... commandList) {
+    return executeCommand(path, 0, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommand(java.lang.String, int, java.lang.String[])
+   */
+  @Override
+  public Process executeCommand(String path, int numberOfSecondsToWait, String... commandList) {
+    List<String> commandParameterList = prepareCommandList(commandList);
+
+    try {
+      return new CompletedProcess(execute(path, numberOfSecondsToWait, commandParameterList), charset);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing command " + commandParameterList + ".");
+    } catch (Exception e) {
+      log.warn("Error occured while executing command " + commandParameterList + ": " + e.getMessage(), e);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Executes the command on a worker and appends the captured output to the file after the command has ended.
+   *
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeCommandToFile(java.lang.String, java.io.File, java.lang.String[])
+   */
+  @Override
+  public Process executeCommandToFile(String path, File outputFile, String... commandList) {
+    List<String> commandParameterList = prepareCommandList(commandList);
+
+    try {
+      ProcessResult result = execute(path, 0, commandParameterList);
+      try (OutputStream outputStream = new FileOutputStream(outputFile, true)) {
+        outputStream.write(result.getOutput().getBytes(charset));
+        outputStream.write(result.getErrorOutput().getBytes(charset));
+      }
+
+      return new CompletedProcess(new ProcessResult(commandParameterList, result.getExitValue(), "", "", result.getStartTime(), result.getEndTime(), result.isTimedOut()), charset);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing command " + commandParameterList + ".");
+    } catch (Exception e) {
+      log.warn("Error occured while executing command " + commandParameterList + ": " + e.getMessage(), e);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(String path, String... commandList) {
+    return executeAsync(path, 0, commandList);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeAsync(java.lang.String, int, java.lang.String[])
+   */
+  @Override
+  public CompletableFuture<ProcessResult> executeAsync(final String path, final int numberOfSecondsToWait, String... commandList) {
+    final List<String> commandParameterList = prepareCommandList(commandList);
+
+    return CompletableFuture.supplyAsync(new Supplier<ProcessResult>() {
+      @Override
+      public ProcessResult get() {
+        try {
+          return execute(path, numberOfSecondsToWait, commandParameterList);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CompletionException(e);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }
+    }, executorService);
+  }
+
+
+  /**
+   * Executes all commands of the batch on one worker.
+   *
+   * @see net.proserium.common.system.IProcessSystemExecuter#executeBatch(java.lang.String, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executeBatch(String path, List<String[]> commandList) {
+    if (commandList == null || commandList.isEmpty()) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    List<List<String>> commandParameterList = new ArrayList<List<String>>();
+    for (String[] command : commandList) {
+      commandParameterList.add(prepareCommandList(command));
+    }
+
+    long startTime = System.currentTimeMillis();
+    List<ProcessResult> result = new ArrayList<ProcessResult>();
+    try {
+      workerPermits.acquire();
+      try {
+        ShellWorker worker = borrowWorker();
+        boolean reusable = false;
+        try {
+          for (List<String> command : commandParameterList) {
+            result.add(executeOnWorker(worker, path, 0, command));
+          }
+
+          reusable = true;
+          return result;
+        } finally {
+          returnWorker(worker, reusable);
+        }
+      } finally {
+        workerPermits.release();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing batch of " + commandList.size() + " commands.");
+      return completeBatchResults(commandList, result, e, startTime);
+    } catch (Exception e) {
+      log.warn("Error occured while executing batch of " + commandList.size() + " commands: " + e.getMessage(), e);
+      return completeBatchResults(commandList, result, e, startTime);
+    }
+  }
+
+
+  /**
+   * Executes the pipeline in the shell of a worker, the stages are connected by the pipes of the shell.
+   *
+   * @see net.proserium.common.system.IProcessSystemExecuter#executePipeline(java.lang.String, java.io.File, java.util.List)
+   */
+  @Override
+  public List<ProcessResult> executePipeline(String path, File outputFile, List<String[]> commandList) {
+    if (commandList == null || commandList.isEmpty()) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    for (String[] command : commandList) {
+      prepareCommandList(command);
+    }
+
+    try {
+      ShellPipelineScript pipelineScript = new ShellPipelineScript(commandList, outputFile);
+      try {
+        ProcessResult shellResult = execute(path, 0, Arrays.asList(pipelineScript.createScript(null)));
+        return pipelineScript.createResults(shellResult, charset);
+      } finally {
+        pipelineScript.delete();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.warn("Interrupted while executing pipeline of " + commandList.size() + " commands.");
+    } catch (Exception e) {
+      log.warn("Error occured while executing pipeline of " + commandList.size() + " commands: " + e.getMessage(), e);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Terminate all idle workers and stop the pool
+   */
+  public void shutdown() {
+    executorService.shutdown();
+
+    ShellWorker worker;
+    while ((worker = idleWorkerQueue.poll()) != null) {
+      discardWorker(worker);
+    }
+
+    watchdogService.shutdown();
+  }
+
+
+  /**
+   * Execute a command on a worker
+   *
+   * @param path the path to execute the command or null
+   * @param numberOfSecondsToWait the number of seconds until the command is terminated or less or equals 0
+   * @param commandList the command list
+   * @return the process result
+   * @throws IOException in case of an error
+   * @throws InterruptedException if the thread was interrupted while waiting for a worker
+   */
+  protected ProcessResult execute(String path, int numberOfSecondsToWait, List<String> commandList) throws IOException, InterruptedException {
+    workerPermits.acquire();
+    try {
+      ShellWorker worker = borrowWorker();
+      boolean reusable = false;
+      try {
+        ProcessResult result = executeOnWorker(worker, path, TimeUnit.SECONDS.toMillis(numberOfSecondsToWait), commandList);
+        reusable = !result.isTimedOut();
+        return result;
+      } finally {
+        returnWorker(worker, reusable);
+      }
+    } finally {
+      workerPermits.release();
+    }
+  }
+
+
+  /**
+   * Execute a command on a worker which is terminated if the timeout is exceeded
+   *
+   * @param worker the worker
+   * @param path the path to execute the command or null
+   * @param timeout the timeout in milliseconds or less or equals 0
+   * @param commandList the command list
+   * @return the process result
+   * @throws IOException in case of an error
+   */
+  protected ProcessResult executeOnWorker(final ShellWorker worker, String path, long timeout, List<String> commandList) throws IOException {
+    ScheduledFuture<?> watchdog = null;
+    if (timeout > 0) {
+      watchdog = watchdogService.schedule(new Runnable() {
+        @Override
+        public void run() {
+          log.info("Command exceeded its deadline, terminate " + worker + ".");
+          discardWorker(worker);
+        }
+      }, timeout, TimeUnit.MILLISECONDS);
+    }
+
+    try {
+      return worker.execute(path, commandList);
+    } finally {
+      if (watchdog != null) {
+        watchdog.cancel(false);
+      }
+    }
+  }
+
+
+  /**
+   * Borrow an idle and healthy worker or create a new one. The caller holds a worker permit.
+   *
+   * @return the worker
+   * @throws IOException if no worker could be created
+   */
+  protected ShellWorker borrowWorker() throws IOException {
+    ShellWorker worker;
+    while ((worker = idleWorkerQueue.poll()) != null) {
+      if (isHealthy(worker)) {
+        return worker;
+      }
+
+      discardWorker(worker);
+    }
+
+    worker = new ShellWorker(shellCommandList, charset);
+    log.debug("Created " + worker + ".");
+    return worker;
+  }
+
+
+  /**
+   * Return a worker to the pool
+   *
+   * @param worker the worker
+   * @param reusable true if the worker can be used again
+   */
+  protected void returnWorker(ShellWorker worker, boolean reusable) {
+    if (reusable && worker.isAlive() && !isExhausted(worker)) {
+      idleWorkerQueue.add(worker);
+    } else {
+      discardWorker(worker);
+    }
+  }
+
+
+  /**
+   * Check a worker before it is used. A worker which was idle longer than the health check interval has to execute a
+   * no-op command.
+   *
+   * @param worker the worker
+   * @return true if the worker is healthy
+   */
+  protected boolean isHealthy(ShellWorker worker) {
+    if (!worker.isAlive() || isExhausted(worker)) {
+      return false;
+    }
+
+    if (System.currentTimeMillis() - worker.getLastUsedTime() < healthCheckInterval) {
+      return true;
+    }
+
+    try {
+      ProcessResult result = executeOnWorker(worker, null, terminationGracePeriod, HEALTH_CHECK_COMMAND);
+      return !result.isTimedOut() && result.getExitValue() == 0;
+    } catch (IOException e) {
+      log.debug("Health check of " + worker + " failed: " + e.getMessage());
+      return false;
+    }
+  }
+
+
+  /**
+   * Check if a worker has to be recycled
+   *
+   * @param worker the worker
+   * @return true if the worker reached the maximum number of commands or the maximum age
+   */
+  protected boolean isExhausted(ShellWorker worker) {
+    return worker.getNumberOfCommands() >= maximumNumberOfCommandsPerWorker || System.currentTimeMillis() - worker.getCreateTime() >= maximumWorkerAge;
+  }
+
+
+  /**
+   * Terminate a worker gracefully and kill it after the grace period
+   *
+   * @param worker the worker
+   */
+  protected void discardWorker(final ShellWorker worker) {
+    if (worker.isTerminated()) {
+      return;
+    }
+
+    log.debug("Discard " + worker + ".");
+    worker.terminate(false);
+    try {
+      watchdogService.schedule(new Runnable() {
+        @Override
+        public void run() {
+          worker.terminate(true);
+        }
+      }, terminationGracePeriod, TimeUnit.MILLISECONDS);
+    } catch (Exception e) {
+      worker.terminate(true);
+    }
+  }
+
+
+  /**
+   * Validate the command list
+   *
+   * @param commandList the command list
+   * @return the command list
+   */
+  private List<String> prepareCommandList(String... commandList) {
+    if (commandList == null || commandList.length == 0) {
+      throw new IllegalArgumentException("Invalid command!");
+    }
+
+    return new ArrayList<String>(Arrays.asList(commandList));
+  }
+}
@@ -7,6 +7,7 @@
 package net.proserium.common.system.impl.process;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -15,6 +16,15 @@ import java.util.List;
  * @author Patrick Meier
  */
 public class UnixProcessSystemCommandExecuterImpl extends AbstractProcessSystemCommandExecuterImpl {
+  /**
+   * @see net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl#getBatchShellCommandList()
+   */
+  @Override
+  protected List<String> getBatchShellCommandList() {
+    return Arrays.asList("sh");
+  }
+
+
   /**
    * @see net.proserium.common.system.impl.process.AbstractProcessSystemCommandExecuterImpl#preparePlatformDependentCommandList(java.lang.String, java.util.List)
    */
@@ -6,6 +6,10 @@
  */
 package net.proserium.common.system.impl.storage;
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
+import net.proserium.common.system.ProcessStatistics;
 
 /**
  * Defines the system executer progress storage interface.
@@ -38,6 +42,55 @@ public interface ISystemExecuterProgressStorage {
   void endProcessing(SystemExecuterProgressKey systemExecuterProgressKey);
 
 
+  /**
+   * Set the time the execution waited in the queue of the scheduler before it was started
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param queueWaitTime the queue wait time in milliseconds
+   */
+  void setQueueWaitTime(SystemExecuterProgressKey systemExecuterProgressKey, long queueWaitTime);
+
+
+  /**
+   * Get the time the execution waited in the queue of the scheduler before it was started
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the queue wait time in milliseconds or -1 if the execution is still waiting or unknown
+   */
+  long getQueueWaitTime(SystemExecuterProgressKey systemExecuterProgressKey);
+
+
+  /**
+   * Set the resource usage of the process tree of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param processStatistics the process statistics
+   */
+  void setProcessStatistics(SystemExecuterProgressKey systemExecuterProgressKey, ProcessStatistics processStatistics);
+
+
+  /**
+   * Get the resource usage of the process tree of an execution. While the execution runs the last sample is returned.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the process statistics or null if they are unknown
+   */
+  ProcessStatistics getProcessStatistics(SystemExecuterProgressKey systemExecuterProgressKey);
+
+
+  /**
+   * Attach the output file of an execution. The output is written by the process directly into the file and
+   * {@link #readServerProgress(SystemExecuterProgressKey)} follows the file, the data added by
+   * {@link #addInput(SystemExecuterProgressKey, String)} is read after the output of the file.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param outputFile the output file
+   * @param charset the charset of the output
+   * @param lineFraming true if the output is read in complete lines
+   */
+  void attachOutputFile(SystemExecuterProgressKey systemExecuterProgressKey, File outputFile, Charset charset, boolean lineFraming);
+
+
   /**
    * Read the server progress
    *
@@ -48,7 +101,46 @@ public interface ISystemExecuterProgressStorage {
 
 
   /**
-   * Adds the input
+   * Read all available server progress in one batch. If no progress is available, the caller is blocked until data or the
+   * end of the execution arrives or the timeout has elapsed. The end of the execution is always the last element.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param maximumNumberOfItems the maximum number of items or less or equals 0 for all available items
+   * @param timeout the timeout in milliseconds or less or equals 0 to not wait
+   * @return the server progress data, the list is empty if no progress has arrived in time or the execution is unknown
+   */
+  List<SystemExecuterProgressData> readServerProgress(SystemExecuterProgressKey systemExecuterProgressKey, int maximumNumberOfItems, long timeout);
+
+
+  /**
+   * Read the progress of an execution at an offset without removing it, so any number of readers can follow or replay
+   * the execution independently. The offsets are defined by the implementation: a reader starts at 0 and continues at the
+   * next offset of the previous range. If the progress at the offset is no longer retained, the range starts at the first
+   * retained progress.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param fromOffset the offset
+   * @param maximumSize the maximum size of the data in bytes, at least one chunk is read if available
+   * @return the range, its data list is empty if there is no new progress, or null if the execution or its progress is
+   *         not retained or the offset is invalid
+   */
+  SystemExecuterProgressRange read(SystemExecuterProgressKey systemExecuterProgressKey, long fromOffset, int maximumSize);
+
+
+  /**
+   * Subscribe to the progress of an execution. The progress is pushed to the subscriber as soon as it has been added, as
+   * far as it has been requested. The subscriptions consume the progress like a reader: the progress is delivered to all
+   * subscriptions of an execution and is not returned by {@link #readServerProgress(SystemExecuterProgressKey)}
+   * afterwards. If the execution is unknown, the subscriber gets an error.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param subscriber the subscriber
+   */
+  void subscribe(SystemExecuterProgressKey systemExecuterProgressKey, ISystemExecuterProgressSubscriber subscriber);
+
+
+  /**
+   * Adds the input. An implementation with a bounded buffer blocks the caller until the output has been read.
    *
    * @param systemExecuterProgressKey the system executer progress key
    * @param data the input
@@ -57,7 +149,7 @@ public interface ISystemExecuterProgressStorage {
 
 
   /**
-   * Adds the error
+   * Adds the error. An implementation with a bounded buffer blocks the caller until the output has been read.
    *
    * @param systemExecuterProgressKey the system executer progress key
    * @param data the input
@@ -0,0 +1,46 @@
+/*
+ * ISystemExecuterProgressSubscriber.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage;
+
+/**
+ * Defines a subscriber which gets the progress of an execution pushed. It follows the contract of a reactive streams
+ * subscriber: the data is delivered only as far as it has been requested by
+ * {@link ISystemExecuterProgressSubscription#request(long)}, the calls are never concurrent. A listener which wants all
+ * data requests {@link Long#MAX_VALUE} in {@link #onSubscribe(ISystemExecuterProgressSubscription)}.
+ *
+ * @author Patrick Meier
+ */
+public interface ISystemExecuterProgressSubscriber {
+  /**
+   * Called once before any other method
+   *
+   * @param subscription the subscription
+   */
+  void onSubscribe(ISystemExecuterProgressSubscription subscription);
+
+
+  /**
+   * Called for each progress data
+   *
+   * @param data the progress data
+   */
+  void onNext(SystemExecuterProgressData data);
+
+
+  /**
+   * Called if the subscription has failed, no other method is called afterwards
+   *
+   * @param throwable the cause
+   */
+  void onError(Throwable throwable);
+
+
+  /**
+   * Called after the last progress data of the execution, no other method is called afterwards
+   */
+  void onComplete();
+}
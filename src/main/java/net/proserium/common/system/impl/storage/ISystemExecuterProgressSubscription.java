@@ -0,0 +1,27 @@
+/*
+ * ISystemExecuterProgressSubscription.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage;
+
+/**
+ * Defines the subscription of an {@link ISystemExecuterProgressSubscriber}.
+ *
+ * @author Patrick Meier
+ */
+public interface ISystemExecuterProgressSubscription {
+  /**
+   * Request more progress data
+   *
+   * @param numberOfItems the number of items, it has to be greater than 0
+   */
+  void request(long numberOfItems);
+
+
+  /**
+   * Cancel the subscription, the subscriber gets no more data
+   */
+  void cancel();
+}
@@ -0,0 +1,162 @@
+/*
+ * ProcessOutputDecoder.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+
+/**
+ * Implements a stateful decoder for the output of a process. The bytes of a character which is split between two reads
+ * are kept until the next read, so multi-byte characters are not corrupted. The byte and char buffers are reused for all
+ * reads. In line framing mode only complete lines are returned, the rest is kept until the line is completed or the
+ * decoder is flushed.
+ *
+ * @author Patrick Meier
+ */
+public class ProcessOutputDecoder {
+  private static final String EMPTY = "";
+  private static final int DEFAULT_BUFFER_SIZE = 1024;
+  private CharsetDecoder decoder;
+  private boolean lineFraming;
+  private ByteBuffer byteBuffer;
+  private CharBuffer charBuffer;
+  private StringBuilder text;
+
+
+  /**
+   * Constructor
+   *
+   * @param charset the charset of the output
+   * @param lineFraming true to return complete lines only
+   */
+  public ProcessOutputDecoder(Charset charset, boolean lineFraming) {
+    this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.lineFraming = lineFraming;
+    this.byteBuffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    this.charBuffer = CharBuffer.allocate(DEFAULT_BUFFER_SIZE);
+    this.text = new StringBuilder();
+  }
+
+
+  /**
+   * Check if the decoder returns complete lines only
+   *
+   * @return true if line framing is enabled
+   */
+  public boolean isLineFraming() {
+    return lineFraming;
+  }
+
+
+  /**
+   * Decode the read bytes
+   *
+   * @param data the data
+   * @param offset the offset
+   * @param length the number of bytes
+   * @return the decoded text, an empty string if no complete character respectively line is available
+   */
+  public String decode(byte[] data, int offset, int length) {
+    if (length <= 0) {
+      return EMPTY;
+    }
+
+    ensureCapacity(length);
+    byteBuffer.put(data, offset, length);
+    byteBuffer.flip();
+    decode(false);
+
+    // keep the incomplete character for the next read
+    byteBuffer.compact();
+    return takeText(false);
+  }
+
+
+  /**
+   * Decode the remaining bytes at the end of the stream. An incomplete character is replaced.
+   *
+   * @return the remaining text, an empty string if nothing is left
+   */
+  public String flush() {
+    byteBuffer.flip();
+    decode(true);
+    while (decoder.flush(charBuffer).isOverflow()) {
+      drainCharBuffer();
+    }
+
+    drainCharBuffer();
+    byteBuffer.clear();
+    decoder.reset();
+    return takeText(true);
+  }
+
+
+  /**
+   * Decode the content of the byte buffer into the text
+   *
+   * @param endOfInput true if no more input follows
+   */
+  private void decode(boolean endOfInput) {
+    CoderResult result;
+    do {
+      result = decoder.decode(byteBuffer, charBuffer, endOfInput);
+      drainCharBuffer();
+    } while (result.isOverflow());
+  }
+
+
+  /**
+   * Move the decoded characters into the text
+   */
+  private void drainCharBuffer() {
+    charBuffer.flip();
+    text.append(charBuffer);
+    charBuffer.clear();
+  }
+
+
+  /**
+   * Take the text which can be returned
+   *
+   * @param all true to take the whole text
+   * @return the text
+   */
+  private String takeText(boolean all) {
+    int end = text.length();
+    if (lineFraming && !all) {
+      end = text.lastIndexOf("\n") + 1;
+    }
+
+    if (end <= 0) {
+      return EMPTY;
+    }
+
+    String result = text.substring(0, end);
+    text.delete(0, end);
+    return result;
+  }
+
+
+  /**
+   * Ensure the byte buffer can take additional bytes
+   *
+   * @param length the number of additional bytes
+   */
+  private void ensureCapacity(int length) {
+    if (byteBuffer.remaining() < length) {
+      ByteBuffer newByteBuffer = ByteBuffer.allocate(Math.max(byteBuffer.capacity() * 2, byteBuffer.position() + length));
+      byteBuffer.flip();
+      newByteBuffer.put(byteBuffer);
+      byteBuffer = newByteBuffer;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * SystemExecuterProgressRange.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Defines a range of the progress of an execution which has been read at an offset. The next range is read at the next
+ * offset.
+ *
+ * @author Patrick Meier
+ */
+public class SystemExecuterProgressRange implements Serializable {
+  /** serialVersionUID */
+  private static final long serialVersionUID = 2841793315097352861L;
+  private long offset;
+  private long nextOffset;
+  private List<SystemExecuterProgressData> dataList;
+
+
+  /**
+   * Constructor
+   *
+   * @param offset the offset the range was read at
+   * @param nextOffset the offset of the next range
+   * @param dataList the progress data of the range
+   */
+  public SystemExecuterProgressRange(long offset, long nextOffset, List<SystemExecuterProgressData> dataList) {
+    this.offset = offset;
+    this.nextOffset = nextOffset;
+    this.dataList = dataList;
+  }
+
+
+  /**
+   * Get the offset the range was read at
+   *
+   * @return the offset
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+
+  /**
+   * Get the offset of the next range
+   *
+   * @return the next offset
+   */
+  public long getNextOffset() {
+    return nextOffset;
+  }
+
+
+  /**
+   * Get the progress data of the range
+   *
+   * @return the progress data, the list is empty if there is no new progress
+   */
+  public List<SystemExecuterProgressData> getDataList() {
+    return dataList;
+  }
+
+
+  /**
+   * Check if the range contains the end of the execution
+   *
+   * @return true if the execution has ended
+   */
+  public boolean hasEnded() {
+    return !dataList.isEmpty() && dataList.get(dataList.size() - 1).hasEnded();
+  }
+}
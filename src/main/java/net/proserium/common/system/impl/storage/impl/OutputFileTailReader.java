@@ -0,0 +1,128 @@
+/*
+ * OutputFileTailReader.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import jptools.logger.Logger;
+import net.proserium.common.system.impl.storage.ProcessOutputDecoder;
+
+
+/**
+ * Follows an output file which is written by a process. Each read continues at the position of the previous read, the
+ * file is read by positional reads of a {@link FileChannel} into a reused buffer. The output is not held in memory
+ * while nobody reads it.
+ *
+ * @author Patrick Meier
+ */
+public class OutputFileTailReader {
+  private static final Logger log = Logger.getLogger(OutputFileTailReader.class);
+  private static final String EMPTY = "";
+
+  /** The default maximum number of bytes of a read */
+  public static final int DEFAULT_READ_SIZE = 64 * 1024;
+
+  private File outputFile;
+  private ProcessOutputDecoder outputDecoder;
+  private ByteBuffer buffer;
+  private FileChannel fileChannel;
+  private long position;
+
+
+  /**
+   * Constructor
+   *
+   * @param outputFile the output file
+   * @param outputDecoder the decoder of the output
+   */
+  public OutputFileTailReader(File outputFile, ProcessOutputDecoder outputDecoder) {
+    this.outputFile = outputFile;
+    this.outputDecoder = outputDecoder;
+    this.buffer = ByteBuffer.allocate(DEFAULT_READ_SIZE);
+    this.fileChannel = null;
+    this.position = 0;
+  }
+
+
+  /**
+   * Get the output file
+   *
+   * @return the output file
+   */
+  public File getOutputFile() {
+    return outputFile;
+  }
+
+
+  /**
+   * Get the position of the next read
+   *
+   * @return the position
+   */
+  public long getPosition() {
+    return position;
+  }
+
+
+  /**
+   * Read the output which has been written since the last read
+   *
+   * @return the decoded output, an empty string if no new output is available
+   */
+  public synchronized String read() {
+    try {
+      if (fileChannel == null) {
+        if (!outputFile.exists()) {
+          return EMPTY;
+        }
+
+        fileChannel = FileChannel.open(outputFile.toPath(), StandardOpenOption.READ);
+      }
+
+      buffer.clear();
+      int length = fileChannel.read(buffer, position);
+      if (length <= 0) {
+        return EMPTY;
+      }
+
+      position += length;
+      return outputDecoder.decode(buffer.array(), 0, length);
+    } catch (IOException e) {
+      log.debug("Could not read output file " + outputFile + ": " + e.getMessage());
+      return EMPTY;
+    }
+  }
+
+
+  /**
+   * Decode the remaining bytes after the end of the output
+   *
+   * @return the remaining output, an empty string if nothing is left
+   */
+  public synchronized String flush() {
+    return outputDecoder.flush();
+  }
+
+
+  /**
+   * Close the file
+   */
+  public synchronized void close() {
+    if (fileChannel != null) {
+      try {
+        fileChannel.close();
+      } catch (IOException e) {
+        // NOP
+      }
+
+      fileChannel = null;
+    }
+  }
+}
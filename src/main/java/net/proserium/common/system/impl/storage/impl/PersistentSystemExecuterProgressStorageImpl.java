@@ -0,0 +1,383 @@
+/*
+ * PersistentSystemExecuterProgressStorageImpl.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import jptools.logger.Logger;
+import net.proserium.common.environment.SystemEnvironmentFactory;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+import net.proserium.common.util.ThreadUtil;
+
+
+/**
+ * Implements a progress storage which additionally writes the progress of each execution into a
+ * {@link ProgressSegmentLog} under the data path. The progress survives a restart and can be read again at any offset
+ * by {@link #read(SystemExecuterProgressKey, long, int)}, the reads and subscriptions of the
+ * {@link SystemExecuterProgressStorageImpl} are not affected. The retention policy does not apply to the logs.
+ * <p>
+ * The logs are committed in batches by a committer thread: all logs with new progress are forced once per commit
+ * interval instead of once per chunk. The end of an execution is committed immediately and
+ * {@link #endProcessing(SystemExecuterProgressKey)} returns after its progress is durable. The output of an attached
+ * output file is not written into the log, it is durable in the output file.
+ *
+ * @author Patrick Meier
+ */
+public class PersistentSystemExecuterProgressStorageImpl extends SystemExecuterProgressStorageImpl {
+  private static final Logger log = Logger.getLogger(PersistentSystemExecuterProgressStorageImpl.class);
+
+  /** The default interval in milliseconds the progress is committed */
+  public static final long DEFAULT_COMMIT_INTERVAL = 10;
+
+  private File directory;
+  private Map<SystemExecuterProgressKey, ProgressSegmentLog> segmentLogMap;
+  private Set<ProgressSegmentLog> pendingLogSet;
+  private volatile long commitInterval;
+  private Object commitLock;
+  private long requestedBatch;
+  private long committedBatch;
+  private volatile boolean running;
+  private Thread committer;
+
+
+  /**
+   * Constructor, the progress is written into the data path
+   */
+  public PersistentSystemExecuterProgressStorageImpl() {
+    this(new File(SystemEnvironmentFactory.getInstance().getSystemEnvironment().getSystemPath().getDataPath(), "progress"));
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param directory the directory of the progress logs
+   */
+  public PersistentSystemExecuterProgressStorageImpl(File directory) {
+    super();
+    this.directory = directory;
+    this.segmentLogMap = new ConcurrentHashMap<SystemExecuterProgressKey, ProgressSegmentLog>();
+    this.pendingLogSet = ConcurrentHashMap.<ProgressSegmentLog> newKeySet();
+    this.commitInterval = DEFAULT_COMMIT_INTERVAL;
+    this.commitLock = new Object();
+    this.requestedBatch = 0;
+    this.committedBatch = 0;
+    this.running = true;
+    this.committer = ThreadUtil.getInstance().createDaemonThreadFactory(PersistentSystemExecuterProgressStorageImpl.class.getName() + ": committer").newThread(new Runnable() {
+      @Override
+      public void run() {
+        runCommitter();
+      }
+    });
+    this.committer.start();
+  }
+
+
+  /**
+   * Get the directory of the progress logs
+   *
+   * @return the directory
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+
+  /**
+   * Get the interval the progress is committed
+   *
+   * @return the commit interval in milliseconds
+   */
+  public long getCommitInterval() {
+    return commitInterval;
+  }
+
+
+  /**
+   * Set the interval the progress is committed. A longer interval collects more progress into one batch.
+   *
+   * @param commitInterval the commit interval in milliseconds
+   */
+  public void setCommitInterval(long commitInterval) {
+    this.commitInterval = Math.max(1, commitInterval);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#startProcessing(net.proserium.common.system.impl.storage.SystemExecuterProgressKey)
+   */
+  @Override
+  public void startProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
+    super.startProcessing(systemExecuterProgressKey);
+
+    ProgressSegmentLog previousLog = segmentLogMap.remove(systemExecuterProgressKey);
+    if (previousLog != null) {
+      pendingLogSet.remove(previousLog);
+    } else {
+      previousLog = getSegmentLog(systemExecuterProgressKey);
+    }
+
+    if (previousLog != null) {
+      previousLog.delete();
+    }
+
+    try {
+      segmentLogMap.put(systemExecuterProgressKey, new ProgressSegmentLog(getLogPath(systemExecuterProgressKey)));
+    } catch (IOException e) {
+      log.warn("Could not create progress log of " + systemExecuterProgressKey.getUniqueKey() + ": " + e.getMessage());
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#endProcessing(net.proserium.common.system.impl.storage.SystemExecuterProgressKey)
+   */
+  @Override
+  public void endProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
+    if (append(systemExecuterProgressKey, new SystemExecuterProgressData())) {
+      commit();
+    }
+
+    super.endProcessing(systemExecuterProgressKey);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#addInput(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, java.lang.String)
+   */
+  @Override
+  public void addInput(SystemExecuterProgressKey systemExecuterProgressKey, String data) {
+    if (data != null && !data.isEmpty()) {
+      append(systemExecuterProgressKey, new SystemExecuterProgressData(data, false));
+    }
+
+    super.addInput(systemExecuterProgressKey, data);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#addError(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, java.lang.String)
+   */
+  @Override
+  public void addError(SystemExecuterProgressKey systemExecuterProgressKey, String data) {
+    if (data != null && !data.isEmpty()) {
+      append(systemExecuterProgressKey, new SystemExecuterProgressData(data, true));
+    }
+
+    super.addError(systemExecuterProgressKey, data);
+  }
+
+
+  /**
+   * Read the committed progress of an execution from its log, also after a restart. The offset of a chunk is its
+   * position in the log.
+   *
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#read(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, long, int)
+   */
+  @Override
+  public SystemExecuterProgressRange read(SystemExecuterProgressKey systemExecuterProgressKey, long fromOffset, int maximumSize) {
+    ProgressSegmentLog segmentLog = getSegmentLog(systemExecuterProgressKey);
+    if (segmentLog == null) {
+      return null;
+    }
+
+    try {
+      return segmentLog.read(fromOffset, maximumSize);
+    } catch (IOException e) {
+      log.warn("Could not read progress log of " + systemExecuterProgressKey.getUniqueKey() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+
+  /**
+   * Close the log of a removed execution, the log remains on disk and is opened again by each read
+   *
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#removeEntry(net.proserium.common.system.impl.storage.SystemExecuterProgressKey,
+   *      net.proserium.common.system.impl.storage.impl.SystemExecuterProgressEntry)
+   */
+  @Override
+  protected boolean removeEntry(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressEntry entry) {
+    if (!super.removeEntry(systemExecuterProgressKey, entry)) {
+      return false;
+    }
+
+    ProgressSegmentLog segmentLog = segmentLogMap.remove(systemExecuterProgressKey);
+    if (segmentLog != null) {
+      pendingLogSet.remove(segmentLog);
+      try {
+        segmentLog.commit();
+      } catch (IOException e) {
+        log.warn("Could not commit progress log " + segmentLog.getDirectory() + ": " + e.getMessage());
+      }
+
+      segmentLog.close();
+    }
+
+    return true;
+  }
+
+
+  /**
+   * Commit the progress of all executions and wait until it is durable
+   */
+  public void commit() {
+    if (!running) {
+      commitPendingLogs();
+      return;
+    }
+
+    synchronized (commitLock) {
+      long batch = ++requestedBatch;
+      commitLock.notifyAll();
+      while (committedBatch < batch && running) {
+        try {
+          commitLock.wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Stop the committer, the pending progress is committed and the logs are closed
+   */
+  public void close() {
+    synchronized (commitLock) {
+      running = false;
+      commitLock.notifyAll();
+    }
+
+    try {
+      committer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    commitPendingLogs();
+    for (ProgressSegmentLog segmentLog : segmentLogMap.values()) {
+      segmentLog.close();
+    }
+  }
+
+
+  /**
+   * Get the path of the progress log of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the path
+   */
+  protected File getLogPath(SystemExecuterProgressKey systemExecuterProgressKey) {
+    return new File(directory, getFileName(systemExecuterProgressKey));
+  }
+
+
+  /**
+   * Get the progress log of an execution. The log of a removed execution or of a previous run is opened from disk for
+   * this call only, it is not kept in the map of the running executions.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the progress log or null if there is none
+   */
+  private ProgressSegmentLog getSegmentLog(SystemExecuterProgressKey systemExecuterProgressKey) {
+    ProgressSegmentLog segmentLog = segmentLogMap.get(systemExecuterProgressKey);
+    if (segmentLog != null) {
+      return segmentLog;
+    }
+
+    File path = getLogPath(systemExecuterProgressKey);
+    if (!path.isDirectory()) {
+      return null;
+    }
+
+    try {
+      return new ProgressSegmentLog(path);
+    } catch (IOException e) {
+      log.warn("Could not open progress log " + path + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+
+  /**
+   * Append progress to the log of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param data the progress data
+   * @return true if it has been appended
+   */
+  private boolean append(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressData data) {
+    ProgressSegmentLog segmentLog = segmentLogMap.get(systemExecuterProgressKey);
+    if (segmentLog == null) {
+      return false;
+    }
+
+    try {
+      segmentLog.append(data);
+      pendingLogSet.add(segmentLog);
+      return true;
+    } catch (IOException e) {
+      log.warn("Could not write progress log of " + systemExecuterProgressKey.getUniqueKey() + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+
+  /**
+   * Run the committer until the storage is closed. A batch is committed after the commit interval or as soon as a
+   * commit has been requested.
+   */
+  private void runCommitter() {
+    while (true) {
+      long batch;
+      synchronized (commitLock) {
+        if (!running) {
+          return;
+        }
+
+        if (requestedBatch == committedBatch) {
+          try {
+            commitLock.wait(commitInterval);
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+
+        batch = requestedBatch;
+      }
+
+      commitPendingLogs();
+      synchronized (commitLock) {
+        committedBatch = batch;
+        commitLock.notifyAll();
+      }
+    }
+  }
+
+
+  /**
+   * Commit the logs with new progress
+   */
+  private void commitPendingLogs() {
+    for (ProgressSegmentLog segmentLog : pendingLogSet) {
+      pendingLogSet.remove(segmentLog);
+      try {
+        segmentLog.commit();
+      } catch (IOException e) {
+        log.warn("Could not commit progress log " + segmentLog.getDirectory() + ": " + e.getMessage());
+      }
+    }
+  }
+}
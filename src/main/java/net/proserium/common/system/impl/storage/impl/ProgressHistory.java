@@ -0,0 +1,184 @@
+/*
+ * ProgressHistory.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+
+
+/**
+ * Retains the progress of an execution in memory, so it can be read by any number of readers. The offset of a chunk is
+ * its sequence number in the execution. The reads do not remove the progress.
+ * <p>
+ * The history tracks the furthest offset any reader has read. The progress behind it is unread and bounds the writer
+ * like the buffer of a consumed execution.
+ *
+ * @author Patrick Meier
+ */
+public class ProgressHistory {
+  private List<SystemExecuterProgressData> dataList;
+  private long firstOffset;
+  private long size;
+  private long readOffset;
+  private long unreadSize;
+
+
+  /**
+   * Constructor
+   */
+  public ProgressHistory() {
+    this.dataList = new ArrayList<SystemExecuterProgressData>();
+    this.firstOffset = 0;
+    this.size = 0;
+    this.readOffset = 0;
+    this.unreadSize = 0;
+  }
+
+
+  /**
+   * Add progress data
+   *
+   * @param data the progress data
+   */
+  public synchronized void add(SystemExecuterProgressData data) {
+    dataList.add(data);
+    size += getSize(data);
+    unreadSize += getSize(data);
+  }
+
+
+  /**
+   * Read the progress from an offset. At least one chunk is read if available, further chunks are read as long as their
+   * data does not exceed the maximum size.
+   *
+   * @param offset the offset, the first retained chunk is read if it is before it
+   * @param maximumSize the maximum size of the data in bytes
+   * @return the range or null if the offset is behind the end offset
+   */
+  public synchronized SystemExecuterProgressRange read(long offset, int maximumSize) {
+    long endOffset = firstOffset + dataList.size();
+    if (offset > endOffset) {
+      return null;
+    }
+
+    long start = Math.max(offset, firstOffset);
+    List<SystemExecuterProgressData> result = new ArrayList<SystemExecuterProgressData>();
+    long position = start;
+    long resultSize = 0;
+    while (position < endOffset) {
+      SystemExecuterProgressData data = dataList.get((int) (position - firstOffset));
+      int dataSize = getSize(data);
+      if (!result.isEmpty() && resultSize + dataSize > maximumSize) {
+        break;
+      }
+
+      result.add(data);
+      resultSize += dataSize;
+      position++;
+    }
+
+    for (long i = Math.max(readOffset, firstOffset); i < position; i++) {
+      unreadSize -= getSize(dataList.get((int) (i - firstOffset)));
+    }
+
+    readOffset = Math.max(readOffset, position);
+    return new SystemExecuterProgressRange(start, position, result);
+  }
+
+
+  /**
+   * Get the chunk at an offset without reading it
+   *
+   * @param offset the offset, the first retained chunk is returned if it is before it
+   * @return the chunk or null if the offset is not before the end offset
+   */
+  public synchronized SystemExecuterProgressData get(long offset) {
+    long index = Math.max(offset, firstOffset) - firstOffset;
+    if (index >= dataList.size()) {
+      return null;
+    }
+
+    return dataList.get((int) index);
+  }
+
+
+  /**
+   * Get the offset behind the last chunk
+   *
+   * @return the end offset
+   */
+  public synchronized long getEndOffset() {
+    return firstOffset + dataList.size();
+  }
+
+
+  /**
+   * Get the size of the progress behind the furthest offset any reader has read
+   *
+   * @return the unread size in bytes
+   */
+  public synchronized long getUnreadSize() {
+    return unreadSize;
+  }
+
+
+  /**
+   * Get the size of the retained progress
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+
+  /**
+   * Remove the oldest progress until the retained size does not exceed the maximum size
+   *
+   * @param maximumSize the maximum size in bytes
+   * @return the size of the removed progress in bytes
+   */
+  public synchronized long trim(long maximumSize) {
+    long result = 0;
+    int count = 0;
+    while (size - result > maximumSize && count < dataList.size()) {
+      int dataSize = getSize(dataList.get(count));
+      if (firstOffset + count >= readOffset) {
+        unreadSize -= dataSize;
+      }
+
+      result += dataSize;
+      count++;
+    }
+
+    if (count > 0) {
+      dataList.subList(0, count).clear();
+      firstOffset += count;
+      size -= result;
+      readOffset = Math.max(readOffset, firstOffset);
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Get the size of data, the size of a string is estimated by its number of characters
+   *
+   * @param data the data
+   * @return the size in bytes
+   */
+  private static int getSize(SystemExecuterProgressData data) {
+    if (data.getData() == null) {
+      return 0;
+    }
+
+    return data.getData().length();
+  }
+}
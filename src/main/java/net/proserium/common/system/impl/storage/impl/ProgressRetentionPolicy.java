@@ -0,0 +1,21 @@
+/*
+ * ProgressRetentionPolicy.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+
+/**
+ * Defines how long the {@link SystemExecuterProgressStorageImpl} keeps the progress of an execution.
+ *
+ * @author Patrick Meier
+ */
+public enum ProgressRetentionPolicy {
+  /** The execution is removed as soon as a reader has read its end, the progress can not be read at an offset */
+  CONSUME,
+
+  /** The progress is retained after the end has been read, so it can be read at an offset until it is removed */
+  RETAIN
+}
@@ -0,0 +1,381 @@
+/*
+ * ProgressRingBuffer.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+
+
+/**
+ * Implements a single producer single consumer ring buffer of progress data in a direct {@link ByteBuffer}. Each record
+ * consists of a stream tag, the length and the UTF-8 encoded data. The writer encodes the data directly into the buffer
+ * without any allocation and without lock, it publishes a record by advancing the write position. The reader decodes
+ * consecutive records of the same stream into one {@link SystemExecuterProgressData} and releases the space by advancing
+ * the read position. If the buffer is full, the writer is parked until the reader has released space.
+ * <p>
+ * Only one thread may write and only one thread at once may read.
+ *
+ * @author Patrick Meier
+ */
+public class ProgressRingBuffer {
+  private static final int HEADER_SIZE = 5;
+  private static final int MAXIMUM_CHARACTER_SIZE = 4;
+  private static final byte TAG_OUTPUT = 0;
+  private static final byte TAG_ERROR = 1;
+  private static final byte TAG_END = 2;
+  private static final long PARK_TIME = TimeUnit.MILLISECONDS.toNanos(10);
+
+  /** The default capacity of the buffer */
+  public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+  private ByteBuffer buffer;
+  private ByteBuffer readView;
+  private int capacity;
+  private int mask;
+  private AtomicLong writePosition;
+  private AtomicLong readPosition;
+  private volatile Thread waitingWriter;
+  private volatile boolean closed;
+  private byte[] readBuffer;
+
+
+  /**
+   * Constructor
+   *
+   * @param capacity the capacity in bytes, it is rounded up to a power of two
+   */
+  public ProgressRingBuffer(int capacity) {
+    this.capacity = Integer.highestOneBit(Math.max(64, capacity) - 1) << 1;
+    this.mask = this.capacity - 1;
+    this.buffer = ByteBuffer.allocateDirect(this.capacity);
+    this.readView = buffer.duplicate();
+    this.writePosition = new AtomicLong();
+    this.readPosition = new AtomicLong();
+    this.waitingWriter = null;
+    this.closed = false;
+    this.readBuffer = new byte[256];
+  }
+
+
+  /**
+   * Get the capacity
+   *
+   * @return the capacity in bytes
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+
+  /**
+   * Write data. A string which does not fit into the free space is split into several records at character boundaries.
+   * The data is discarded if the buffer has been closed.
+   *
+   * @param data the data
+   * @param isError true if it is from the error stream
+   */
+  public void write(String data, boolean isError) {
+    int index = 0;
+    int length = data.length();
+    while (index < length) {
+      long start = writePosition.get();
+      if (!awaitSpace(start, HEADER_SIZE + MAXIMUM_CHARACTER_SIZE)) {
+        return;
+      }
+
+      long limit = readPosition.get() + capacity;
+      long position = start + HEADER_SIZE;
+      while (index < length) {
+        char c = data.charAt(index);
+        int codePoint = c;
+        int consumed = 1;
+        if (Character.isHighSurrogate(c) && index + 1 < length && Character.isLowSurrogate(data.charAt(index + 1))) {
+          codePoint = Character.toCodePoint(c, data.charAt(index + 1));
+          consumed = 2;
+        } else if (Character.isSurrogate(c)) {
+          codePoint = '?';
+        }
+
+        int size = getEncodedSize(codePoint);
+        if (position + size > limit) {
+          break;
+        }
+
+        encode(position, codePoint, size);
+        position += size;
+        index += consumed;
+      }
+
+      publish(start, isError ? TAG_ERROR : TAG_OUTPUT, position);
+    }
+  }
+
+
+  /**
+   * Write the end of the execution
+   */
+  public void writeEnd() {
+    long start = writePosition.get();
+    if (awaitSpace(start, HEADER_SIZE)) {
+      publish(start, TAG_END, start + HEADER_SIZE);
+    }
+  }
+
+
+  /**
+   * Read the consecutive records of the same stream
+   *
+   * @return the data or null if the buffer is empty
+   */
+  public SystemExecuterProgressData read() {
+    long position = readPosition.get();
+    long limit = writePosition.get();
+    if (position == limit) {
+      return null;
+    }
+
+    byte tag = buffer.get(index(position));
+    if (tag == TAG_END) {
+      release(position + HEADER_SIZE);
+      return new SystemExecuterProgressData();
+    }
+
+    int length = 0;
+    while (position < limit && buffer.get(index(position)) == tag) {
+      int recordLength = getInt(position + 1);
+      if (readBuffer.length < length + recordLength) {
+        byte[] newBuffer = new byte[Math.max(readBuffer.length * 2, length + recordLength)];
+        System.arraycopy(readBuffer, 0, newBuffer, 0, length);
+        readBuffer = newBuffer;
+      }
+
+      copy(position + HEADER_SIZE, readBuffer, length, recordLength);
+      length += recordLength;
+      position += HEADER_SIZE + recordLength;
+    }
+
+    release(position);
+    return new SystemExecuterProgressData(new String(readBuffer, 0, length, StandardCharsets.UTF_8), tag == TAG_ERROR);
+  }
+
+
+  /**
+   * Check if the next record is the end of the execution
+   *
+   * @return true if the end is next
+   */
+  public boolean isEndNext() {
+    long position = readPosition.get();
+    return position != writePosition.get() && buffer.get(index(position)) == TAG_END;
+  }
+
+
+  /**
+   * Check if data is available
+   *
+   * @return true if data is available
+   */
+  public boolean hasData() {
+    return readPosition.get() != writePosition.get();
+  }
+
+
+  /**
+   * Get the size of the unread records
+   *
+   * @return the size in bytes
+   */
+  public long getSize() {
+    return writePosition.get() - readPosition.get();
+  }
+
+
+  /**
+   * Check if the writer is parked since the buffer is full
+   *
+   * @return true if the writer waits for the reader
+   */
+  public boolean isWriterWaiting() {
+    return waitingWriter != null;
+  }
+
+
+  /**
+   * Close the buffer, a parked writer is released and the following data is discarded
+   */
+  public void close() {
+    closed = true;
+    Thread writer = waitingWriter;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+
+  /**
+   * Wait until the reader has released enough space
+   *
+   * @param position the write position
+   * @param size the required size
+   * @return true if there is enough space, false if the buffer has been closed
+   */
+  private boolean awaitSpace(long position, int size) {
+    while (position + size - readPosition.get() > capacity) {
+      if (closed) {
+        return false;
+      }
+
+      waitingWriter = Thread.currentThread();
+      if (position + size - readPosition.get() > capacity && !closed) {
+        LockSupport.parkNanos(this, PARK_TIME);
+      }
+
+      waitingWriter = null;
+    }
+
+    return !closed;
+  }
+
+
+  /**
+   * Publish a record
+   *
+   * @param start the start position of the record
+   * @param tag the stream tag
+   * @param end the end position of the record
+   */
+  private void publish(long start, byte tag, long end) {
+    buffer.put(index(start), tag);
+    int length = (int) (end - start - HEADER_SIZE);
+    for (int i = 0; i < 4; i++) {
+      buffer.put(index(start + 1 + i), (byte) (length >>> (24 - 8 * i)));
+    }
+
+    // a volatile store, so a waiting reader which is checked afterwards can not miss the record
+    writePosition.set(end);
+  }
+
+
+  /**
+   * Release the space up to a position
+   *
+   * @param position the new read position
+   */
+  private void release(long position) {
+    readPosition.set(position);
+    Thread writer = waitingWriter;
+    if (writer != null) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+
+  /**
+   * Encode a code point as UTF-8
+   *
+   * @param position the position
+   * @param codePoint the code point
+   * @param size the encoded size
+   */
+  private void encode(long position, int codePoint, int size) {
+    switch (size) {
+      case 1:
+        buffer.put(index(position), (byte) codePoint);
+        break;
+      case 2:
+        buffer.put(index(position), (byte) (0xC0 | (codePoint >> 6)));
+        buffer.put(index(position + 1), (byte) (0x80 | (codePoint & 0x3F)));
+        break;
+      case 3:
+        buffer.put(index(position), (byte) (0xE0 | (codePoint >> 12)));
+        buffer.put(index(position + 1), (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put(index(position + 2), (byte) (0x80 | (codePoint & 0x3F)));
+        break;
+      default:
+        buffer.put(index(position), (byte) (0xF0 | (codePoint >> 18)));
+        buffer.put(index(position + 1), (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.put(index(position + 2), (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.put(index(position + 3), (byte) (0x80 | (codePoint & 0x3F)));
+        break;
+    }
+  }
+
+
+  /**
+   * Get the UTF-8 encoded size of a code point
+   *
+   * @param codePoint the code point
+   * @return the size in bytes
+   */
+  private static int getEncodedSize(int codePoint) {
+    if (codePoint < 0x80) {
+      return 1;
+    }
+
+    if (codePoint < 0x800) {
+      return 2;
+    }
+
+    if (codePoint < 0x10000) {
+      return 3;
+    }
+
+    return 4;
+  }
+
+
+  /**
+   * Read an int
+   *
+   * @param position the position
+   * @return the value
+   */
+  private int getInt(long position) {
+    int result = 0;
+    for (int i = 0; i < 4; i++) {
+      result = (result << 8) | (buffer.get(index(position + i)) & 0xFF);
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Copy bytes out of the buffer, the reader owns the read view
+   *
+   * @param position the position
+   * @param destination the destination
+   * @param offset the offset in the destination
+   * @param length the number of bytes
+   */
+  private void copy(long position, byte[] destination, int offset, int length) {
+    int index = index(position);
+    int firstLength = Math.min(length, capacity - index);
+    readView.clear();
+    readView.position(index);
+    readView.get(destination, offset, firstLength);
+    if (firstLength < length) {
+      readView.position(0);
+      readView.get(destination, offset + firstLength, length - firstLength);
+    }
+  }
+
+
+  /**
+   * Get the index of a position in the buffer
+   *
+   * @param position the position
+   * @return the index
+   */
+  private int index(long position) {
+    return (int) position & mask;
+  }
+}
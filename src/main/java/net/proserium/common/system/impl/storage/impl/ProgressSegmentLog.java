@@ -0,0 +1,591 @@
+/*
+ * ProgressSegmentLog.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import jptools.logger.Logger;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+
+
+/**
+ * Holds the progress of an execution in append-only segment files. A segment file is named by the offset of its first
+ * record, the offset of a record is its position in the sequence of all segments. Each record consists of the flags, the
+ * length, a checksum and the UTF-8 encoded data.
+ * <p>
+ * The appended records are buffered and become readable and durable by {@link #commit()}, which forces the segment
+ * once for all records appended since the last commit. The segment is forced without holding the lock of the log, so
+ * the output thread can append further records meanwhile. After a crash the records behind the last complete record are
+ * truncated. The index file records the end offset of an ended execution, so its segments are not scanned when the
+ * log is opened again.
+ *
+ * @author Patrick Meier
+ */
+public class ProgressSegmentLog {
+  private static final Logger log = Logger.getLogger(ProgressSegmentLog.class);
+  private static final int FLAG_ERROR = 1;
+  private static final int FLAG_ENDED = 2;
+  private static final int HEADER_SIZE = 9;
+  private static final int INDEX_VERSION = 1;
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+  private static final String SEGMENT_SUFFIX = ".segment";
+
+  /** The default size of a segment file */
+  public static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+
+  /** The name of the index file */
+  public static final String INDEX_FILE_NAME = "progress.index";
+
+  private File directory;
+  private long segmentSize;
+  private TreeMap<Long, File> segmentMap;
+  private FileChannel channel;
+  private long channelOffset;
+  private ByteBuffer writeBuffer;
+  private long writeOffset;
+  private boolean pendingEnd;
+  private long generation;
+  private Object commitLock;
+  private volatile long committedOffset;
+  private volatile boolean ended;
+
+
+  /**
+   * Constructor
+   *
+   * @param directory the directory of the segment files
+   * @throws IOException in case the existing segments could not be read
+   */
+  public ProgressSegmentLog(File directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * Constructor, the existing segments of the directory are recovered
+   *
+   * @param directory the directory of the segment files
+   * @param segmentSize the size of a segment file in bytes
+   * @throws IOException in case the existing segments could not be read
+   */
+  public ProgressSegmentLog(File directory, long segmentSize) throws IOException {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.segmentMap = new TreeMap<Long, File>();
+    this.channel = null;
+    this.channelOffset = 0;
+    this.writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    this.writeOffset = 0;
+    this.pendingEnd = false;
+    this.generation = 0;
+    this.commitLock = new Object();
+    this.committedOffset = 0;
+    this.ended = false;
+    recover();
+  }
+
+
+  /**
+   * Get the directory of the segment files
+   *
+   * @return the directory
+   */
+  public File getDirectory() {
+    return directory;
+  }
+
+
+  /**
+   * Append a record. The record is readable after the next {@link #commit()}.
+   *
+   * @param data the progress data
+   * @throws IOException in case the record could not be written
+   */
+  public synchronized void append(SystemExecuterProgressData data) throws IOException {
+    if (ended || pendingEnd) {
+      throw new IOException("Progress log " + directory + " has already ended!");
+    }
+
+    byte[] bytes = new byte[0];
+    if (!data.hasEnded() && data.getData() != null) {
+      bytes = data.getData().getBytes(StandardCharsets.UTF_8);
+    }
+
+    int flags = 0;
+    if (data.isError()) {
+      flags |= FLAG_ERROR;
+    }
+
+    if (data.hasEnded()) {
+      flags |= FLAG_ENDED;
+      pendingEnd = true;
+    }
+
+    if (channel == null || writeOffset - channelOffset >= segmentSize) {
+      startSegment();
+    }
+
+    if (writeBuffer.remaining() < HEADER_SIZE) {
+      flushBuffer();
+    }
+
+    writeBuffer.put((byte) flags);
+    writeBuffer.putInt(bytes.length);
+    writeBuffer.putInt(getChecksum(flags, bytes));
+    int position = 0;
+    while (position < bytes.length) {
+      if (!writeBuffer.hasRemaining()) {
+        flushBuffer();
+      }
+
+      int length = Math.min(writeBuffer.remaining(), bytes.length - position);
+      writeBuffer.put(bytes, position, length);
+      position += length;
+    }
+
+    writeOffset += HEADER_SIZE + bytes.length;
+  }
+
+
+  /**
+   * Commit the appended records, the segment is forced once for all of them. Only the buffered records are written under
+   * the lock of the log, records which are appended while the segment is forced belong to the next commit.
+   *
+   * @return true if records have been committed
+   * @throws IOException in case the records could not be written
+   */
+  public boolean commit() throws IOException {
+    synchronized (commitLock) {
+      FileChannel forceChannel;
+      long offset;
+      long forceGeneration;
+      synchronized (this) {
+        if (writeOffset == committedOffset) {
+          return false;
+        }
+
+        flushBuffer();
+        forceChannel = channel;
+        offset = writeOffset;
+        forceGeneration = generation;
+      }
+
+      try {
+        forceChannel.force(false);
+      } catch (ClosedChannelException e) {
+        // a completed segment is forced before it is closed, the records of a closed log are discarded
+      }
+
+      synchronized (this) {
+        if (generation != forceGeneration) {
+          return false;
+        }
+
+        committedOffset = offset;
+        if (pendingEnd && writeOffset == offset) {
+          ended = true;
+          closeChannel();
+          writeIndex();
+        }
+      }
+
+      return true;
+    }
+  }
+
+
+  /**
+   * Read the committed records from an offset. At least one record is read if available, further records are read as
+   * long as their data does not exceed the maximum size.
+   *
+   * @param offset the offset of a record or the committed offset
+   * @param maximumSize the maximum size of the data in bytes
+   * @return the range of the records
+   * @throws IOException in case the offset is invalid or the records could not be read
+   */
+  public SystemExecuterProgressRange read(long offset, int maximumSize) throws IOException {
+    long end = committedOffset;
+    if (offset < 0 || offset > end) {
+      throw new IOException("Invalid offset " + offset + " of progress log " + directory + ", the committed offset is " + end + "!");
+    }
+
+    List<SystemExecuterProgressData> dataList = new ArrayList<SystemExecuterProgressData>();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    FileChannel input = null;
+    long inputOffset = 0;
+    long inputEnd = 0;
+    long position = offset;
+    int size = 0;
+    try {
+      while (position < end) {
+        if (input == null || position >= inputEnd) {
+          closeInput(input);
+          synchronized (this) {
+            Map.Entry<Long, File> segment = segmentMap.floorEntry(position);
+            Long nextOffset = segmentMap.higherKey(position);
+            inputOffset = segment.getKey();
+            inputEnd = nextOffset == null ? end : Math.min(nextOffset, end);
+            input = FileChannel.open(segment.getValue().toPath(), StandardOpenOption.READ);
+          }
+        }
+
+        header.clear();
+        readFully(input, header, position - inputOffset);
+        int flags = header.get(0);
+        int length = header.getInt(1);
+        if (length < 0 || position + HEADER_SIZE + length > inputEnd) {
+          throw new IOException("Invalid record at offset " + position + " of progress log " + directory + "!");
+        }
+
+        if (!dataList.isEmpty() && size + length > maximumSize) {
+          break;
+        }
+
+        byte[] bytes = new byte[length];
+        readFully(input, ByteBuffer.wrap(bytes), position - inputOffset + HEADER_SIZE);
+        if (header.getInt(5) != getChecksum(flags, bytes)) {
+          throw new IOException("Invalid checksum at offset " + position + " of progress log " + directory + "!");
+        }
+
+        position += HEADER_SIZE + length;
+        size += length;
+        if ((flags & FLAG_ENDED) != 0) {
+          dataList.add(new SystemExecuterProgressData());
+        } else {
+          dataList.add(new SystemExecuterProgressData(new String(bytes, StandardCharsets.UTF_8), (flags & FLAG_ERROR) != 0));
+        }
+      }
+    } finally {
+      closeInput(input);
+    }
+
+    return new SystemExecuterProgressRange(offset, position, dataList);
+  }
+
+
+  /**
+   * Get the offset behind the last committed record
+   *
+   * @return the committed offset
+   */
+  public long getCommittedOffset() {
+    return committedOffset;
+  }
+
+
+  /**
+   * Check if the end of the execution has been committed
+   *
+   * @return true if it has ended
+   */
+  public boolean isEnded() {
+    return ended;
+  }
+
+
+  /**
+   * Close the segment file which is written, the records which have not been committed are discarded
+   */
+  public synchronized void close() {
+    writeBuffer.clear();
+    writeOffset = committedOffset;
+    pendingEnd = false;
+    generation++;
+    closeChannel();
+  }
+
+
+  /**
+   * Close the log and delete its files
+   */
+  public synchronized void delete() {
+    close();
+    for (File file : segmentMap.values()) {
+      deleteFile(file);
+    }
+
+    segmentMap.clear();
+    deleteFile(new File(directory, INDEX_FILE_NAME));
+    deleteFile(directory);
+  }
+
+
+  /**
+   * Recover the existing segments. The last segment is scanned and truncated behind its last complete record, unless
+   * the index contains the end of the execution.
+   *
+   * @throws IOException in case the segments could not be read
+   */
+  private void recover() throws IOException {
+    File[] fileList = directory.listFiles();
+    if (fileList == null) {
+      return;
+    }
+
+    for (File file : fileList) {
+      String name = file.getName();
+      if (name.endsWith(SEGMENT_SUFFIX)) {
+        try {
+          segmentMap.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+        } catch (NumberFormatException e) {
+          log.warn("Ignore unknown file " + file + ".");
+        }
+      }
+    }
+
+    if (segmentMap.isEmpty()) {
+      return;
+    }
+
+    Map.Entry<Long, File> lastSegment = segmentMap.lastEntry();
+    long end = lastSegment.getKey() + lastSegment.getValue().length();
+    if (readIndex() == end) {
+      writeOffset = end;
+      committedOffset = end;
+      ended = true;
+      return;
+    }
+
+    long length = scanSegment(lastSegment.getValue());
+    if (length < lastSegment.getValue().length()) {
+      log.warn("Truncate incomplete progress log " + lastSegment.getValue() + " from " + lastSegment.getValue().length() + " to " + length + " bytes.");
+      try (FileChannel truncateChannel = FileChannel.open(lastSegment.getValue().toPath(), StandardOpenOption.WRITE)) {
+        truncateChannel.truncate(length);
+        truncateChannel.force(false);
+      }
+    }
+
+    writeOffset = lastSegment.getKey() + length;
+    committedOffset = writeOffset;
+    if (ended) {
+      writeIndex();
+    }
+  }
+
+
+  /**
+   * Scan a segment for its complete records
+   *
+   * @param file the segment file
+   * @return the length of the complete records in bytes
+   * @throws IOException in case the segment could not be read
+   */
+  private long scanSegment(File file) throws IOException {
+    long length = 0;
+    long fileLength = file.length();
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      while (length + HEADER_SIZE <= fileLength) {
+        int flags = input.readByte();
+        int recordLength = input.readInt();
+        int checksum = input.readInt();
+        if (recordLength < 0 || length + HEADER_SIZE + recordLength > fileLength) {
+          break;
+        }
+
+        byte[] bytes = new byte[recordLength];
+        input.readFully(bytes);
+        if (checksum != getChecksum(flags, bytes)) {
+          break;
+        }
+
+        length += HEADER_SIZE + recordLength;
+        ended = (flags & FLAG_ENDED) != 0;
+      }
+    } catch (EOFException e) {
+      log.debug("Unexpected end of progress log " + file + ".");
+    }
+
+    return length;
+  }
+
+
+  /**
+   * Start a new segment or continue the last one. A completed segment is forced before it is closed.
+   *
+   * @throws IOException in case the segment could not be opened
+   */
+  private void startSegment() throws IOException {
+    if (channel != null) {
+      flushBuffer();
+      channel.force(false);
+      closeChannel();
+    }
+
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Could not create progress log path " + directory + ".");
+    }
+
+    Map.Entry<Long, File> lastSegment = segmentMap.lastEntry();
+    if (lastSegment != null && writeOffset - lastSegment.getKey() < segmentSize) {
+      channelOffset = lastSegment.getKey();
+      channel = FileChannel.open(lastSegment.getValue().toPath(), StandardOpenOption.WRITE);
+      // bytes behind the committed records have been discarded
+      channel.truncate(writeOffset - channelOffset);
+      channel.position(writeOffset - channelOffset);
+      return;
+    }
+
+    File file = new File(directory, String.format("%020d" + SEGMENT_SUFFIX, writeOffset));
+    channelOffset = writeOffset;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    segmentMap.put(writeOffset, file);
+  }
+
+
+  /**
+   * Write the buffered records into the segment
+   *
+   * @throws IOException in case the records could not be written
+   */
+  private void flushBuffer() throws IOException {
+    writeBuffer.flip();
+    while (writeBuffer.hasRemaining()) {
+      channel.write(writeBuffer);
+    }
+
+    writeBuffer.clear();
+  }
+
+
+  /**
+   * Close the segment file which is written
+   */
+  private void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        log.debug("Could not close progress log " + directory + ": " + e.getMessage());
+      }
+
+      channel = null;
+    }
+  }
+
+
+  /**
+   * Read the end offset of an ended execution from the index
+   *
+   * @return the end offset or -1 if it is unknown
+   */
+  private long readIndex() {
+    File indexFile = new File(directory, INDEX_FILE_NAME);
+    if (!indexFile.exists()) {
+      return -1;
+    }
+
+    try (DataInputStream input = new DataInputStream(new FileInputStream(indexFile))) {
+      if (input.readInt() != INDEX_VERSION) {
+        return -1;
+      }
+
+      long endOffset = input.readLong();
+      return input.readBoolean() ? endOffset : -1;
+    } catch (IOException e) {
+      log.debug("Could not read index " + indexFile + ": " + e.getMessage());
+      return -1;
+    }
+  }
+
+
+  /**
+   * Write the index
+   *
+   * @throws IOException in case the index could not be written
+   */
+  private void writeIndex() throws IOException {
+    FileOutputStream outputStream = new FileOutputStream(new File(directory, INDEX_FILE_NAME));
+    try (DataOutputStream output = new DataOutputStream(outputStream)) {
+      output.writeInt(INDEX_VERSION);
+      output.writeLong(committedOffset);
+      output.writeBoolean(ended);
+      output.flush();
+      outputStream.getFD().sync();
+    }
+  }
+
+
+  /**
+   * Read bytes at a position until the buffer is full
+   *
+   * @param input the channel
+   * @param buffer the buffer
+   * @param position the position in the channel
+   * @throws IOException in case the bytes could not be read
+   */
+  private static void readFully(FileChannel input, ByteBuffer buffer, long position) throws IOException {
+    long current = position;
+    while (buffer.hasRemaining()) {
+      int length = input.read(buffer, current);
+      if (length < 0) {
+        throw new EOFException("Unexpected end of progress log at " + current + ".");
+      }
+
+      current += length;
+    }
+  }
+
+
+  /**
+   * Close a channel which is read
+   *
+   * @param input the channel or null
+   */
+  private static void closeInput(FileChannel input) {
+    if (input != null) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        log.debug("Could not close progress log: " + e.getMessage());
+      }
+    }
+  }
+
+
+  /**
+   * Calculate the checksum of a record
+   *
+   * @param flags the flags
+   * @param bytes the data
+   * @return the checksum
+   */
+  private static int getChecksum(int flags, byte[] bytes) {
+    CRC32 crc = new CRC32();
+    crc.update(flags);
+    crc.update(bytes, 0, bytes.length);
+    return (int) crc.getValue();
+  }
+
+
+  /**
+   * Delete a file
+   *
+   * @param file the file
+   */
+  private static void deleteFile(File file) {
+    if (file.exists() && !file.delete()) {
+      log.debug("Could not delete " + file + ".");
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * ProgressSpillFile.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedList;
+import jptools.logger.Logger;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+
+
+/**
+ * Holds the progress data of an execution which has been spilled to disk. The data is appended to a sequence of segment
+ * files and read back in the same order. A segment is deleted as soon as it has been read completely. The class is not
+ * thread safe, the caller has to synchronize the access.
+ *
+ * @author Patrick Meier
+ */
+public class ProgressSpillFile {
+  private static final Logger log = Logger.getLogger(ProgressSpillFile.class);
+  private static final int FLAG_ERROR = 1;
+  private static final int FLAG_ENDED = 2;
+
+  /** The default size of a segment file */
+  public static final long DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+  private File directory;
+  private long segmentSize;
+  private LinkedList<File> segmentList;
+  private DataOutputStream output;
+  private File outputFile;
+  private long outputSize;
+  private DataInputStream input;
+  private int nextSegmentNumber;
+  private int numberOfChunks;
+
+
+  /**
+   * Constructor
+   *
+   * @param directory the directory of the segment files
+   */
+  public ProgressSpillFile(File directory) {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param directory the directory of the segment files
+   * @param segmentSize the size of a segment file in bytes
+   */
+  public ProgressSpillFile(File directory, long segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.segmentList = new LinkedList<File>();
+    this.output = null;
+    this.outputFile = null;
+    this.outputSize = 0;
+    this.input = null;
+    this.nextSegmentNumber = 0;
+    this.numberOfChunks = 0;
+  }
+
+
+  /**
+   * Append data. The data is readable after {@link #flush()}.
+   *
+   * @param data the data
+   * @throws IOException in case the data could not be written
+   */
+  public void write(SystemExecuterProgressData data) throws IOException {
+    if (output == null || outputSize >= segmentSize) {
+      startSegment();
+    }
+
+    int flags = 0;
+    if (data.isError()) {
+      flags |= FLAG_ERROR;
+    }
+
+    if (data.hasEnded()) {
+      flags |= FLAG_ENDED;
+    }
+
+    output.writeByte(flags);
+    if (data.getData() == null) {
+      output.writeInt(-1);
+      outputSize += 5;
+    } else {
+      byte[] bytes = data.getData().getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+      outputSize += 5 + bytes.length;
+    }
+
+    numberOfChunks++;
+  }
+
+
+  /**
+   * Flush the written data
+   *
+   * @throws IOException in case the data could not be written
+   */
+  public void flush() throws IOException {
+    if (output != null) {
+      output.flush();
+    }
+  }
+
+
+  /**
+   * Read the next data
+   *
+   * @return the data or null if all data has been read
+   * @throws IOException in case the data could not be read
+   */
+  public SystemExecuterProgressData read() throws IOException {
+    boolean flushed = false;
+    while (numberOfChunks > 0) {
+      if (input == null) {
+        if (segmentList.getFirst().equals(outputFile)) {
+          output.flush();
+        }
+
+        input = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentList.getFirst())));
+      }
+
+      int flags;
+      try {
+        flags = input.readByte();
+      } catch (EOFException e) {
+        if (segmentList.getFirst().equals(outputFile)) {
+          if (flushed) {
+            throw new IOException("Spill segment " + outputFile + " is incomplete!");
+          }
+
+          // the written data has not been flushed yet
+          output.flush();
+          flushed = true;
+          continue;
+        }
+
+        closeInput();
+        deleteFile(segmentList.removeFirst());
+        continue;
+      }
+
+      int length = input.readInt();
+      String data = null;
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        data = new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      numberOfChunks--;
+      if ((flags & FLAG_ENDED) != 0) {
+        return new SystemExecuterProgressData();
+      }
+
+      return new SystemExecuterProgressData(data, (flags & FLAG_ERROR) != 0);
+    }
+
+    return null;
+  }
+
+
+  /**
+   * Get the number of unread chunks
+   *
+   * @return the number of chunks
+   */
+  public int getNumberOfChunks() {
+    return numberOfChunks;
+  }
+
+
+  /**
+   * Close the files and delete them
+   */
+  public void close() {
+    closeInput();
+    if (output != null) {
+      try {
+        output.close();
+      } catch (IOException e) {
+        log.debug("Could not close " + outputFile + ": " + e.getMessage());
+      }
+
+      output = null;
+    }
+
+    while (!segmentList.isEmpty()) {
+      deleteFile(segmentList.removeFirst());
+    }
+
+    deleteFile(directory);
+    numberOfChunks = 0;
+  }
+
+
+  /**
+   * Start a new segment file
+   *
+   * @throws IOException in case the file could not be created
+   */
+  private void startSegment() throws IOException {
+    if (output != null) {
+      output.close();
+    }
+
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("Could not create spill path " + directory + ".");
+    }
+
+    outputFile = new File(directory, String.format("segment-%08d.spill", nextSegmentNumber++));
+    output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)));
+    outputSize = 0;
+    segmentList.addLast(outputFile);
+  }
+
+
+  /**
+   * Close the segment file which is read
+   */
+  private void closeInput() {
+    if (input != null) {
+      try {
+        input.close();
+      } catch (IOException e) {
+        log.debug("Could not close spill segment: " + e.getMessage());
+      }
+
+      input = null;
+    }
+  }
+
+
+  /**
+   * Delete a file
+   *
+   * @param file the file
+   */
+  private void deleteFile(File file) {
+    if (file.exists() && !file.delete()) {
+      log.debug("Could not delete " + file + ".");
+    }
+  }
+}
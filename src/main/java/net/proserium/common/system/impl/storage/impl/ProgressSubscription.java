@@ -0,0 +1,155 @@
+/*
+ * ProgressSubscription.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import jptools.logger.Logger;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscriber;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscription;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+
+
+/**
+ * Implements the {@link ISystemExecuterProgressSubscription} of the {@link SystemExecuterProgressStorageImpl}. The data
+ * is delivered by the storage, which serializes the deliveries of an execution. A demand of {@link Long#MAX_VALUE} is
+ * unbounded.
+ *
+ * @author Patrick Meier
+ */
+public class ProgressSubscription implements ISystemExecuterProgressSubscription {
+  private static final Logger log = Logger.getLogger(ProgressSubscription.class);
+  private ISystemExecuterProgressSubscriber subscriber;
+  private Runnable demandListener;
+  private AtomicLong demand;
+  private AtomicBoolean cancelled;
+
+
+  /**
+   * Constructor
+   *
+   * @param subscriber the subscriber
+   * @param demandListener the listener which is called when data has been requested
+   */
+  public ProgressSubscription(ISystemExecuterProgressSubscriber subscriber, Runnable demandListener) {
+    this.subscriber = subscriber;
+    this.demandListener = demandListener;
+    this.demand = new AtomicLong();
+    this.cancelled = new AtomicBoolean(false);
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscription#request(long)
+   */
+  @Override
+  public void request(long numberOfItems) {
+    if (numberOfItems <= 0) {
+      fail(new IllegalArgumentException("Invalid number of requested items " + numberOfItems + "!"));
+      return;
+    }
+
+    long current;
+    long next;
+    do {
+      current = demand.get();
+      next = current + numberOfItems;
+      if (next < 0) {
+        next = Long.MAX_VALUE;
+      }
+    } while (!demand.compareAndSet(current, next));
+
+    demandListener.run();
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscription#cancel()
+   */
+  @Override
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+
+  /**
+   * Check if the subscription has been cancelled or completed
+   *
+   * @return true if it has been cancelled
+   */
+  public boolean isCancelled() {
+    return cancelled.get();
+  }
+
+
+  /**
+   * Get the outstanding demand
+   *
+   * @return the demand
+   */
+  public long getDemand() {
+    return demand.get();
+  }
+
+
+  /**
+   * Deliver progress data to the subscriber. The end of the execution completes the subscription.
+   *
+   * @param data the progress data
+   */
+  public void deliver(SystemExecuterProgressData data) {
+    if (data.hasEnded()) {
+      complete();
+      return;
+    }
+
+    if (isCancelled()) {
+      return;
+    }
+
+    if (demand.get() != Long.MAX_VALUE) {
+      demand.decrementAndGet();
+    }
+
+    try {
+      subscriber.onNext(data);
+    } catch (RuntimeException e) {
+      log.warn("Subscriber failed, cancel subscription: " + e.getMessage(), e);
+      cancel();
+    }
+  }
+
+
+  /**
+   * Complete the subscription
+   */
+  public void complete() {
+    if (cancelled.compareAndSet(false, true)) {
+      try {
+        subscriber.onComplete();
+      } catch (RuntimeException e) {
+        log.warn("Subscriber failed on completion: " + e.getMessage(), e);
+      }
+    }
+  }
+
+
+  /**
+   * Fail the subscription
+   *
+   * @param throwable the cause
+   */
+  public void fail(Throwable throwable) {
+    if (cancelled.compareAndSet(false, true)) {
+      try {
+        subscriber.onError(throwable);
+      } catch (RuntimeException e) {
+        log.warn("Subscriber failed on error: " + e.getMessage(), e);
+      }
+    }
+  }
+}
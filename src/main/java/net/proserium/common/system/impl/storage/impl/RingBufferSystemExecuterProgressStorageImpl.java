@@ -0,0 +1,70 @@
+/*
+ * RingBufferSystemExecuterProgressStorageImpl.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+
+/**
+ * Implements a progress storage which holds the progress of each execution in an off heap {@link ProgressRingBuffer}.
+ * The output is stored as UTF-8 bytes and decoded only on read, so the writer neither takes a lock nor allocates and
+ * the buffered output is invisible to the garbage collector. A full ring blocks the writer until the reader has
+ * released space, the capacity replaces the maximum buffer size and the spilling to disk.
+ * <p>
+ * The progress of an execution must be added by a single thread.
+ *
+ * @author Patrick Meier
+ */
+public class RingBufferSystemExecuterProgressStorageImpl extends SystemExecuterProgressStorageImpl {
+  private volatile int capacity;
+
+
+  /**
+   * Constructor
+   */
+  public RingBufferSystemExecuterProgressStorageImpl() {
+    this(ProgressRingBuffer.DEFAULT_CAPACITY);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param capacity the capacity of the ring buffer per execution in bytes, it is rounded up to a power of two
+   */
+  public RingBufferSystemExecuterProgressStorageImpl(int capacity) {
+    super();
+    this.capacity = capacity;
+  }
+
+
+  /**
+   * Get the capacity of the ring buffer per execution
+   *
+   * @return the capacity in bytes
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+
+  /**
+   * Set the capacity of the ring buffer per execution, it applies to the executions which are started afterwards
+   *
+   * @param capacity the capacity in bytes, it is rounded up to a power of two
+   */
+  public void setCapacity(int capacity) {
+    this.capacity = capacity;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl#createEntry()
+   */
+  @Override
+  protected SystemExecuterProgressEntry createEntry() {
+    return new SystemExecuterProgressEntry(new ProgressRingBuffer(capacity));
+  }
+}
@@ -0,0 +1,794 @@
+/*
+ * SystemExecuterProgressEntry.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jptools.logger.Logger;
+import net.proserium.common.system.ProcessStatistics;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+
+
+/**
+ * Holds the progress of one execution in the {@link SystemExecuterProgressStorageImpl}. The size of the buffered data is
+ * tracked, so the writer can be blocked until the reader has released space. The data in memory can be spilled into a
+ * {@link ProgressSpillFile}, the spilled data is always older than the data in memory and is read first.
+ * <p>
+ * Consecutive chunks of the same stream are merged into a pending chunk up to a maximum chunk size and age. A reader
+ * takes the pending chunk as soon as the queue is empty, so the merging does not delay the output.
+ * <p>
+ * An entry with a {@link ProgressRingBuffer} holds the data off heap instead. The buffer has a single writer and
+ * merges the chunks on read, the spilling and the chunk merging do not apply.
+ * <p>
+ * If the entry has a {@link ProgressHistory}, the progress is held in the history only, neither in the queue nor in the
+ * ring buffer. The consuming reader follows the history by its own offset and merges consecutive chunks of the same
+ * stream on read. The maximum buffer size then bounds the progress which no reader has read yet, so the writer is
+ * released by the consuming reader as well as by the reads at an offset. The entry is consumed once a reader has read
+ * the end.
+ *
+ * @author Patrick Meier
+ */
+public class SystemExecuterProgressEntry {
+  private static final Logger log = Logger.getLogger(SystemExecuterProgressEntry.class);
+  private ConcurrentLinkedQueue<SystemExecuterProgressData> queue;
+  private volatile long queueWaitTime;
+  private volatile OutputFileTailReader outputFileTailReader;
+  private volatile ProcessStatistics processStatistics;
+  private long bufferedSize;
+  private boolean closed;
+  private AtomicLong memorySize;
+  private long entryMemorySize;
+  private ProgressSpillFile spillFile;
+  private int maximumChunkSize;
+  private long maximumChunkAge;
+  private StringBuilder pendingData;
+  private boolean pendingError;
+  private long pendingTime;
+  private volatile int numberOfWaitingReaders;
+  private volatile int numberOfWaitingWriters;
+  private ProgressRingBuffer ringBuffer;
+  private volatile ProgressHistory history;
+  private long consumerOffset;
+  private volatile boolean consumed;
+  private volatile long lastAccessTime;
+  private volatile long endTime;
+  private List<ProgressSubscription> subscriptionList;
+  private AtomicInteger dispatchCounter;
+
+
+  /**
+   * Constructor
+   */
+  public SystemExecuterProgressEntry() {
+    this(new AtomicLong(), 0, 0);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param memorySize the size of the data in memory, which is shared by all entries of a storage
+   * @param maximumChunkSize the maximum size of a merged chunk or less or equals 0 to not merge the chunks
+   * @param maximumChunkAge the maximum time in milliseconds data is merged into a chunk
+   */
+  public SystemExecuterProgressEntry(AtomicLong memorySize, int maximumChunkSize, long maximumChunkAge) {
+    queue = new ConcurrentLinkedQueue<SystemExecuterProgressData>();
+    queueWaitTime = -1;
+    outputFileTailReader = null;
+    processStatistics = null;
+    bufferedSize = 0;
+    closed = false;
+    this.memorySize = memorySize;
+    entryMemorySize = 0;
+    spillFile = null;
+    this.maximumChunkSize = maximumChunkSize;
+    this.maximumChunkAge = TimeUnit.MILLISECONDS.toNanos(maximumChunkAge);
+    pendingData = new StringBuilder();
+    pendingError = false;
+    pendingTime = 0;
+    numberOfWaitingReaders = 0;
+    numberOfWaitingWriters = 0;
+    subscriptionList = new CopyOnWriteArrayList<ProgressSubscription>();
+    dispatchCounter = new AtomicInteger();
+    ringBuffer = null;
+    history = null;
+    consumerOffset = 0;
+    consumed = false;
+    lastAccessTime = System.currentTimeMillis();
+    endTime = -1;
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param ringBuffer the ring buffer which holds the data
+   */
+  public SystemExecuterProgressEntry(ProgressRingBuffer ringBuffer) {
+    this(new AtomicLong(), 0, 0);
+    this.ringBuffer = ringBuffer;
+  }
+
+
+  /**
+   * Get the queue of the progress data in memory
+   *
+   * @return the queue
+   */
+  public ConcurrentLinkedQueue<SystemExecuterProgressData> getQueue() {
+    return queue;
+  }
+
+
+  /**
+   * Add data. If the buffered data exceeds the maximum buffer size, the caller is blocked until a reader has released
+   * enough space or the entry has been closed. A chunk is always added to an empty buffer, so a chunk which is larger than
+   * the maximum buffer size can not block the writer forever. Empty data is ignored.
+   *
+   * @param data the data
+   * @param isError true if it is from the error stream
+   * @param maximumBufferSize the maximum buffer size in bytes or less or equals 0 for an unbounded buffer
+   */
+  public void add(String data, boolean isError, long maximumBufferSize) {
+    if (data == null || data.isEmpty()) {
+      return;
+    }
+
+    lastAccessTime = System.currentTimeMillis();
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      addRetained(currentHistory, new SystemExecuterProgressData(data, isError), maximumBufferSize);
+      return;
+    }
+
+    if (ringBuffer != null) {
+      // the ring buffer blocks the writer itself, the lock is only taken to wake a waiting reader
+      ringBuffer.write(data, isError);
+      wakeReaders();
+      return;
+    }
+
+    int size = data.length();
+    synchronized (this) {
+      while (maximumBufferSize > 0 && !closed && bufferedSize > 0 && bufferedSize + size > maximumBufferSize) {
+        numberOfWaitingWriters++;
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          // the output is not lost, the buffer may exceed its maximum size
+          Thread.currentThread().interrupt();
+          break;
+        } finally {
+          numberOfWaitingWriters--;
+        }
+      }
+
+      bufferedSize += size;
+      entryMemorySize += size;
+      memorySize.addAndGet(size);
+
+      notifyReaders();
+      if (maximumChunkSize <= 0) {
+        queue.add(new SystemExecuterProgressData(data, isError));
+        return;
+      }
+
+      long now = System.nanoTime();
+      if (pendingData.length() > 0 && (pendingError != isError || pendingData.length() + size > maximumChunkSize || now - pendingTime > maximumChunkAge)) {
+        flushPendingData();
+      }
+
+      if (pendingData.length() == 0) {
+        pendingError = isError;
+        pendingTime = now;
+      }
+
+      pendingData.append(data);
+      if (pendingData.length() >= maximumChunkSize) {
+        flushPendingData();
+      }
+    }
+  }
+
+
+  /**
+   * Add the end of the execution
+   */
+  public void addEnd() {
+    endTime = System.currentTimeMillis();
+    lastAccessTime = endTime;
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      synchronized (this) {
+        currentHistory.add(new SystemExecuterProgressData());
+        notifyReaders();
+      }
+
+      return;
+    }
+
+    if (ringBuffer != null) {
+      ringBuffer.writeEnd();
+      wakeReaders();
+      return;
+    }
+
+    synchronized (this) {
+      flushPendingData();
+      queue.add(new SystemExecuterProgressData());
+      notifyReaders();
+    }
+  }
+
+
+  /**
+   * Wait until data is available or the entry has been closed
+   *
+   * @param timeout the timeout in nanoseconds
+   * @return true if data is available
+   * @throws InterruptedException if the thread was interrupted while waiting
+   */
+  public synchronized boolean awaitData(long timeout) throws InterruptedException {
+    long deadline = System.nanoTime() + timeout;
+    numberOfWaitingReaders++;
+    try {
+      long remaining = timeout;
+      while (!hasData() && !closed && remaining > 0) {
+        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        remaining = deadline - System.nanoTime();
+      }
+    } finally {
+      numberOfWaitingReaders--;
+    }
+
+    return hasData();
+  }
+
+
+  /**
+   * Remove the head of the queue and release its space. The spilled data is read first.
+   *
+   * @return the data or null if the queue is empty
+   */
+  public synchronized SystemExecuterProgressData poll() {
+    lastAccessTime = System.currentTimeMillis();
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      return pollRetained(currentHistory);
+    }
+
+    if (ringBuffer != null) {
+      return ringBuffer.read();
+    }
+
+    SystemExecuterProgressData result = null;
+    if (spillFile != null && spillFile.getNumberOfChunks() > 0) {
+      try {
+        result = spillFile.read();
+      } catch (IOException e) {
+        log.warn("Could not read spilled progress data, " + spillFile.getNumberOfChunks() + " chunks are lost: " + e.getMessage());
+        spillFile.close();
+        spillFile = null;
+      }
+    }
+
+    int size;
+    if (result == null) {
+      result = queue.poll();
+      if (result == null && pendingData.length() > 0) {
+        flushPendingData();
+        result = queue.poll();
+      }
+
+      size = getSize(result);
+      entryMemorySize -= size;
+      memorySize.addAndGet(-size);
+    } else {
+      size = getSize(result);
+    }
+
+    if (size > 0) {
+      bufferedSize -= size;
+      notifyAll();
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Get the head of the queue without removing it
+   *
+   * @return the head or null if the queue is empty or the head has been spilled
+   */
+  public synchronized SystemExecuterProgressData peek() {
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      return currentHistory.get(consumerOffset);
+    }
+
+    if (ringBuffer != null) {
+      // the data of a ring buffer is decoded on read, only the end is visible
+      return ringBuffer.isEndNext() ? new SystemExecuterProgressData() : null;
+    }
+
+    if (spillFile != null && spillFile.getNumberOfChunks() > 0) {
+      return null;
+    }
+
+    return queue.peek();
+  }
+
+
+  /**
+   * Spill the queued data into segment files. The data is appended in its order to the spilled data. The pending chunk
+   * is newer than the queued data and remains in memory, so it is still merged with the following data.
+   *
+   * @param directory the directory of the segment files
+   * @return the size of the released memory in bytes
+   */
+  public synchronized long spill(File directory) {
+    if (ringBuffer != null) {
+      return 0;
+    }
+
+    if (closed || queue.isEmpty()) {
+      return 0;
+    }
+
+    if (spillFile == null) {
+      spillFile = new ProgressSpillFile(directory);
+    }
+
+    long result = 0;
+    try {
+      SystemExecuterProgressData data;
+      while ((data = queue.peek()) != null) {
+        spillFile.write(data);
+        queue.poll();
+        result += getSize(data);
+      }
+
+      spillFile.flush();
+    } catch (IOException e) {
+      log.warn("Could not spill progress data into " + directory + ": " + e.getMessage());
+    }
+
+    entryMemorySize -= result;
+    memorySize.addAndGet(-result);
+    return result;
+  }
+
+
+  /**
+   * Get the size of the data in memory
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getMemorySize() {
+    return entryMemorySize;
+  }
+
+
+  /**
+   * Get the size of the buffered data
+   *
+   * @return the buffered size in bytes
+   */
+  public synchronized long getBufferedSize() {
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      return currentHistory.getUnreadSize();
+    }
+
+    if (ringBuffer != null) {
+      return ringBuffer.getSize();
+    }
+
+    return bufferedSize;
+  }
+
+
+  /**
+   * Close the entry, a blocked writer is released. The unread data is discarded and the spilled data is deleted.
+   */
+  public synchronized void close() {
+    closed = true;
+    queue.clear();
+    pendingData.setLength(0);
+    memorySize.addAndGet(-entryMemorySize);
+    entryMemorySize = 0;
+    if (spillFile != null) {
+      spillFile.close();
+      spillFile = null;
+    }
+
+    if (ringBuffer != null) {
+      ringBuffer.close();
+    }
+
+    notifyAll();
+  }
+
+
+  /**
+   * Add a subscription
+   *
+   * @param subscription the subscription
+   */
+  public void addSubscription(ProgressSubscription subscription) {
+    subscriptionList.add(subscription);
+  }
+
+
+  /**
+   * Get the active subscriptions, the cancelled subscriptions are removed
+   *
+   * @return the subscriptions
+   */
+  public List<ProgressSubscription> getSubscriptionList() {
+    List<ProgressSubscription> result = new ArrayList<ProgressSubscription>();
+    for (ProgressSubscription subscription : subscriptionList) {
+      if (subscription.isCancelled()) {
+        subscriptionList.remove(subscription);
+      } else {
+        result.add(subscription);
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Check if the entry has subscriptions
+   *
+   * @return true if it has subscriptions
+   */
+  public boolean hasSubscriptions() {
+    return !subscriptionList.isEmpty();
+  }
+
+
+  /**
+   * Get the counter which serializes the deliveries to the subscriptions
+   *
+   * @return the dispatch counter
+   */
+  public AtomicInteger getDispatchCounter() {
+    return dispatchCounter;
+  }
+
+
+  /**
+   * Get the history which retains the progress
+   *
+   * @return the history or null if the progress is not retained
+   */
+  public ProgressHistory getHistory() {
+    return history;
+  }
+
+
+  /**
+   * Set the history which retains the progress
+   *
+   * @param history the history
+   */
+  public void setHistory(ProgressHistory history) {
+    this.history = history;
+  }
+
+
+  /**
+   * Read the retained progress at an offset, a writer which waits for the readers is released
+   *
+   * @param offset the offset
+   * @param maximumSize the maximum size of the data in bytes
+   * @return the range or null if the progress is not retained or the offset is behind the end offset
+   */
+  public SystemExecuterProgressRange read(long offset, int maximumSize) {
+    ProgressHistory currentHistory = history;
+    if (currentHistory == null) {
+      return null;
+    }
+
+    lastAccessTime = System.currentTimeMillis();
+    SystemExecuterProgressRange result = currentHistory.read(offset, maximumSize);
+    synchronized (this) {
+      notifyAll();
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Remove the oldest retained progress until it does not exceed the maximum size, a writer which waits for the readers
+   * is released
+   *
+   * @param maximumSize the maximum size in bytes
+   * @return the size of the removed progress in bytes
+   */
+  public long trimHistory(long maximumSize) {
+    ProgressHistory currentHistory = history;
+    if (currentHistory == null) {
+      return 0;
+    }
+
+    long result = currentHistory.trim(maximumSize);
+    if (result > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Check if a reader has read the end of the execution
+   *
+   * @return true if it has been consumed
+   */
+  public boolean isConsumed() {
+    return consumed;
+  }
+
+
+  /**
+   * Mark the end of the execution as read
+   *
+   * @param consumed true if it has been consumed
+   */
+  public void setConsumed(boolean consumed) {
+    this.consumed = consumed;
+  }
+
+
+  /**
+   * Check if the writer is blocked since the buffer is full
+   *
+   * @return true if the writer waits for a reader
+   */
+  public boolean isWriterBlocked() {
+    return numberOfWaitingWriters > 0 || (ringBuffer != null && ringBuffer.isWriterWaiting());
+  }
+
+
+  /**
+   * Get the time the progress was last added or read
+   *
+   * @return the last access time in milliseconds
+   */
+  public long getLastAccessTime() {
+    return lastAccessTime;
+  }
+
+
+  /**
+   * Check if the end of the execution has been added
+   *
+   * @return true if the execution has ended
+   */
+  public boolean isEnded() {
+    return endTime >= 0;
+  }
+
+
+  /**
+   * Get the time the end of the execution was added
+   *
+   * @return the end time in milliseconds or -1 if the execution is running
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+
+  /**
+   * Get the time in milliseconds the execution waited in the queue of the scheduler
+   *
+   * @return the queue wait time or -1 if it is unknown
+   */
+  public long getQueueWaitTime() {
+    return queueWaitTime;
+  }
+
+
+  /**
+   * Set the time in milliseconds the execution waited in the queue of the scheduler
+   *
+   * @param queueWaitTime the queue wait time
+   */
+  public void setQueueWaitTime(long queueWaitTime) {
+    this.queueWaitTime = queueWaitTime;
+  }
+
+
+  /**
+   * Get the resource usage of the process tree of the execution
+   *
+   * @return the process statistics or null if they are unknown
+   */
+  public ProcessStatistics getProcessStatistics() {
+    return processStatistics;
+  }
+
+
+  /**
+   * Set the resource usage of the process tree of the execution
+   *
+   * @param processStatistics the process statistics
+   */
+  public void setProcessStatistics(ProcessStatistics processStatistics) {
+    this.processStatistics = processStatistics;
+  }
+
+
+  /**
+   * Get the reader of the output file of the execution
+   *
+   * @return the output file tail reader or null if the output is added to the queue
+   */
+  public OutputFileTailReader getOutputFileTailReader() {
+    return outputFileTailReader;
+  }
+
+
+  /**
+   * Set the reader of the output file of the execution
+   *
+   * @param outputFileTailReader the output file tail reader
+   */
+  public void setOutputFileTailReader(OutputFileTailReader outputFileTailReader) {
+    this.outputFileTailReader = outputFileTailReader;
+  }
+
+
+  /**
+   * Get the size of data, the size of a string is estimated by its number of characters
+   *
+   * @param data the data
+   * @return the size in bytes
+   */
+  private static int getSize(SystemExecuterProgressData data) {
+    if (data == null || data.getData() == null) {
+      return 0;
+    }
+
+    return data.getData().length();
+  }
+
+
+  /**
+   * Check if data is available, the caller holds the lock
+   *
+   * @return true if data is available
+   */
+  private boolean hasData() {
+    ProgressHistory currentHistory = history;
+    if (currentHistory != null) {
+      return consumerOffset < currentHistory.getEndOffset();
+    }
+
+    if (ringBuffer != null) {
+      return ringBuffer.hasData();
+    }
+
+    return (spillFile != null && spillFile.getNumberOfChunks() > 0) || !queue.isEmpty() || pendingData.length() > 0;
+  }
+
+
+  /**
+   * Wake the waiting readers, the caller holds the lock
+   */
+  private void notifyReaders() {
+    if (numberOfWaitingReaders > 0) {
+      notifyAll();
+    }
+  }
+
+
+  /**
+   * Wake the waiting readers without holding the lock
+   */
+  private void wakeReaders() {
+    if (numberOfWaitingReaders > 0) {
+      synchronized (this) {
+        notifyAll();
+      }
+    }
+  }
+
+
+  /**
+   * Add data to the history. The writer is blocked as long as the unread progress exceeds the maximum buffer size, the
+   * unread progress is released by any reader.
+   *
+   * @param currentHistory the history
+   * @param data the data
+   * @param maximumBufferSize the maximum buffer size in bytes or less or equals 0 for an unbounded buffer
+   */
+  private synchronized void addRetained(ProgressHistory currentHistory, SystemExecuterProgressData data, long maximumBufferSize) {
+    int size = getSize(data);
+    while (maximumBufferSize > 0 && !closed) {
+      long unreadSize = currentHistory.getUnreadSize();
+      if (unreadSize == 0 || unreadSize + size <= maximumBufferSize) {
+        break;
+      }
+
+      numberOfWaitingWriters++;
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        // the output is not lost, the buffer may exceed its maximum size
+        Thread.currentThread().interrupt();
+        break;
+      } finally {
+        numberOfWaitingWriters--;
+      }
+    }
+
+    currentHistory.add(data);
+    notifyReaders();
+  }
+
+
+  /**
+   * Read the next progress of the consuming reader from the history, consecutive chunks of the same stream are merged up
+   * to the maximum chunk size. The caller holds the lock.
+   *
+   * @param currentHistory the history
+   * @return the data or null if there is no new progress
+   */
+  private SystemExecuterProgressData pollRetained(ProgressHistory currentHistory) {
+    SystemExecuterProgressRange range = currentHistory.read(consumerOffset, Math.max(0, maximumChunkSize));
+    if (range == null || range.getDataList().isEmpty()) {
+      return null;
+    }
+
+    List<SystemExecuterProgressData> dataList = range.getDataList();
+    SystemExecuterProgressData first = dataList.get(0);
+    if (first.hasEnded() || dataList.size() == 1) {
+      consumerOffset = range.getOffset() + 1;
+      notifyAll();
+      return first;
+    }
+
+    StringBuilder builder = new StringBuilder(first.getData());
+    int count = 1;
+    while (count < dataList.size() && !dataList.get(count).hasEnded() && dataList.get(count).isError() == first.isError()) {
+      builder.append(dataList.get(count).getData());
+      count++;
+    }
+
+    consumerOffset = range.getOffset() + count;
+    notifyAll();
+    return new SystemExecuterProgressData(builder.toString(), first.isError());
+  }
+
+
+  /**
+   * Add the pending chunk to the queue, the caller holds the lock
+   */
+  private void flushPendingData() {
+    if (pendingData.length() > 0) {
+      queue.add(new SystemExecuterProgressData(pendingData.toString(), pendingError));
+      pendingData.setLength(0);
+    }
+  }
+}
@@ -6,30 +6,358 @@
  */
 package net.proserium.common.system.impl.storage.impl;
 
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import jptools.logger.Logger;
+import net.proserium.common.environment.SystemEnvironmentFactory;
+import net.proserium.common.system.ProcessStatistics;
 import net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscriber;
+import net.proserium.common.system.impl.storage.ProcessOutputDecoder;
 import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
 import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+import net.proserium.common.util.ThreadUtil;
 
 
 /**
- * Implements the {@link ISystemExecuterProgressStorage}.
+ * Implements the {@link ISystemExecuterProgressStorage}. The output of each execution can be bounded by a maximum buffer
+ * size: if the buffer is full, the writer is blocked until the output has been read. The reader of the process output
+ * then stops draining the pipe and the process blocks on its next write, so the memory stays flat even if nobody reads
+ * the output.
+ * <p>
+ * All executions share a maximum memory size. If it is exceeded, the unread output of the executions which hold the
+ * most memory is spilled into segment files in the temp path until the memory size is below the maximum again. Ended
+ * executions which nobody reads are spilled as well. The spilled output is read back in order, so no output is lost.
+ * <p>
+ * Consecutive chunks of the same stream are merged up to a maximum chunk size and age, empty chunks are ignored.
+ * <p>
+ * Subscribers get the progress pushed as soon as it has been added. The subscriptions consume the progress of an
+ * execution like a reader, each data is delivered to all subscriptions as far as all of them have demand. A subscriber
+ * without demand therefore leaves the data in the buffer of the execution, which applies the backpressure up to the
+ * process.
+ * <p>
+ * With the {@link ProgressRetentionPolicy#RETAIN} policy the progress is retained after the end has been read, so any
+ * number of readers can follow or replay an execution by {@link #read(SystemExecuterProgressKey, long, int)}. The
+ * progress is then held once in the history of the execution, the maximum buffer size bounds the progress which no
+ * reader has read yet. The output of an attached output file is not retained, it remains in the file.
+ * <p>
+ * A sweeper removes the executions which nobody reads to their end: an ended execution is removed after a maximum idle
+ * time, the retained progress of an execution is trimmed to a maximum size by removing its oldest chunks and the number
+ * of executions is bounded by removing the least recently used ended executions. A running execution is only removed if
+ * its writer has been blocked by a full buffer for the maximum idle time without any read, the removal releases the
+ * writer and its further output is discarded.
  *
  * @author Patrick Meier
  */
 public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgressStorage {
   private static final Logger log = Logger.getLogger(SystemExecuterProgressStorageImpl.class);
-  private Map<SystemExecuterProgressKey, ConcurrentLinkedQueue<SystemExecuterProgressData>> systemExecuterProgressStorageMap;
+
+  /** The interval in milliseconds an output file is checked by a waiting reader */
+  private static final long OUTPUT_FILE_CHECK_INTERVAL = 50;
+
+  /** The default maximum size of a merged chunk */
+  public static final int DEFAULT_MAXIMUM_CHUNK_SIZE = 8192;
+
+  /** The default maximum time in milliseconds data is merged into a chunk */
+  public static final long DEFAULT_MAXIMUM_CHUNK_AGE = 100;
+
+  /** The interval in milliseconds the executions are swept */
+  private static final long SWEEP_INTERVAL = 1000;
+
+  private Map<SystemExecuterProgressKey, SystemExecuterProgressEntry> systemExecuterProgressStorageMap;
+  private volatile long maximumBufferSize;
+  private volatile long maximumMemorySize;
+  private AtomicLong memorySize;
+  private volatile int maximumChunkSize;
+  private volatile long maximumChunkAge;
+  private volatile ProgressRetentionPolicy retentionPolicy;
+  private ScheduledExecutorService outputFileDispatcher;
+  private volatile long maximumIdleTime;
+  private volatile long maximumRetainedSize;
+  private volatile int maximumNumberOfExecutions;
+  private ScheduledExecutorService sweeper;
+  private AtomicLong numberOfExpirations;
+  private AtomicLong numberOfEvictions;
+  private AtomicLong evictedSize;
 
 
   /**
    * Constructor
    */
   public SystemExecuterProgressStorageImpl() {
-    systemExecuterProgressStorageMap = new ConcurrentHashMap<SystemExecuterProgressKey, ConcurrentLinkedQueue<SystemExecuterProgressData>>();
+    this(0);
+  }
+
+
+  /**
+   * Constructor
+   *
+   * @param maximumBufferSize the maximum buffer size per execution in bytes or less or equals 0 for an unbounded buffer
+   */
+  public SystemExecuterProgressStorageImpl(long maximumBufferSize) {
+    systemExecuterProgressStorageMap = new ConcurrentHashMap<SystemExecuterProgressKey, SystemExecuterProgressEntry>();
+    this.maximumBufferSize = maximumBufferSize;
+    this.maximumMemorySize = 0;
+    this.memorySize = new AtomicLong();
+    this.maximumChunkSize = DEFAULT_MAXIMUM_CHUNK_SIZE;
+    this.maximumChunkAge = DEFAULT_MAXIMUM_CHUNK_AGE;
+    this.retentionPolicy = ProgressRetentionPolicy.CONSUME;
+    this.maximumIdleTime = 0;
+    this.maximumRetainedSize = 0;
+    this.maximumNumberOfExecutions = 0;
+    this.numberOfExpirations = new AtomicLong();
+    this.numberOfEvictions = new AtomicLong();
+    this.evictedSize = new AtomicLong();
+  }
+
+
+  /**
+   * Get the maximum buffer size per execution
+   *
+   * @return the maximum buffer size in bytes or less or equals 0 for an unbounded buffer
+   */
+  public long getMaximumBufferSize() {
+    return maximumBufferSize;
+  }
+
+
+  /**
+   * Set the maximum buffer size per execution
+   *
+   * @param maximumBufferSize the maximum buffer size in bytes or less or equals 0 for an unbounded buffer
+   */
+  public void setMaximumBufferSize(long maximumBufferSize) {
+    this.maximumBufferSize = maximumBufferSize;
+  }
+
+
+  /**
+   * Get the maximum size of a merged chunk
+   *
+   * @return the maximum chunk size or less or equals 0 if the chunks are not merged
+   */
+  public int getMaximumChunkSize() {
+    return maximumChunkSize;
+  }
+
+
+  /**
+   * Set the maximum size of a merged chunk, it applies to the executions which are started afterwards
+   *
+   * @param maximumChunkSize the maximum chunk size or less or equals 0 to not merge the chunks
+   */
+  public void setMaximumChunkSize(int maximumChunkSize) {
+    this.maximumChunkSize = maximumChunkSize;
+  }
+
+
+  /**
+   * Get the maximum time data is merged into a chunk
+   *
+   * @return the maximum chunk age in milliseconds
+   */
+  public long getMaximumChunkAge() {
+    return maximumChunkAge;
+  }
+
+
+  /**
+   * Set the maximum time data is merged into a chunk, it applies to the executions which are started afterwards
+   *
+   * @param maximumChunkAge the maximum chunk age in milliseconds
+   */
+  public void setMaximumChunkAge(long maximumChunkAge) {
+    this.maximumChunkAge = maximumChunkAge;
+  }
+
+
+  /**
+   * Get the retention policy
+   *
+   * @return the retention policy
+   */
+  public ProgressRetentionPolicy getRetentionPolicy() {
+    return retentionPolicy;
+  }
+
+
+  /**
+   * Set the retention policy, it applies to the executions which are started afterwards
+   *
+   * @param retentionPolicy the retention policy
+   */
+  public void setRetentionPolicy(ProgressRetentionPolicy retentionPolicy) {
+    this.retentionPolicy = retentionPolicy;
+  }
+
+
+  /**
+   * Get the maximum time an ended execution is kept without being read
+   *
+   * @return the maximum idle time in milliseconds or less or equals 0 if it is kept until its end has been read
+   */
+  public long getMaximumIdleTime() {
+    return maximumIdleTime;
+  }
+
+
+  /**
+   * Set the maximum time an ended execution is kept without being read. A running execution whose writer is blocked by
+   * a full buffer is removed after the same time without any read.
+   *
+   * @param maximumIdleTime the maximum idle time in milliseconds or less or equals 0 if it is kept until its end has been
+   *          read
+   */
+  public void setMaximumIdleTime(long maximumIdleTime) {
+    this.maximumIdleTime = maximumIdleTime;
+    if (maximumIdleTime > 0) {
+      startSweeper();
+    }
+  }
+
+
+  /**
+   * Get the maximum size of the retained progress per execution
+   *
+   * @return the maximum retained size in bytes or less or equals 0 for an unbounded size
+   */
+  public long getMaximumRetainedSize() {
+    return maximumRetainedSize;
+  }
+
+
+  /**
+   * Set the maximum size of the retained progress per execution, the oldest chunks are removed if it is exceeded
+   *
+   * @param maximumRetainedSize the maximum retained size in bytes or less or equals 0 for an unbounded size
+   */
+  public void setMaximumRetainedSize(long maximumRetainedSize) {
+    this.maximumRetainedSize = maximumRetainedSize;
+    if (maximumRetainedSize > 0) {
+      startSweeper();
+    }
+  }
+
+
+  /**
+   * Get the maximum number of executions
+   *
+   * @return the maximum number of executions or less or equals 0 for an unbounded number
+   */
+  public int getMaximumNumberOfExecutions() {
+    return maximumNumberOfExecutions;
+  }
+
+
+  /**
+   * Set the maximum number of executions, the least recently used ended executions are removed if it is exceeded
+   *
+   * @param maximumNumberOfExecutions the maximum number of executions or less or equals 0 for an unbounded number
+   */
+  public void setMaximumNumberOfExecutions(int maximumNumberOfExecutions) {
+    this.maximumNumberOfExecutions = maximumNumberOfExecutions;
+    if (maximumNumberOfExecutions > 0) {
+      startSweeper();
+    }
+  }
+
+
+  /**
+   * Get the number of ended executions which were removed since they exceeded the maximum idle time
+   *
+   * @return the number of expirations
+   */
+  public long getNumberOfExpirations() {
+    return numberOfExpirations.get();
+  }
+
+
+  /**
+   * Get the number of ended executions which were removed since they were least recently used
+   *
+   * @return the number of evictions
+   */
+  public long getNumberOfEvictions() {
+    return numberOfEvictions.get();
+  }
+
+
+  /**
+   * Get the size of the progress which was released by the sweeper
+   *
+   * @return the evicted size in bytes
+   */
+  public long getEvictedSize() {
+    return evictedSize.get();
+  }
+
+
+  /**
+   * Get the number of executions
+   *
+   * @return the number of executions
+   */
+  public int getNumberOfExecutions() {
+    return systemExecuterProgressStorageMap.size();
+  }
+
+
+  /**
+   * Get the maximum size of the output in memory of all executions
+   *
+   * @return the maximum memory size in bytes or less or equals 0 if the output is never spilled
+   */
+  public long getMaximumMemorySize() {
+    return maximumMemorySize;
+  }
+
+
+  /**
+   * Set the maximum size of the output in memory of all executions. If it is exceeded, the output is spilled to disk.
+   *
+   * @param maximumMemorySize the maximum memory size in bytes or less or equals 0 if the output is never spilled
+   */
+  public void setMaximumMemorySize(long maximumMemorySize) {
+    this.maximumMemorySize = maximumMemorySize;
+  }
+
+
+  /**
+   * Get the size of the output in memory of all executions
+   *
+   * @return the memory size in bytes
+   */
+  public long getMemorySize() {
+    return memorySize.get();
+  }
+
+
+  /**
+   * Get the size of the buffered output of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the buffered size in bytes
+   */
+  public long getBufferedSize(SystemExecuterProgressKey systemExecuterProgressKey) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      return entry.getBufferedSize();
+    }
+
+    return 0;
   }
 
 
@@ -40,7 +368,15 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
   public void startProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
     log.debug("Start processing " + systemExecuterProgressKey.getUniqueKey());
 
-    systemExecuterProgressStorageMap.put(systemExecuterProgressKey, new ConcurrentLinkedQueue<SystemExecuterProgressData>());
+    SystemExecuterProgressEntry entry = createEntry();
+    if (retentionPolicy == ProgressRetentionPolicy.RETAIN) {
+      entry.setHistory(new ProgressHistory());
+    }
+
+    SystemExecuterProgressEntry previousEntry = systemExecuterProgressStorageMap.put(systemExecuterProgressKey, entry);
+    if (previousEntry != null) {
+      previousEntry.close();
+    }
   }
 
 
@@ -49,7 +385,8 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
    */
   @Override
   public boolean exitProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
-    return systemExecuterProgressStorageMap.containsKey(systemExecuterProgressKey);
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    return entry != null && !entry.isConsumed();
   }
 
 
@@ -60,9 +397,80 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
   public void endProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
     log.debug("End processing " + systemExecuterProgressKey.getUniqueKey());
 
-    ConcurrentLinkedQueue<SystemExecuterProgressData> queue = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
-    if (queue != null) {
-      queue.add(new SystemExecuterProgressData());
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      entry.addEnd();
+      if (entry.hasSubscriptions()) {
+        dispatch(systemExecuterProgressKey, entry);
+      }
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#setQueueWaitTime(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, long)
+   */
+  @Override
+  public void setQueueWaitTime(SystemExecuterProgressKey systemExecuterProgressKey, long queueWaitTime) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      log.debug("Execution " + systemExecuterProgressKey.getUniqueKey() + " waited " + queueWaitTime + "ms in queue.");
+      entry.setQueueWaitTime(queueWaitTime);
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#getQueueWaitTime(net.proserium.common.system.impl.storage.SystemExecuterProgressKey)
+   */
+  @Override
+  public long getQueueWaitTime(SystemExecuterProgressKey systemExecuterProgressKey) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      return entry.getQueueWaitTime();
+    }
+
+    return -1;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#setProcessStatistics(net.proserium.common.system.impl.storage.SystemExecuterProgressKey,
+   *      net.proserium.common.system.ProcessStatistics)
+   */
+  @Override
+  public void setProcessStatistics(SystemExecuterProgressKey systemExecuterProgressKey, ProcessStatistics processStatistics) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      entry.setProcessStatistics(processStatistics);
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#getProcessStatistics(net.proserium.common.system.impl.storage.SystemExecuterProgressKey)
+   */
+  @Override
+  public ProcessStatistics getProcessStatistics(SystemExecuterProgressKey systemExecuterProgressKey) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      return entry.getProcessStatistics();
+    }
+
+    return null;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#attachOutputFile(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, java.io.File,
+   *      java.nio.charset.Charset, boolean)
+   */
+  @Override
+  public void attachOutputFile(SystemExecuterProgressKey systemExecuterProgressKey, File outputFile, Charset charset, boolean lineFraming) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
+      log.debug("Attach output file " + outputFile + " to " + systemExecuterProgressKey.getUniqueKey());
+      entry.setOutputFileTailReader(new OutputFileTailReader(outputFile, new ProcessOutputDecoder(charset, lineFraming)));
     }
   }
 
@@ -72,13 +480,35 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
    */
   @Override
   public SystemExecuterProgressData readServerProgress(SystemExecuterProgressKey systemExecuterProgressKey) {
-    ConcurrentLinkedQueue<SystemExecuterProgressData> queue = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+
+    if (entry != null) {
+      OutputFileTailReader outputFileTailReader = entry.getOutputFileTailReader();
+      if (outputFileTailReader != null) {
+        SystemExecuterProgressData output = readOutputFile(entry, outputFileTailReader);
+        if (output != null) {
+          return output;
+        }
+      }
 
-    if (queue != null) {
-      SystemExecuterProgressData result = queue.poll();
+      SystemExecuterProgressData result = entry.poll();
       if (result != null && result.hasEnded()) {
         log.debug("Read last progress information " + systemExecuterProgressKey.getUniqueKey() + ", close up.");
-        systemExecuterProgressStorageMap.remove(systemExecuterProgressKey);
+        if (entry.getHistory() == null) {
+          systemExecuterProgressStorageMap.remove(systemExecuterProgressKey);
+        } else {
+          // the progress is retained for the reads at an offset
+          entry.setConsumed(true);
+        }
+
+        entry.close();
+        if (outputFileTailReader != null) {
+          outputFileTailReader.close();
+        }
+
+        if (entry.hasSubscriptions()) {
+          dispatch(systemExecuterProgressKey, entry);
+        }
       }
 
       return result;
@@ -88,15 +518,216 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
   }
 
 
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#readServerProgress(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, int, long)
+   */
+  @Override
+  public List<SystemExecuterProgressData> readServerProgress(SystemExecuterProgressKey systemExecuterProgressKey, int maximumNumberOfItems, long timeout) {
+    List<SystemExecuterProgressData> result = new ArrayList<SystemExecuterProgressData>();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    while (true) {
+      SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+      if (entry == null) {
+        return result;
+      }
+
+      SystemExecuterProgressData data;
+      while ((maximumNumberOfItems <= 0 || result.size() < maximumNumberOfItems) && (data = readServerProgress(systemExecuterProgressKey)) != null) {
+        result.add(data);
+        if (data.hasEnded()) {
+          return result;
+        }
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if (!result.isEmpty() || remaining <= 0) {
+        return result;
+      }
+
+      // the output file is written by the process, it is checked periodically
+      if (entry.getOutputFileTailReader() != null) {
+        remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(OUTPUT_FILE_CHECK_INTERVAL));
+      }
+
+      try {
+        entry.awaitData(remaining);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return result;
+      }
+    }
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#read(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, long, int)
+   */
+  @Override
+  public SystemExecuterProgressRange read(SystemExecuterProgressKey systemExecuterProgressKey, long fromOffset, int maximumSize) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry == null) {
+      return null;
+    }
+
+    return entry.read(fromOffset, maximumSize);
+  }
+
+
+  /**
+   * Remove an execution, its retained progress is released
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return true if the execution has been removed
+   */
+  public boolean removeProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    return entry != null && removeEntry(systemExecuterProgressKey, entry);
+  }
+
+
+  /**
+   * Remove the executions which exceed the limits, the sweeper calls it periodically
+   */
+  public void sweep() {
+    long now = System.currentTimeMillis();
+    long idleTime = maximumIdleTime;
+    long retainedSize = maximumRetainedSize;
+    List<SystemExecuterProgressKey> endedList = new ArrayList<SystemExecuterProgressKey>();
+    final Map<SystemExecuterProgressKey, Long> accessTimeMap = new HashMap<SystemExecuterProgressKey, Long>();
+    for (Map.Entry<SystemExecuterProgressKey, SystemExecuterProgressEntry> e : systemExecuterProgressStorageMap.entrySet()) {
+      SystemExecuterProgressEntry entry = e.getValue();
+      if (retainedSize > 0) {
+        evictedSize.addAndGet(entry.trimHistory(retainedSize));
+      }
+
+      long accessTime = entry.getLastAccessTime();
+      if (!entry.isEnded()) {
+        // nobody releases the writer, it would hold its execution slot until the process ends
+        if (idleTime > 0 && entry.isWriterBlocked() && now - accessTime > idleTime && evict(e.getKey(), entry)) {
+          log.debug("Expired blocked " + e.getKey().getUniqueKey() + " after " + (now - accessTime) + " ms.");
+          numberOfExpirations.incrementAndGet();
+        }
+
+        continue;
+      }
+
+      if (idleTime > 0 && now - accessTime > idleTime) {
+        if (evict(e.getKey(), entry)) {
+          log.debug("Expired " + e.getKey().getUniqueKey() + " after " + (now - accessTime) + " ms.");
+          numberOfExpirations.incrementAndGet();
+        }
+
+        continue;
+      }
+
+      endedList.add(e.getKey());
+      accessTimeMap.put(e.getKey(), accessTime);
+    }
+
+    int maximumNumber = maximumNumberOfExecutions;
+    if (maximumNumber <= 0 || systemExecuterProgressStorageMap.size() <= maximumNumber) {
+      return;
+    }
+
+    // the access times are taken once, so the order does not change while sorting
+    Collections.sort(endedList, new Comparator<SystemExecuterProgressKey>() {
+      @Override
+      public int compare(SystemExecuterProgressKey key1, SystemExecuterProgressKey key2) {
+        return Long.compare(accessTimeMap.get(key1), accessTimeMap.get(key2));
+      }
+    });
+
+    for (SystemExecuterProgressKey key : endedList) {
+      if (systemExecuterProgressStorageMap.size() <= maximumNumber) {
+        break;
+      }
+
+      SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(key);
+      if (entry != null && entry.isEnded() && evict(key, entry)) {
+        log.debug("Evicted least recently used " + key.getUniqueKey() + ".");
+        numberOfEvictions.incrementAndGet();
+      }
+    }
+  }
+
+
+  /**
+   * Remove an execution if it is still registered by its entry
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param entry the entry
+   * @return true if the execution has been removed
+   */
+  protected boolean removeEntry(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressEntry entry) {
+    if (!systemExecuterProgressStorageMap.remove(systemExecuterProgressKey, entry)) {
+      return false;
+    }
+
+    log.debug("Remove " + systemExecuterProgressKey.getUniqueKey());
+    entry.close();
+    OutputFileTailReader outputFileTailReader = entry.getOutputFileTailReader();
+    if (outputFileTailReader != null) {
+      outputFileTailReader.close();
+    }
+
+    if (entry.hasSubscriptions()) {
+      dispatch(systemExecuterProgressKey, entry);
+    }
+
+    return true;
+  }
+
+
+  /**
+   * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#subscribe(net.proserium.common.system.impl.storage.SystemExecuterProgressKey,
+   *      net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscriber)
+   */
+  @Override
+  public void subscribe(final SystemExecuterProgressKey systemExecuterProgressKey, ISystemExecuterProgressSubscriber subscriber) {
+    ProgressSubscription subscription = new ProgressSubscription(subscriber, new Runnable() {
+      @Override
+      public void run() {
+        SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+        if (entry != null) {
+          dispatch(systemExecuterProgressKey, entry);
+        }
+      }
+    });
+
+    subscriber.onSubscribe(subscription);
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry == null || entry.isConsumed()) {
+      subscription.fail(new IllegalArgumentException("Unknown execution " + systemExecuterProgressKey.getUniqueKey() + "!"));
+      return;
+    }
+
+    log.debug("Subscribe " + systemExecuterProgressKey.getUniqueKey());
+    entry.addSubscription(subscription);
+    if (entry.getOutputFileTailReader() != null) {
+      startOutputFileDispatcher();
+    }
+
+    dispatch(systemExecuterProgressKey, entry);
+  }
+
+
   /**
    * @see net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage#addInput(net.proserium.common.system.impl.storage.SystemExecuterProgressKey, java.lang.String)
    */
   @Override
   public void addInput(SystemExecuterProgressKey systemExecuterProgressKey, String data) {
-    ConcurrentLinkedQueue<SystemExecuterProgressData> queue = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
-    if (queue != null) {
+    if (data == null || data.isEmpty()) {
+      return;
+    }
+
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (entry != null) {
       log.debug("Add " + systemExecuterProgressKey.getUniqueKey() + ": " + data);
-      queue.add(new SystemExecuterProgressData(data, false));
+      entry.add(data, false, maximumBufferSize);
+      checkMemorySize();
+      if (entry.hasSubscriptions()) {
+        dispatch(systemExecuterProgressKey, entry);
+      }
     }
   }
 
@@ -106,11 +737,255 @@ public class SystemExecuterProgressStorageImpl implements ISystemExecuterProgres
    */
   @Override
   public void addError(SystemExecuterProgressKey systemExecuterProgressKey, String data) {
-    ConcurrentLinkedQueue<SystemExecuterProgressData> queue = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+    if (data == null || data.isEmpty()) {
+      return;
+    }
 
-    if (queue != null) {
+    SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(systemExecuterProgressKey);
+
+    if (entry != null) {
       log.debug("Add error " + systemExecuterProgressKey.getUniqueKey() + ": " + data);
-      queue.add(new SystemExecuterProgressData(data, true));
+      entry.add(data, true, maximumBufferSize);
+      checkMemorySize();
+      if (entry.hasSubscriptions()) {
+        dispatch(systemExecuterProgressKey, entry);
+      }
     }
   }
+
+
+  /**
+   * Deliver the available progress of an execution to its subscriptions. The deliveries of an execution are serialized:
+   * a thread which finds another one delivering leaves a signal, so the delivering thread checks again.
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param entry the entry
+   */
+  protected void dispatch(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressEntry entry) {
+    AtomicInteger dispatchCounter = entry.getDispatchCounter();
+    if (dispatchCounter.getAndIncrement() != 0) {
+      return;
+    }
+
+    int missed = 1;
+    do {
+      dispatchAvailableData(systemExecuterProgressKey, entry);
+      missed = dispatchCounter.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+
+  /**
+   * Deliver the available progress of an execution as far as all subscriptions have demand
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param entry the entry
+   */
+  private void dispatchAvailableData(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressEntry entry) {
+    while (true) {
+      List<ProgressSubscription> subscriptionList = entry.getSubscriptionList();
+      if (subscriptionList.isEmpty()) {
+        return;
+      }
+
+      if (systemExecuterProgressStorageMap.get(systemExecuterProgressKey) != entry || entry.isConsumed()) {
+        // the end has been read by another reader
+        for (ProgressSubscription subscription : subscriptionList) {
+          subscription.complete();
+        }
+
+        return;
+      }
+
+      long demand = Long.MAX_VALUE;
+      for (ProgressSubscription subscription : subscriptionList) {
+        demand = Math.min(demand, subscription.getDemand());
+      }
+
+      // the end is delivered without demand
+      SystemExecuterProgressData head = entry.peek();
+      boolean ended = entry.getOutputFileTailReader() == null && head != null && head.hasEnded();
+      if (demand <= 0 && !ended) {
+        return;
+      }
+
+      SystemExecuterProgressData data = readServerProgress(systemExecuterProgressKey);
+      if (data == null) {
+        return;
+      }
+
+      for (ProgressSubscription subscription : subscriptionList) {
+        subscription.deliver(data);
+      }
+    }
+  }
+
+
+  /**
+   * Remove an execution by the sweeper and count its released progress
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @param entry the entry
+   * @return true if the execution has been removed
+   */
+  private boolean evict(SystemExecuterProgressKey systemExecuterProgressKey, SystemExecuterProgressEntry entry) {
+    // the buffered progress of a retained execution is part of its history
+    long size = entry.getBufferedSize();
+    ProgressHistory history = entry.getHistory();
+    if (history != null) {
+      size = history.getSize();
+    }
+
+    if (!removeEntry(systemExecuterProgressKey, entry)) {
+      return false;
+    }
+
+    evictedSize.addAndGet(size);
+    return true;
+  }
+
+
+  /**
+   * Start the periodic sweep of the executions
+   */
+  private synchronized void startSweeper() {
+    if (sweeper != null) {
+      return;
+    }
+
+    sweeper = Executors.newSingleThreadScheduledExecutor(ThreadUtil.getInstance().createDaemonThreadFactory(SystemExecuterProgressStorageImpl.class.getName() + ": sweeper"));
+    sweeper.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          sweep();
+        } catch (RuntimeException e) {
+          log.warn("Could not sweep the executions: " + e.getMessage(), e);
+        }
+      }
+    }, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+
+  /**
+   * Start the periodic delivery of the output files, which are written by the processes and not added to the storage
+   */
+  private synchronized void startOutputFileDispatcher() {
+    if (outputFileDispatcher != null) {
+      return;
+    }
+
+    outputFileDispatcher = Executors.newSingleThreadScheduledExecutor(ThreadUtil.getInstance().createDaemonThreadFactory(SystemExecuterProgressStorageImpl.class.getName() + ": output file dispatcher"));
+    outputFileDispatcher.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        for (Map.Entry<SystemExecuterProgressKey, SystemExecuterProgressEntry> e : systemExecuterProgressStorageMap.entrySet()) {
+          if (e.getValue().hasSubscriptions() && e.getValue().getOutputFileTailReader() != null) {
+            try {
+              dispatch(e.getKey(), e.getValue());
+            } catch (RuntimeException ex) {
+              log.warn("Could not deliver output of " + e.getKey().getUniqueKey() + ": " + ex.getMessage(), ex);
+            }
+          }
+        }
+      }
+    }, OUTPUT_FILE_CHECK_INTERVAL, OUTPUT_FILE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+
+  /**
+   * Spill the output of the executions to disk if the maximum memory size is exceeded. The executions which hold the
+   * most memory are spilled first, until the memory size is below the maximum.
+   */
+  private void checkMemorySize() {
+    long maximum = maximumMemorySize;
+    if (maximum <= 0 || memorySize.get() <= maximum) {
+      return;
+    }
+
+    // the memory sizes are taken once, so the order does not change while sorting
+    final Map<SystemExecuterProgressKey, Long> memorySizeMap = new HashMap<SystemExecuterProgressKey, Long>();
+    for (Map.Entry<SystemExecuterProgressKey, SystemExecuterProgressEntry> e : systemExecuterProgressStorageMap.entrySet()) {
+      long size = e.getValue().getMemorySize();
+      if (size > 0) {
+        memorySizeMap.put(e.getKey(), size);
+      }
+    }
+
+    List<SystemExecuterProgressKey> keyList = new ArrayList<SystemExecuterProgressKey>(memorySizeMap.keySet());
+    Collections.sort(keyList, new Comparator<SystemExecuterProgressKey>() {
+      @Override
+      public int compare(SystemExecuterProgressKey key1, SystemExecuterProgressKey key2) {
+        return Long.compare(memorySizeMap.get(key2), memorySizeMap.get(key1));
+      }
+    });
+
+    for (SystemExecuterProgressKey key : keyList) {
+      if (memorySize.get() <= maximum) {
+        break;
+      }
+
+      SystemExecuterProgressEntry entry = systemExecuterProgressStorageMap.get(key);
+      if (entry != null) {
+        long size = entry.spill(getSpillPath(key));
+        log.debug("Spilled " + size + " bytes of " + key.getUniqueKey() + ", " + memorySize.get() + " bytes in memory.");
+      }
+    }
+  }
+
+
+  /**
+   * Create the entry of an execution
+   *
+   * @return the entry
+   */
+  protected SystemExecuterProgressEntry createEntry() {
+    return new SystemExecuterProgressEntry(memorySize, maximumChunkSize, maximumChunkAge);
+  }
+
+
+  /**
+   * Get the path of the spilled output of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the path
+   */
+  protected File getSpillPath(SystemExecuterProgressKey systemExecuterProgressKey) {
+    File tempPath = new File(SystemEnvironmentFactory.getInstance().getSystemEnvironment().getSystemPath().getTempPath());
+    return new File(tempPath, "progress-" + getFileName(systemExecuterProgressKey));
+  }
+
+
+  /**
+   * Get the file name of an execution
+   *
+   * @param systemExecuterProgressKey the system executer progress key
+   * @return the file name
+   */
+  protected static String getFileName(SystemExecuterProgressKey systemExecuterProgressKey) {
+    return systemExecuterProgressKey.getUniqueKey().replaceAll("[^a-zA-Z0-9._-]", "_");
+  }
+
+
+  /**
+   * Read the new output of the output file. The end of the queue is checked before the file is read, so the end is not
+   * read before the complete file.
+   *
+   * @param entry the entry
+   * @param outputFileTailReader the output file tail reader
+   * @return the progress data or null if there is no new output
+   */
+  private SystemExecuterProgressData readOutputFile(SystemExecuterProgressEntry entry, OutputFileTailReader outputFileTailReader) {
+    SystemExecuterProgressData head = entry.peek();
+    String data = outputFileTailReader.read();
+    if (data.isEmpty() && head != null && head.hasEnded()) {
+      data = outputFileTailReader.flush();
+    }
+
+    if (data.isEmpty()) {
+      return null;
+    }
+
+    return new SystemExecuterProgressData(data, false);
+  }
 }
@@ -0,0 +1,338 @@
+/*
+ * ProcessUtil.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.util;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import jptools.logger.Logger;
+
+
+/**
+ * Process utility class. The process handle API is available since java 9, it is accessed by reflection to keep the
+ * java 8 baseline. On a java 8 runtime only the direct process can be handled.
+ *
+ * @author Patrick Meier
+ */
+public final class ProcessUtil {
+  private static final Logger log = Logger.getLogger(ProcessUtil.class);
+  private Method toHandleMethod;
+  private Method pidMethod;
+  private Method descendantsMethod;
+  private Method isAliveMethod;
+  private Method destroyMethod;
+  private Method destroyForciblyMethod;
+  private Method onExitMethod;
+  private Method startPipelineMethod;
+  private ExecutorService exitWaiterService;
+
+  /**
+   * Private class, the only instance of the singelton which will be created by accessing the holder class.
+   *
+   * @author pmeier
+   */
+  private static class HOLDER {
+    static final ProcessUtil INSTANCE = new ProcessUtil();
+  }
+
+
+  /**
+   * Constructor
+   */
+  private ProcessUtil() {
+    try {
+      Class<?> processHandleClass = Class.forName("java.lang.ProcessHandle");
+      toHandleMethod = Process.class.getMethod("toHandle");
+      pidMethod = processHandleClass.getMethod("pid");
+      descendantsMethod = processHandleClass.getMethod("descendants");
+      isAliveMethod = processHandleClass.getMethod("isAlive");
+      destroyMethod = processHandleClass.getMethod("destroy");
+      destroyForciblyMethod = processHandleClass.getMethod("destroyForcibly");
+      onExitMethod = Process.class.getMethod("onExit");
+    } catch (Exception e) {
+      log.debug("Process handle is not supported: " + e.getMessage());
+      toHandleMethod = null;
+    }
+
+    try {
+      startPipelineMethod = ProcessBuilder.class.getMethod("startPipeline", List.class);
+    } catch (Exception e) {
+      log.debug("Process pipeline is not supported: " + e.getMessage());
+      startPipelineMethod = null;
+    }
+  }
+
+
+  /**
+   * Get the instance
+   *
+   * @return the instance
+   */
+  public static ProcessUtil getInstance() {
+    return HOLDER.INSTANCE;
+  }
+
+
+  /**
+   * Check if the process handle API is supported by the runtime
+   *
+   * @return true if it is supported
+   */
+  public boolean isProcessHandleSupported() {
+    return toHandleMethod != null;
+  }
+
+
+  /**
+   * Get the native process id
+   *
+   * @param process the process
+   * @return the process id or -1 if it is not supported
+   */
+  public long getPid(Process process) {
+    if (!isProcessHandleSupported() || process == null) {
+      return -1;
+    }
+
+    try {
+      return (Long) pidMethod.invoke(toHandleMethod.invoke(process));
+    } catch (Exception e) {
+      log.debug("Could not get process id: " + e.getMessage());
+      return -1;
+    }
+  }
+
+
+  /**
+   * Get the process ids of all descendants of a process, e.g. the processes spawned by a shell.
+   *
+   * @param process the process
+   * @return the process ids of the descendants, an empty list if it is not supported
+   */
+  public List<Long> getDescendantPids(Process process) {
+    List<Long> result = new ArrayList<Long>();
+    for (Object processHandle : getDescendants(process)) {
+      try {
+        result.add((Long) pidMethod.invoke(processHandle));
+      } catch (Exception e) {
+        log.debug("Could not get process id: " + e.getMessage());
+      }
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Get the process handles of all descendants of a process. A process handle identifies the process by its id and its
+   * start time, so it can not be confused with a later process which reuses the process id.
+   *
+   * @param process the process
+   * @return the process handles of the descendants, an empty list if it is not supported
+   */
+  public List<Object> getDescendants(Process process) {
+    List<Object> result = new ArrayList<Object>();
+    if (!isProcessHandleSupported() || process == null) {
+      return result;
+    }
+
+    try {
+      Stream<?> stream = (Stream<?>) descendantsMethod.invoke(toHandleMethod.invoke(process));
+      for (Iterator<?> it = stream.iterator(); it.hasNext();) {
+        result.add(it.next());
+      }
+    } catch (Exception e) {
+      log.debug("Could not get descendants of process: " + e.getMessage());
+    }
+
+    return result;
+  }
+
+
+  /**
+   * Check if a process is alive
+   *
+   * @param processHandle the process handle
+   * @return true if it is alive
+   */
+  public boolean isProcessAlive(Object processHandle) {
+    if (!isProcessHandleSupported() || processHandle == null) {
+      return false;
+    }
+
+    try {
+      return (Boolean) isAliveMethod.invoke(processHandle);
+    } catch (Exception e) {
+      return false;
+    }
+  }
+
+
+  /**
+   * Destroy a process. A normal termination corresponds to SIGTERM, a forcibly termination to SIGKILL. A process which
+   * has ended is not signaled, even if its process id has been reused.
+   *
+   * @param processHandle the process handle
+   * @param forcibly true to kill the process
+   * @return true if the termination was requested successfully
+   */
+  public boolean destroyProcess(Object processHandle, boolean forcibly) {
+    if (!isProcessHandleSupported() || processHandle == null) {
+      return false;
+    }
+
+    try {
+      if (forcibly) {
+        return (Boolean) destroyForciblyMethod.invoke(processHandle);
+      }
+
+      return (Boolean) destroyMethod.invoke(processHandle);
+    } catch (Exception e) {
+      log.debug("Could not destroy process " + processHandle + ": " + e.getMessage());
+      return false;
+    }
+  }
+
+
+  /**
+   * Destroy a process including all its descendants. A normal termination corresponds to SIGTERM, a forcibly termination
+   * to SIGKILL.
+   *
+   * @param process the process
+   * @param knownDescendantList process handles which have been descendants before, e.g. since they were reparented, or
+   *        null
+   * @param forcibly true to kill the processes
+   * @return the process handles of all descendants which have been destroyed
+   */
+  public List<Object> destroyProcessTree(Process process, List<Object> knownDescendantList, boolean forcibly) {
+    List<Object> descendantList = new ArrayList<Object>();
+    if (knownDescendantList != null) {
+      descendantList.addAll(knownDescendantList);
+    }
+
+    for (Object processHandle : getDescendants(process)) {
+      if (!descendantList.contains(processHandle)) {
+        descendantList.add(processHandle);
+      }
+    }
+
+    // the parent first, that a shell can not spawn new children anymore
+    if (forcibly) {
+      process.destroyForcibly();
+    } else {
+      process.destroy();
+    }
+
+    for (Object processHandle : descendantList) {
+      destroyProcess(processHandle, forcibly);
+    }
+
+    return descendantList;
+  }
+
+
+  /**
+   * Get a future which is completed when the process has ended. The runtime is notified by the operating system, on a java 8
+   * runtime a daemon thread waits for the process.
+   *
+   * @param process the process
+   * @return the future, it is completed exceptionally if the process is null or could not be waited for
+   */
+  @SuppressWarnings("unchecked")
+  public CompletableFuture<Process> onExit(final Process process) {
+    final CompletableFuture<Process> result = new CompletableFuture<Process>();
+    if (process == null) {
+      result.completeExceptionally(new IllegalArgumentException("The process must not be null!"));
+      return result;
+    }
+
+    if (isProcessHandleSupported()) {
+      try {
+        return (CompletableFuture<Process>) onExitMethod.invoke(process);
+      } catch (Exception e) {
+        log.debug("Could not get exit future of process: " + e.getMessage());
+      }
+    }
+
+    getExitWaiterService().execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          process.waitFor();
+          result.complete(process);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          result.completeExceptionally(e);
+        } catch (Throwable t) {
+          // the waiting caller must not block forever
+          result.completeExceptionally(t);
+        }
+      }
+    });
+
+    return result;
+  }
+
+
+  /**
+   * Check if the runtime connects the processes of a pipeline, which is supported since java 9
+   *
+   * @return true if it is supported
+   */
+  public boolean isPipelineSupported() {
+    return startPipelineMethod != null;
+  }
+
+
+  /**
+   * Start the processes of a pipeline. The standard output of each process is connected by an operating system pipe to
+   * the standard input of the next process, the data does not pass the java process.
+   *
+   * @param processBuilderList the process builders of the stages
+   * @return the processes or null if the pipeline is not supported by the runtime
+   * @throws IOException in case a process could not be started
+   */
+  @SuppressWarnings("unchecked")
+  public List<Process> startPipeline(List<ProcessBuilder> processBuilderList) throws IOException {
+    if (!isPipelineSupported()) {
+      return null;
+    }
+
+    try {
+      return (List<Process>) startPipelineMethod.invoke(null, processBuilderList);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+
+      throw new IOException("Could not start pipeline: " + e.getCause().getMessage(), e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IOException("Could not start pipeline: " + e.getMessage(), e);
+    }
+  }
+
+
+  /**
+   * Get the executor of the threads which wait for processes on a java 8 runtime
+   *
+   * @return the executor service
+   */
+  private synchronized ExecutorService getExitWaiterService() {
+    if (exitWaiterService == null) {
+      exitWaiterService = Executors.newCachedThreadPool(ThreadUtil.getInstance().createDaemonThreadFactory(ProcessUtil.class.getName() + ": exit waiter"));
+    }
+
+    return exitWaiterService;
+  }
+}
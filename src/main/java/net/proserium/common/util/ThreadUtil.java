@@ -6,12 +6,24 @@
  */
 package net.proserium.common.util;
 
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import jptools.logger.Logger;
+
 /**
  * Thread util class
  *
  * @author Patrick Meier
  */
 public final class ThreadUtil {
+  private static final Logger log = Logger.getLogger(ThreadUtil.class);
+  private Method ofVirtualMethod;
+  private Method builderNameMethod;
+  private Method builderFactoryMethod;
+  private Method newThreadPerTaskExecutorMethod;
 
   /**
    * Private class, the only instance of the singelton which will be created by accessing the holder class.
@@ -27,7 +39,16 @@ public final class ThreadUtil {
    * Constructor
    */
   private ThreadUtil() {
-    // NOP
+    // virtual threads are available since java 21, they are accessed by reflection to keep the java 8 baseline
+    try {
+      ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+      builderNameMethod = Class.forName("java.lang.Thread$Builder").getMethod("name", String.class, long.class);
+      builderFactoryMethod = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+      newThreadPerTaskExecutorMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+    } catch (Exception e) {
+      log.debug("Virtual threads are not supported: " + e.getMessage());
+      ofVirtualMethod = null;
+    }
   }
 
 
@@ -53,4 +74,55 @@ public final class ThreadUtil {
       Thread.currentThread().interrupt();
     }
   }
+
+
+  /**
+   * Create a thread factory for daemon threads
+   *
+   * @param name the name prefix of the threads
+   * @return the thread factory
+   */
+  public ThreadFactory createDaemonThreadFactory(final String name) {
+    final AtomicInteger threadNumber = new AtomicInteger(0);
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    };
+  }
+
+
+  /**
+   * Check if virtual threads are supported by the runtime
+   *
+   * @return true if they are supported
+   */
+  public boolean isVirtualThreadSupported() {
+    return ofVirtualMethod != null;
+  }
+
+
+  /**
+   * Create an executor which starts a new virtual thread for each task
+   *
+   * @param name the name prefix of the threads
+   * @return the executor or null if virtual threads are not supported
+   */
+  public ExecutorService createVirtualThreadPerTaskExecutor(String name) {
+    if (!isVirtualThreadSupported()) {
+      return null;
+    }
+
+    try {
+      Object builder = builderNameMethod.invoke(ofVirtualMethod.invoke(null), name + "-", 1L);
+      ThreadFactory threadFactory = (ThreadFactory) builderFactoryMethod.invoke(builder);
+      return (ExecutorService) newThreadPerTaskExecutorMethod.invoke(null, threadFactory);
+    } catch (Exception e) {
+      log.warn("Could not create virtual thread executor: " + e.getMessage(), e);
+      return null;
+    }
+  }
 }
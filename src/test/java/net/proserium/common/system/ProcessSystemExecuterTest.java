@@ -0,0 +1,443 @@
+/*
+ * ProcessSystemExecuterTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import net.proserium.common.system.impl.process.CachingProcessSystemExecuterImpl;
+import net.proserium.common.system.impl.process.ProcessStatisticsCollector;
+import net.proserium.common.system.impl.process.ShellWorker;
+import net.proserium.common.util.ProcessUtil;
+import net.proserium.common.util.StreamUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ProcessSystemExecuterTest {
+
+  /**
+   * Only run on unix like systems
+   */
+  @BeforeEach
+  public void checkOperatingSystem() {
+    Assumptions.assumeFalse(System.getProperty("os.name").toLowerCase().startsWith("windows"));
+  }
+
+
+  /**
+   * Test the output is drained while the process runs
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeAsyncWithLargeOutput() throws Exception {
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+    ProcessResult result = executer.executeAsync(null, "head -c 1000000 /dev/zero | tr '\\0' x; echo error >&2; exit 3").get();
+
+    Assertions.assertEquals(3, result.getExitValue());
+    Assertions.assertEquals(1000000, result.getOutput().length());
+    Assertions.assertEquals("error\n", result.getErrorOutput());
+    Assertions.assertTrue(result.getDuration() >= 0);
+  }
+
+
+  /**
+   * Test many commands in flight
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeAsyncConcurrently() throws Exception {
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+
+    List<CompletableFuture<ProcessResult>> futureList = new ArrayList<CompletableFuture<ProcessResult>>();
+    for (int i = 0; i < 50; i++) {
+      futureList.add(executer.executeAsync(null, "echo " + i));
+    }
+
+    for (int i = 0; i < futureList.size(); i++) {
+      Assertions.assertEquals(i + "\n", futureList.get(i).get().getOutput());
+    }
+  }
+
+
+  /**
+   * Test the process tree is terminated at the deadline
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeAsyncWithDeadline() throws Exception {
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+    ProcessResult result = executer.executeAsync(null, 1, "sleep 60 & sleep 60; echo done").get(30, TimeUnit.SECONDS);
+
+    Assertions.assertTrue(result.isTimedOut());
+    Assertions.assertEquals("", result.getOutput());
+    Assertions.assertTrue(result.getDuration() < 30000);
+  }
+
+
+  /**
+   * Test a child which keeps the output open does not delay the result of the ended process
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeAsyncWithBackgroundChild() throws Exception {
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+    ProcessResult result = executer.executeAsync(null, "sleep 10 & echo started").get(5, TimeUnit.SECONDS);
+
+    Assertions.assertEquals(0, result.getExitValue());
+    Assertions.assertEquals("started\n", result.getOutput());
+    Assertions.assertFalse(result.isTimedOut());
+  }
+
+
+  /**
+   * Test a callback may block on another command without stopping the monitor
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeBlockingCommandInCallback() throws Exception {
+    final IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+    CompletableFuture<String> future = executer.executeAsync(null, "echo a").thenApply(new Function<ProcessResult, String>() {
+      @Override
+      public String apply(ProcessResult result) {
+        Process process = executer.executeCommand(null, 10, "exit 5");
+        return result.getOutput() + process.exitValue();
+      }
+    });
+
+    Assertions.assertEquals("a\n5", future.get(30, TimeUnit.SECONDS));
+    Assertions.assertEquals("c\n", executer.executeAsync(null, "echo c").get(30, TimeUnit.SECONDS).getOutput());
+  }
+
+
+  /**
+   * Test the shell worker pool
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeWithShellWorkerPool() throws Exception {
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createShellWorkerPoolProcessSystemExecuter();
+
+    ProcessResult result = executer.executeAsync("/tmp", "pwd; echo error >&2; exit 7").get();
+    Assertions.assertEquals(7, result.getExitValue());
+    Assertions.assertEquals("/tmp\n", result.getOutput());
+    Assertions.assertEquals("error\n", result.getErrorOutput());
+
+    result = executer.executeAsync(null, "printf 'no new line'").get();
+    Assertions.assertEquals(0, result.getExitValue());
+    Assertions.assertEquals("no new line", result.getOutput());
+
+    result = executer.executeAsync(null, "echo 'unbalanced").get();
+    Assertions.assertNotEquals(0, result.getExitValue());
+
+    result = executer.executeAsync(null, 1, "sleep 60").get(30, TimeUnit.SECONDS);
+    Assertions.assertTrue(result.isTimedOut());
+
+    Process process = executer.executeCommand(null, "echo done");
+    Assertions.assertEquals(0, process.waitFor());
+  }
+
+
+  /**
+   * Test the kill of a shell worker reaches a child which ignored the termination and was reparented since the shell has
+   * ended
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void killReparentedChildOfShellWorker() throws Exception {
+    Assumptions.assumeTrue(ProcessUtil.getInstance().isProcessHandleSupported() && new File("/proc/self/stat").exists());
+
+    final File pidFile = File.createTempFile("child", ".pid");
+    final ShellWorker worker = new ShellWorker(Arrays.asList("bash"), StandardCharsets.UTF_8);
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          worker.execute(null, Collections.singletonList("bash -c 'trap \"\" TERM; exec sleep 60' </dev/null >/dev/null 2>&1 & echo $! > " + pidFile.getPath() + "; wait"));
+        } catch (Exception e) {
+          // the worker has been terminated
+        }
+      }
+    };
+
+    try {
+      thread.start();
+      String pid = "";
+      for (int i = 0; i < 100 && pid.isEmpty(); i++) {
+        Thread.sleep(100);
+        pid = new String(Files.readAllBytes(pidFile.toPath()), StandardCharsets.US_ASCII).trim();
+      }
+
+      Assertions.assertFalse(pid.isEmpty());
+      worker.terminate(false);
+      thread.join(10000);
+      Assertions.assertFalse(thread.isAlive());
+      Assertions.assertTrue(isAlive(pid));
+
+      worker.terminate(true);
+      Assertions.assertTrue(waitForEnd(pid));
+    } finally {
+      pidFile.delete();
+    }
+  }
+
+
+  /**
+   * Test the resource usage is sampled from the proc file system
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void collectProcessStatistics() throws Exception {
+    Assumptions.assumeTrue(ProcessStatisticsCollector.isSupported());
+
+    IProcessSystemExecuter executer = SystemExecuterFactory.getInstance().createProcessSystemExecuter();
+    ProcessResult result = executer.executeAsync(null, "i=0; while [ $i -lt 200000 ]; do i=$((i+1)); done; sleep 0.3").get();
+
+    ProcessStatistics statistics = result.getStatistics();
+    Assertions.assertNotNull(statistics);
+    Assertions.assertTrue(statistics.getNumberOfProcesses() >= 1);
+    Assertions.assertTrue(statistics.getCpuTime() > 0);
+    Assertions.assertTrue(statistics.getPeakResidentSetSize() > 0);
+    Assertions.assertTrue(statistics.getVoluntaryContextSwitches() + statistics.getInvoluntaryContextSwitches() > 0);
+  }
+
+
+  /**
+   * Test a batch is executed in one shell and the results are demultiplexed
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeBatch() throws Exception {
+    List<String[]> commandList = new ArrayList<String[]>();
+    commandList.add(new String[] {"echo first"});
+    commandList.add(new String[] {"echo error >&2; printf 'no newline'; exit 5"});
+    commandList.add(new String[] {"cat", "-"});
+    commandList.add(new String[] {"pwd"});
+    for (int i = 0; i < 50; i++) {
+      commandList.add(new String[] {"echo " + i});
+    }
+
+    commandList.add(new String[] {"printf", "%s|", "a  b", "$(echo x); exit 3", "it's"});
+
+    List<IProcessSystemExecuter> executerList = new ArrayList<IProcessSystemExecuter>();
+    executerList.add(SystemExecuterFactory.getInstance().createProcessSystemExecuter());
+    executerList.add(SystemExecuterFactory.getInstance().createShellWorkerPoolProcessSystemExecuter());
+    for (IProcessSystemExecuter executer : executerList) {
+      List<ProcessResult> resultList = executer.executeBatch("/tmp", commandList);
+
+      Assertions.assertEquals(commandList.size(), resultList.size());
+      Assertions.assertEquals("first\n", resultList.get(0).getOutput());
+      Assertions.assertEquals(0, resultList.get(0).getExitValue());
+      Assertions.assertEquals("no newline", resultList.get(1).getOutput());
+      Assertions.assertEquals("error\n", resultList.get(1).getErrorOutput());
+      Assertions.assertEquals(5, resultList.get(1).getExitValue());
+      Assertions.assertEquals("", resultList.get(2).getOutput());
+      Assertions.assertEquals("/tmp\n", resultList.get(3).getOutput());
+      for (int i = 0; i < 50; i++) {
+        Assertions.assertEquals(i + "\n", resultList.get(i + 4).getOutput());
+      }
+
+      Assertions.assertEquals("a  b|$(echo x); exit 3|it's|", resultList.get(54).getOutput());
+      Assertions.assertEquals(0, resultList.get(54).getExitValue());
+    }
+  }
+
+
+  /**
+   * Test the caching executer coalesces concurrent requests, expires and evicts results
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void cacheCommandResults() throws Exception {
+    CachingProcessSystemExecuterImpl executer = new CachingProcessSystemExecuterImpl(SystemExecuterFactory.getInstance().createProcessSystemExecuter(), 2);
+    executer.setDefaultTimeToLive(60000);
+    executer.setTimeToLive(100, "date +%N");
+    executer.setTimeToLive(0, "echo uncached");
+
+    List<CompletableFuture<ProcessResult>> futureList = new ArrayList<CompletableFuture<ProcessResult>>();
+    for (int i = 0; i < 10; i++) {
+      futureList.add(executer.executeAsync(null, "sleep 0.2; date +%N"));
+    }
+
+    String output = futureList.get(0).get().getOutput();
+    for (CompletableFuture<ProcessResult> future : futureList) {
+      Assertions.assertEquals(output, future.get().getOutput());
+    }
+
+    Assertions.assertEquals(1, executer.getNumberOfMisses());
+    Assertions.assertEquals(9, executer.getNumberOfHits());
+    Assertions.assertEquals(9, executer.getNumberOfCoalescedRequests());
+    Assertions.assertEquals(output, executer.executeAsync(null, "sleep 0.2; date +%N").get().getOutput());
+
+    // the time to live of a command
+    String shortLived = executer.executeAsync(null, "date +%N").get().getOutput();
+    Thread.sleep(200);
+    Assertions.assertNotEquals(shortLived, executer.executeAsync(null, "date +%N").get().getOutput());
+    Assertions.assertEquals(1, executer.getNumberOfEvictions());
+
+    // the least recently used result is evicted, even by an execution which is not cached afterwards
+    Assertions.assertEquals(1, executer.executeAsync(null, "exit 1").get().getExitValue());
+    Assertions.assertEquals(1, executer.getSize());
+    Assertions.assertEquals(2, executer.getNumberOfEvictions());
+
+    // a command without time to live is not cached at all
+    executer.executeAsync(null, "echo uncached").get();
+    Assertions.assertEquals(1, executer.getSize());
+
+    executer.executeAsync(null, "echo other").get();
+    long numberOfHits = executer.getNumberOfHits();
+    Assertions.assertEquals("other\n", StreamUtil.getInstance().convertStreamToStr(executer.executeCommand(null, "echo other").getInputStream()));
+    Assertions.assertEquals(numberOfHits + 1, executer.getNumberOfHits());
+  }
+
+
+  /**
+   * Test the stages of a pipeline are connected and report their exit code and error output separately
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executePipeline() throws Exception {
+    List<String[]> commandList = new ArrayList<String[]>();
+    commandList.add(new String[] {"head -c 100000 /dev/zero; echo first >&2"});
+    commandList.add(new String[] {"gzip -c"});
+    commandList.add(new String[] {"gzip -d; echo third >&2; exit 4"});
+    commandList.add(new String[] {"wc -c"});
+
+    List<IProcessSystemExecuter> executerList = new ArrayList<IProcessSystemExecuter>();
+    executerList.add(SystemExecuterFactory.getInstance().createProcessSystemExecuter());
+    executerList.add(SystemExecuterFactory.getInstance().createShellWorkerPoolProcessSystemExecuter());
+    for (IProcessSystemExecuter executer : executerList) {
+      List<ProcessResult> resultList = executer.executePipeline("/tmp", null, commandList);
+
+      Assertions.assertEquals(commandList.size(), resultList.size());
+      Assertions.assertEquals("first\n", resultList.get(0).getErrorOutput());
+      Assertions.assertEquals(0, resultList.get(1).getExitValue());
+      Assertions.assertEquals("third\n", resultList.get(2).getErrorOutput());
+      Assertions.assertEquals(4, resultList.get(2).getExitValue());
+      Assertions.assertEquals("100000", resultList.get(3).getOutput().trim());
+      Assertions.assertEquals(0, resultList.get(3).getExitValue());
+
+      File outputFile = File.createTempFile("pipeline", ".txt");
+      try {
+        commandList.set(0, new String[] {"pwd"});
+        resultList = executer.executePipeline("/tmp", outputFile, commandList.subList(0, 2));
+        Assertions.assertEquals("", resultList.get(1).getOutput());
+        Assertions.assertEquals("/tmp\n", executer.executeAsync(null, "gzip -d -c " + outputFile.getPath()).get().getOutput());
+      } finally {
+        outputFile.delete();
+        commandList.set(0, new String[] {"head -c 100000 /dev/zero; echo first >&2"});
+      }
+    }
+  }
+
+
+  /**
+   * Test the default methods of an executer which only implements the execution of a command
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void executeWithDefaultMethods() throws Exception {
+    IProcessSystemExecuter executer = new IProcessSystemExecuter() {
+      @Override
+      public Process executeCommand(String path, String... commandList) {
+        try {
+          return new ProcessBuilder("bash", "-c", String.join(" ", commandList)).start();
+        } catch (Exception e) {
+          return null;
+        }
+      }
+
+
+      @Override
+      public Process executeCommand(String path, int numberOfSecondsToWait, String... commandList) {
+        return executeCommand(path, commandList);
+      }
+    };
+
+    ProcessResult result = executer.executeAsync(null, "echo a; echo b >&2; exit 2").get(30, TimeUnit.SECONDS);
+    Assertions.assertEquals(2, result.getExitValue());
+    Assertions.assertEquals("a\n", result.getOutput());
+    Assertions.assertEquals("b\n", result.getErrorOutput());
+    Assertions.assertTrue(executer.executeAsync(null, 1, "sleep 60").get(30, TimeUnit.SECONDS).isTimedOut());
+
+    List<String[]> commandList = new ArrayList<String[]>();
+    commandList.add(new String[] {"echo c"});
+    commandList.add(new String[] {"tr c d"});
+    List<ProcessResult> resultList = executer.executeBatch(null, commandList);
+    Assertions.assertEquals("c\n", resultList.get(0).getOutput());
+    Assertions.assertEquals(0, resultList.get(1).getExitValue());
+
+    resultList = executer.executePipeline(null, null, commandList);
+    Assertions.assertEquals("d\n", resultList.get(1).getOutput());
+
+    File outputFile = File.createTempFile("default", ".txt");
+    try {
+      Process process = executer.executeCommandToFile(null, outputFile, "echo e");
+      Assertions.assertEquals(0, process.waitFor());
+      for (int i = 0; i < 100 && outputFile.length() == 0; i++) {
+        Thread.sleep(10);
+      }
+
+      Assertions.assertEquals("e\n", new String(Files.readAllBytes(outputFile.toPath()), StandardCharsets.US_ASCII));
+    } finally {
+      outputFile.delete();
+    }
+  }
+
+
+  /**
+   * Wait up to 10 seconds for the end of a process
+   *
+   * @param pid the process id
+   * @return true if the process has ended
+   * @throws Exception in case of an error
+   */
+  private boolean waitForEnd(String pid) throws Exception {
+    for (int i = 0; i < 100 && isAlive(pid); i++) {
+      Thread.sleep(100);
+    }
+
+    return !isAlive(pid);
+  }
+
+
+  /**
+   * Check if a process is alive, a zombie which has not been reaped yet has ended
+   *
+   * @param pid the process id
+   * @return true if the process is alive
+   */
+  private boolean isAlive(String pid) {
+    try {
+      String stat = new String(Files.readAllBytes(Paths.get("/proc", pid, "stat")), StandardCharsets.US_ASCII);
+      return stat.charAt(stat.lastIndexOf(')') + 2) != 'Z';
+    } catch (Exception e) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * CpuPlacementTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CpuPlacementTest {
+
+  /**
+   * Test the parsing of the cpu list format of the sys file system
+   */
+  @Test
+  public void parseCpuList() {
+    Assertions.assertEquals(Arrays.asList(0), CpuPlacement.parseCpuList("0\n"));
+    Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 8, 10, 11), CpuPlacement.parseCpuList("0-3,8,10-11\n"));
+    Assertions.assertFalse(CpuPlacement.getInstance().getCpus().isEmpty());
+  }
+
+
+  /**
+   * Test the round robin placement
+   */
+  @Test
+  public void roundRobin() {
+    CpuPlacement cpuPlacement = new CpuPlacement(Arrays.asList(0, 1, 2, 3));
+    Assertions.assertEquals(Arrays.asList(0), cpuPlacement.acquire(CpuPlacementPolicy.ROUND_ROBIN, 1));
+    Assertions.assertEquals(Arrays.asList(1, 2), cpuPlacement.acquire(CpuPlacementPolicy.ROUND_ROBIN, 2));
+    Assertions.assertEquals(Arrays.asList(0, 3), cpuPlacement.acquire(CpuPlacementPolicy.ROUND_ROBIN, 2));
+    Assertions.assertEquals(2, cpuPlacement.getLoad(0));
+  }
+
+
+  /**
+   * Test the least loaded placement and the release of the cpus
+   */
+  @Test
+  public void leastLoaded() {
+    CpuPlacement cpuPlacement = new CpuPlacement(Arrays.asList(0, 1, 2, 3));
+    cpuPlacement.excludeCpus(Collections.singletonList(3));
+    Assertions.assertEquals(Arrays.asList(0, 1, 2), cpuPlacement.getCpus());
+
+    List<Integer> first = cpuPlacement.acquire(CpuPlacementPolicy.LEAST_LOADED, 2);
+    Assertions.assertEquals(Arrays.asList(0, 1), first);
+    Assertions.assertEquals(Arrays.asList(2), cpuPlacement.acquire(CpuPlacementPolicy.LEAST_LOADED, 1));
+
+    cpuPlacement.release(first);
+    Assertions.assertEquals(Arrays.asList(0, 1), cpuPlacement.acquire(CpuPlacementPolicy.LEAST_LOADED, 2));
+    Assertions.assertEquals(Arrays.asList(0, 1, 2), cpuPlacement.acquire(CpuPlacementPolicy.LEAST_LOADED, 5));
+    Assertions.assertEquals(2, cpuPlacement.getLoad(2));
+  }
+}
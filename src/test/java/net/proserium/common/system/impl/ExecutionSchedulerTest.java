@@ -0,0 +1,175 @@
+/*
+ * ExecutionSchedulerTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.proserium.common.sdo.NodeKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExecutionSchedulerTest {
+
+  /**
+   * Test the global and the node limit
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void limitConcurrentExecutions() throws Exception {
+    ExecutionScheduler scheduler = new ExecutionScheduler(4, 2);
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maximumRunning = new AtomicInteger();
+    final AtomicInteger nodeRunning = new AtomicInteger();
+    final AtomicInteger maximumNodeRunning = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(40);
+    final NodeKey busyNode = new NodeKey("localhost", "dev", "busy");
+
+    for (int i = 0; i < 40; i++) {
+      final NodeKey nodeKey;
+      if (i % 2 == 0) {
+        nodeKey = busyNode;
+      } else {
+        nodeKey = new NodeKey("localhost", "dev", "node" + i);
+      }
+
+      scheduler.submit(new ScheduledExecution(nodeKey, 0) {
+        @Override
+        protected void execute(long queueWaitTime) {
+          maximumRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          if (busyNode.equals(nodeKey)) {
+            maximumNodeRunning.accumulateAndGet(nodeRunning.incrementAndGet(), Math::max);
+          }
+
+          sleep(10);
+
+          if (busyNode.equals(nodeKey)) {
+            nodeRunning.decrementAndGet();
+          }
+
+          running.decrementAndGet();
+          latch.countDown();
+        }
+      });
+    }
+
+    Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+    Assertions.assertTrue(maximumRunning.get() <= 4);
+    Assertions.assertTrue(maximumNodeRunning.get() <= 2);
+  }
+
+
+  /**
+   * Test waiting executions are started by priority
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void startByPriority() throws Exception {
+    ExecutionScheduler scheduler = new ExecutionScheduler(1, 1);
+    final List<Integer> startOrder = new CopyOnWriteArrayList<Integer>();
+    final CountDownLatch blocker = new CountDownLatch(1);
+    final CountDownLatch latch = new CountDownLatch(4);
+
+    scheduler.submit(new ScheduledExecution(new NodeKey("localhost", "dev", "blocker"), 0) {
+      @Override
+      protected void execute(long queueWaitTime) {
+        await(blocker);
+      }
+    });
+
+    int[] priorityList = {1, 5, 3, 5};
+    for (int i = 0; i < priorityList.length; i++) {
+      final int number = i;
+      scheduler.submit(new ScheduledExecution(new NodeKey("localhost", "dev", "node" + i), priorityList[i]) {
+        @Override
+        protected void execute(long queueWaitTime) {
+          startOrder.add(number);
+          latch.countDown();
+        }
+      });
+    }
+
+    Assertions.assertEquals(4, scheduler.getNumberOfWaitingExecutions());
+    blocker.countDown();
+    Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+    Assertions.assertEquals(Arrays.asList(1, 3, 2, 0), startOrder);
+  }
+
+
+  /**
+   * Test the executions run in virtual thread mode, on a java 8 to 20 runtime on the shared thread pool
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void virtualThreadMode() throws Exception {
+    ExecutionScheduler scheduler = new ExecutionScheduler(8, 8);
+    scheduler.setExecutionThreadMode(ExecutionThreadMode.VIRTUAL);
+    Assertions.assertEquals(ExecutionThreadMode.VIRTUAL, scheduler.getExecutionThreadMode());
+
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maximumRunning = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(100);
+    for (int i = 0; i < 100; i++) {
+      scheduler.submit(new ScheduledExecution(new NodeKey("localhost", "dev", "node" + i), 0) {
+        @Override
+        protected void execute(long queueWaitTime) {
+          maximumRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          sleep(5);
+          running.decrementAndGet();
+          latch.countDown();
+        }
+      });
+    }
+
+    Assertions.assertTrue(latch.await(30, TimeUnit.SECONDS));
+    Assertions.assertTrue(maximumRunning.get() <= 8);
+
+    scheduler.setExecutionThreadMode(ExecutionThreadMode.PLATFORM);
+    final CountDownLatch platformLatch = new CountDownLatch(1);
+    scheduler.submit(new ScheduledExecution(new NodeKey("localhost", "dev", "platform"), 0) {
+      @Override
+      protected void execute(long queueWaitTime) {
+        platformLatch.countDown();
+      }
+    });
+    Assertions.assertTrue(platformLatch.await(30, TimeUnit.SECONDS));
+  }
+
+
+  /**
+   * Sleep
+   *
+   * @param millis the milliseconds
+   */
+  private void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+
+  /**
+   * Await a latch
+   *
+   * @param latch the latch
+   */
+  private void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * QueueSystemExecuterImplTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.system.SystemExecuterFactory;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressStorage;
+import net.proserium.common.system.impl.storage.ProcessOutputDecoder;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.system.impl.storage.impl.SystemExecuterProgressStorageImpl;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class QueueSystemExecuterImplTest {
+  private QueueSystemExecuterImpl executer;
+  private ISystemExecuterProgressStorage storage;
+  private SystemExecuterProgressKey key;
+
+
+  /**
+   * Only run on unix like systems
+   */
+  @BeforeEach
+  public void setUp() {
+    Assumptions.assumeFalse(System.getProperty("os.name").toLowerCase().startsWith("windows"));
+    executer = new QueueSystemExecuterImpl(new ExecutionScheduler(1, 1));
+    storage = new SystemExecuterProgressStorageImpl();
+    key = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 1L);
+    storage.startProcessing(key);
+  }
+
+
+  /**
+   * Test an execution which could not be queued is ended and no key is returned
+   */
+  @Test
+  public void startExecutionRejected() {
+    final List<SystemExecuterProgressKey> keyList = new ArrayList<SystemExecuterProgressKey>();
+    SystemExecuterProgressStorageImpl recordingStorage = new SystemExecuterProgressStorageImpl() {
+      @Override
+      public void startProcessing(SystemExecuterProgressKey systemExecuterProgressKey) {
+        keyList.add(systemExecuterProgressKey);
+        super.startProcessing(systemExecuterProgressKey);
+      }
+    };
+
+    // without scheduler the submit fails
+    QueueSystemExecuterImpl rejectingExecuter = new QueueSystemExecuterImpl(null);
+
+    Assertions.assertNull(rejectingExecuter.startExecution(recordingStorage, "localhost", "dev", "test", null));
+    Assertions.assertEquals(1, keyList.size());
+    Assertions.assertTrue(recordingStorage.readServerProgress(keyList.get(0)).hasEnded());
+    Assertions.assertFalse(recordingStorage.exitProcessing(keyList.get(0)));
+  }
+
+
+  /**
+   * Test the output is available as soon as it has been written and not after a poll interval
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void captureOutputWithoutPolling() throws Exception {
+    final Process process = new ProcessBuilder(Arrays.asList("sh", "-c", "printf first; sleep 2; printf second")).start();
+    long startTime = System.currentTimeMillis();
+    Thread watcher = new Thread() {
+      @Override
+      public void run() {
+        executer.captureOutput(storage, key, process.getInputStream(), new AdaptiveReadBuffer(), executer.createOutputDecoder());
+        executer.waitForExit(process);
+      }
+    };
+    watcher.start();
+
+    SystemExecuterProgressData data;
+    while ((data = storage.readServerProgress(key)) == null) {
+      Thread.sleep(1);
+    }
+
+    Assertions.assertEquals("first", data.getData());
+    Assertions.assertTrue(System.currentTimeMillis() - startTime < 1500);
+    Assertions.assertTrue(process.isAlive());
+
+    watcher.join(10000);
+    Assertions.assertFalse(process.isAlive());
+    Assertions.assertEquals("second", storage.readServerProgress(key).getData());
+  }
+
+
+  /**
+   * Test the buffer grows with the output and empty reads return the shared empty string
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void adaptiveReadBuffer() throws Exception {
+    AdaptiveReadBuffer readBuffer = new AdaptiveReadBuffer(100, 1024);
+    InputStream inputStream = new ByteArrayInputStream(new byte[10000]);
+    int numberOfReads = 0;
+    while (readBuffer.read(inputStream) != -1) {
+      numberOfReads++;
+    }
+
+    Assertions.assertEquals(1024, readBuffer.getCapacity());
+    Assertions.assertTrue(numberOfReads < 100);
+    ProcessOutputDecoder outputDecoder = executer.createOutputDecoder();
+    Assertions.assertSame(executer.processInputStream(inputStream, outputDecoder, readBuffer, false), executer.processInputStream(inputStream, outputDecoder, readBuffer, true));
+    Assertions.assertEquals("", executer.processInputStream(inputStream, outputDecoder, readBuffer, false));
+    Assertions.assertEquals("abc", executer.processInputStream(new ByteArrayInputStream("abc".getBytes("UTF-8")), outputDecoder, readBuffer, true));
+  }
+
+
+  /**
+   * Test multi-byte characters which are split between reads and the line framing
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void decodeSplitCharactersAndLines() throws Exception {
+    byte[] data = "gr\u00fc\u00dfe \u20ac\nzweite Zeile\nrest".getBytes(StandardCharsets.UTF_8);
+
+    ProcessOutputDecoder outputDecoder = new ProcessOutputDecoder(StandardCharsets.UTF_8, false);
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < data.length; i++) {
+      result.append(outputDecoder.decode(data, i, 1));
+    }
+    result.append(outputDecoder.flush());
+    Assertions.assertEquals("gr\u00fc\u00dfe \u20ac\nzweite Zeile\nrest", result.toString());
+
+    ProcessOutputDecoder lineDecoder = new ProcessOutputDecoder(StandardCharsets.UTF_8, true);
+    List<String> lineList = new ArrayList<String>();
+    for (int i = 0; i < data.length; i += 3) {
+      String text = lineDecoder.decode(data, i, Math.min(3, data.length - i));
+      if (!text.isEmpty()) {
+        lineList.add(text);
+      }
+    }
+    lineList.add(lineDecoder.flush());
+    Assertions.assertEquals(Arrays.asList("gr\u00fc\u00dfe \u20ac\n", "zweite Zeile\n", "rest"), lineList);
+
+    // an incomplete character at the end of the stream is replaced
+    ProcessOutputDecoder truncatedDecoder = new ProcessOutputDecoder(StandardCharsets.UTF_8, false);
+    Assertions.assertEquals("a", truncatedDecoder.decode(new byte[] {'a', (byte) 0xe2, (byte) 0x82}, 0, 3));
+    Assertions.assertEquals("\ufffd", truncatedDecoder.flush());
+  }
+
+
+  /**
+   * Test the output is written into a file and read by following the file
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void redirectOutputToFile() throws Exception {
+    File outputFile = File.createTempFile("execution", ".log");
+    outputFile.deleteOnExit();
+
+    storage.attachOutputFile(key, outputFile, StandardCharsets.UTF_8, false);
+    Process process = SystemExecuterFactory.getInstance().createProcessSystemExecuter().executeCommandToFile(null, outputFile, "printf first; sleep 1; printf '\\303\\274second'; echo error >&2");
+    Assertions.assertEquals(-1, process.getInputStream().read());
+
+    StringBuilder output = new StringBuilder();
+    SystemExecuterProgressData data;
+    while ((data = storage.readServerProgress(key)) == null) {
+      Thread.sleep(1);
+    }
+    output.append(data.getData());
+    Assertions.assertTrue(process.isAlive());
+
+    executer.waitForExit(process);
+    storage.endProcessing(key);
+    while (!(data = storage.readServerProgress(key)).hasEnded()) {
+      output.append(data.getData());
+    }
+
+    Assertions.assertEquals("first\u00fcseconderror\n", output.toString());
+    Assertions.assertFalse(storage.exitProcessing(key));
+  }
+
+
+  /**
+   * Test a full buffer stops the draining of the pipe until the output has been read
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void backpressure() throws Exception {
+    final SystemExecuterProgressStorageImpl boundedStorage = new SystemExecuterProgressStorageImpl(1000);
+    boundedStorage.startProcessing(key);
+
+    final Process process = new ProcessBuilder(Arrays.asList("sh", "-c", "head -c 200000 /dev/zero | tr '\\0' x")).start();
+    Thread watcher = new Thread() {
+      @Override
+      public void run() {
+        executer.captureOutput(boundedStorage, key, process.getInputStream(), new AdaptiveReadBuffer(100, 512), executer.createOutputDecoder());
+        executer.waitForExit(process);
+        boundedStorage.endProcessing(key);
+      }
+    };
+    watcher.start();
+
+    Thread.sleep(500);
+    Assertions.assertTrue(process.isAlive());
+    Assertions.assertTrue(boundedStorage.getBufferedSize(key) > 0);
+    Assertions.assertTrue(boundedStorage.getBufferedSize(key) <= 1000);
+
+    int length = 0;
+    SystemExecuterProgressData data;
+    while ((data = boundedStorage.readServerProgress(key)) == null || !data.hasEnded()) {
+      if (data != null) {
+        length += data.getData().length();
+      }
+    }
+
+    watcher.join(10000);
+    Assertions.assertEquals(200000, length);
+    Assertions.assertFalse(process.isAlive());
+  }
+}
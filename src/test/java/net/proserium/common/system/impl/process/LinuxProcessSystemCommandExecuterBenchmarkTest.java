@@ -0,0 +1,67 @@
+/*
+ * LinuxProcessSystemCommandExecuterBenchmarkTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import jptools.logger.Logger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The benchmark spawns several hundred processes, it only runs if the system property <code>benchmark</code> is set.
+ */
+@Tag("benchmark")
+public class LinuxProcessSystemCommandExecuterBenchmarkTest {
+  private static final Logger log = Logger.getLogger(LinuxProcessSystemCommandExecuterBenchmarkTest.class);
+  private static final int NUMBER_OF_RUNS = 200;
+  private static final String COMMAND = "uname -s";
+
+
+  /**
+   * Compares the spawn latency of the shell and the direct execution mode
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void benchmarkSpawnLatency() throws Exception {
+    Assumptions.assumeTrue(System.getProperty("os.name").toLowerCase().startsWith("linux"));
+    Assumptions.assumeTrue(Boolean.getBoolean("benchmark"));
+
+    LinuxProcessSystemCommandExecuterImpl shellExecuter = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.SHELL);
+    LinuxProcessSystemCommandExecuterImpl directExecuter = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.DIRECT);
+
+    // warm up
+    run(shellExecuter, NUMBER_OF_RUNS / 10);
+    run(directExecuter, NUMBER_OF_RUNS / 10);
+
+    long shellTime = run(shellExecuter, NUMBER_OF_RUNS);
+    long directTime = run(directExecuter, NUMBER_OF_RUNS);
+
+    log.info("Spawn latency of [" + COMMAND + "]: shell " + (shellTime / NUMBER_OF_RUNS / 1000) + "us, direct " + (directTime / NUMBER_OF_RUNS / 1000) + "us per command.");
+  }
+
+
+  /**
+   * Run a command sequentially
+   *
+   * @param executer the executer
+   * @param numberOfRuns the number of runs
+   * @return the time in nano seconds
+   * @throws Exception in case of an error
+   */
+  private long run(LinuxProcessSystemCommandExecuterImpl executer, int numberOfRuns) throws Exception {
+    long start = System.nanoTime();
+    for (int i = 0; i < numberOfRuns; i++) {
+      Process process = executer.executeCommand(null, COMMAND);
+      Assertions.assertEquals(0, process.waitFor());
+      process.getInputStream().close();
+    }
+
+    return System.nanoTime() - start;
+  }
+}
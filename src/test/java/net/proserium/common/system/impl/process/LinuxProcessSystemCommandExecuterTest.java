@@ -0,0 +1,154 @@
+/*
+ * LinuxProcessSystemCommandExecuterTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.process;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import net.proserium.common.system.ProcessResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LinuxProcessSystemCommandExecuterTest {
+
+  /**
+   * Only run on linux
+   */
+  @BeforeEach
+  public void checkOperatingSystem() {
+    Assumptions.assumeTrue(System.getProperty("os.name").toLowerCase().startsWith("linux"));
+  }
+
+
+  /**
+   * Check the automatic detection of shell meta characters
+   */
+  @Test
+  public void detectShellMetaCharacters() {
+    LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.AUTO);
+    Assertions.assertFalse(executer.containsShellMetaCharacter("df -h /tmp"));
+    Assertions.assertTrue(executer.containsShellMetaCharacter("ls | wc -l"));
+    Assertions.assertTrue(executer.containsShellMetaCharacter("echo $HOME"));
+    Assertions.assertTrue(executer.containsShellMetaCharacter("ls *.log"));
+  }
+
+
+  /**
+   * Test which commands are executed without shell in the automatic and the direct mode
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void resolveDirectCommands() throws Exception {
+    String uname = ExecutablePathResolver.getInstance().resolve("uname");
+    Assumptions.assumeTrue(uname != null);
+
+    LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.AUTO);
+    Assertions.assertEquals(Arrays.asList(uname, "-s"), executer.prepareDirectCommandList(Collections.singletonList(" uname  -s ")));
+    Assertions.assertNull(executer.prepareDirectCommandList(Collections.singletonList("uname -s | wc -l")));
+    Assertions.assertNull(executer.prepareDirectCommandList(Collections.singletonList("cd /tmp")));
+    Assertions.assertNull(executer.prepareDirectCommandList(Collections.singletonList("not-installed-executable -s")));
+    Assertions.assertNull(executer.prepareDirectCommandList(Arrays.asList("uname", "-s")));
+    Assertions.assertEquals("Linux\n", executer.executeAsync(null, "uname -s").get().getOutput());
+    Assertions.assertEquals("a\n", executer.executeAsync(null, "echo a").get().getOutput());
+
+    executer.setCommandExecutionMode(CommandExecutionMode.DIRECT);
+    List<String> argumentList = executer.prepareDirectCommandList(Arrays.asList("uname", "-s", "a b"));
+    Assertions.assertEquals(Arrays.asList(uname, "-s", "a b"), argumentList);
+    Assertions.assertEquals(Arrays.asList("not-installed-executable", "-s"), executer.prepareDirectCommandList(Collections.singletonList("not-installed-executable -s")));
+    Assertions.assertEquals("Linux\n", executer.executeAsync(null, "uname -s").get().getOutput());
+
+    executer.setCommandExecutionMode(CommandExecutionMode.SHELL);
+    Assertions.assertNull(executer.prepareDirectCommandList(Collections.singletonList("uname -s")));
+  }
+
+
+  /**
+   * Test an explicit path is only executed directly if it is an executable file, otherwise the shell reports the error
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void resolveExplicitPaths() throws Exception {
+    File script = File.createTempFile("control", ".sh");
+    try {
+      Files.write(script.toPath(), "#!/bin/sh\necho started $1\n".getBytes(StandardCharsets.US_ASCII));
+      script.setExecutable(false);
+
+      LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.AUTO);
+      Assertions.assertNull(ExecutablePathResolver.getInstance().resolve(script.getAbsolutePath()));
+      Assertions.assertNull(executer.prepareDirectCommandList(Collections.singletonList(script.getAbsolutePath() + " a")));
+      ProcessResult result = executer.executeAsync(null, script.getAbsolutePath() + " a").get();
+      Assertions.assertEquals(126, result.getExitValue());
+      Assertions.assertTrue(result.getErrorOutput().contains("Permission denied"), result.getErrorOutput());
+
+      script.setExecutable(true);
+      Assertions.assertEquals(Arrays.asList(script.getAbsolutePath(), "a"), executer.prepareDirectCommandList(Collections.singletonList(script.getAbsolutePath() + " a")));
+      Assertions.assertEquals("started a\n", executer.executeAsync(null, script.getAbsolutePath() + " a").get().getOutput());
+      Assertions.assertNull(ExecutablePathResolver.getInstance().resolve("./" + script.getName()));
+    } finally {
+      script.delete();
+    }
+
+    LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl(CommandExecutionMode.AUTO);
+    ProcessResult result = executer.executeAsync(null, script.getAbsolutePath() + " a").get();
+    Assertions.assertEquals(127, result.getExitValue());
+    Assertions.assertTrue(result.getErrorOutput().contains("No such file"), result.getErrorOutput());
+    Assertions.assertEquals(CommandExecutionMode.SHELL, new LinuxProcessSystemCommandExecuterImpl().getCommandExecutionMode());
+  }
+
+
+  /**
+   * Test the resource limits are applied to shell and direct commands
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void applyResourceLimits() throws Exception {
+    ProcessResourceLimits resourceLimits = new ProcessResourceLimits();
+    resourceLimits.setNiceness(7);
+    resourceLimits.setIoSchedulingClass(ProcessResourceLimits.IoSchedulingClass.IDLE);
+    resourceLimits.setMaximumOpenFiles(64L);
+    resourceLimits.setMaximumCpuTime(30L);
+    resourceLimits.setMaximumAddressSpace(4L * 1024 * 1024 * 1024);
+
+    LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl();
+    executer.setResourceLimits(resourceLimits);
+
+    ProcessResult result = executer.executeAsync(null, "ulimit -n; ulimit -t; ulimit -v; nice").get();
+    Assertions.assertEquals(0, result.getExitValue(), result.getErrorOutput());
+    Assertions.assertEquals("64\n30\n4194304\n7\n", result.getOutput());
+
+    result = executer.executeAsync(null, "nice").get();
+    Assertions.assertEquals("7\n", result.getOutput());
+
+    Assertions.assertEquals("7\n", executer.executeBatch(null, Collections.singletonList(new String[] {"nice"})).get(0).getOutput());
+  }
+
+
+  /**
+   * Test the commands are pinned to the cpus
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void applyCpuAffinity() throws Exception {
+    Assumptions.assumeTrue(ExecutablePathResolver.getInstance().resolve("taskset") != null);
+
+    LinuxProcessSystemCommandExecuterImpl executer = new LinuxProcessSystemCommandExecuterImpl();
+    executer.setCpuAffinity(Arrays.asList(0));
+
+    ProcessResult result = executer.executeAsync(null, "grep Cpus_allowed_list /proc/self/status").get();
+    Assertions.assertEquals(0, result.getExitValue(), result.getErrorOutput());
+    Assertions.assertEquals("0", result.getOutput().substring(result.getOutput().indexOf(':') + 1).trim());
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * PersistentSystemExecuterProgressStorageImplTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PersistentSystemExecuterProgressStorageImplTest {
+  private File directory;
+  private SystemExecuterProgressKey key;
+
+
+  /**
+   * Create the directory
+   *
+   * @throws IOException in case of an error
+   */
+  @BeforeEach
+  public void setUp() throws IOException {
+    directory = Files.createTempDirectory("progress").toFile();
+    key = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 1L);
+  }
+
+
+  /**
+   * Delete the directory
+   */
+  @AfterEach
+  public void tearDown() {
+    delete(directory);
+  }
+
+
+  /**
+   * Test the progress is re-read at any offset and survives a restart
+   */
+  @Test
+  public void readAfterRestart() {
+    PersistentSystemExecuterProgressStorageImpl storage = new PersistentSystemExecuterProgressStorageImpl(directory);
+    storage.startProcessing(key);
+    for (int i = 0; i < 100; i++) {
+      storage.addInput(key, "line " + i + "\n");
+    }
+
+    storage.addError(key, "failed\n");
+    storage.endProcessing(key);
+
+    // the live progress is not affected
+    Assertions.assertNotNull(storage.readServerProgress(key).getData());
+    storage.close();
+
+    storage = new PersistentSystemExecuterProgressStorageImpl(directory);
+    List<SystemExecuterProgressData> dataList = new ArrayList<SystemExecuterProgressData>();
+    List<Long> offsetList = new ArrayList<Long>();
+    long offset = 0;
+    SystemExecuterProgressRange range;
+    do {
+      range = storage.read(key, offset, 50);
+      Assertions.assertFalse(range.getDataList().isEmpty());
+      dataList.addAll(range.getDataList());
+      offsetList.add(offset);
+      offset = range.getNextOffset();
+    } while (!range.hasEnded());
+
+    Assertions.assertEquals(102, dataList.size());
+    Assertions.assertEquals("line 0\n", dataList.get(0).getData());
+    Assertions.assertEquals("line 99\n", dataList.get(99).getData());
+    Assertions.assertTrue(dataList.get(100).isError());
+    Assertions.assertTrue(storage.read(key, offset, 50).getDataList().isEmpty());
+
+    // a range is read again at its offset
+    range = storage.read(key, offsetList.get(3), 50);
+    Assertions.assertEquals(offsetList.get(4).longValue(), range.getNextOffset());
+    Assertions.assertNull(storage.read(key, offset + 1, 50));
+    Assertions.assertNull(storage.read(new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 2L), 0, 50));
+    storage.close();
+  }
+
+
+  /**
+   * Test an incomplete record behind the last commit is truncated when the log is opened again
+   *
+   * @throws IOException in case of an error
+   */
+  @Test
+  public void recoverIncompleteRecord() throws IOException {
+    File logPath = new File(directory, "log");
+    ProgressSegmentLog segmentLog = new ProgressSegmentLog(logPath, 64);
+    for (int i = 0; i < 10; i++) {
+      segmentLog.append(new SystemExecuterProgressData("chunk " + i, false));
+    }
+
+    Assertions.assertTrue(segmentLog.commit());
+    Assertions.assertFalse(segmentLog.commit());
+    long committedOffset = segmentLog.getCommittedOffset();
+    segmentLog.close();
+
+    File[] segmentList = logPath.listFiles();
+    Assertions.assertTrue(segmentList.length > 1);
+    File lastSegment = segmentList[0];
+    for (File segment : segmentList) {
+      if (segment.getName().compareTo(lastSegment.getName()) > 0) {
+        lastSegment = segment;
+      }
+    }
+
+    try (FileOutputStream output = new FileOutputStream(lastSegment, true)) {
+      output.write(new byte[] { 0, 0, 0, 0, 42, 1, 2 });
+    }
+
+    segmentLog = new ProgressSegmentLog(logPath, 64);
+    Assertions.assertEquals(committedOffset, segmentLog.getCommittedOffset());
+    Assertions.assertFalse(segmentLog.isEnded());
+    segmentLog.append(new SystemExecuterProgressData("more", true));
+    segmentLog.append(new SystemExecuterProgressData());
+    segmentLog.commit();
+    Assertions.assertTrue(segmentLog.isEnded());
+
+    SystemExecuterProgressRange range = segmentLog.read(0, Integer.MAX_VALUE);
+    Assertions.assertEquals(12, range.getDataList().size());
+    Assertions.assertEquals("chunk 9", range.getDataList().get(9).getData());
+    Assertions.assertEquals("more", range.getDataList().get(10).getData());
+    Assertions.assertTrue(range.hasEnded());
+
+    segmentLog = new ProgressSegmentLog(logPath, 64);
+    Assertions.assertTrue(segmentLog.isEnded());
+    Assertions.assertEquals(range.getNextOffset(), segmentLog.getCommittedOffset());
+    segmentLog.delete();
+    Assertions.assertFalse(logPath.exists());
+  }
+
+
+  /**
+   * Delete a file recursively
+   *
+   * @param file the file
+   */
+  private static void delete(File file) {
+    File[] fileList = file.listFiles();
+    if (fileList != null) {
+      for (File f : fileList) {
+        delete(f);
+      }
+    }
+
+    file.delete();
+  }
+}
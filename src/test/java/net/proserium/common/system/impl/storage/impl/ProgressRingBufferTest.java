@@ -0,0 +1,137 @@
+/*
+ * ProgressRingBufferTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.util.concurrent.TimeUnit;
+import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ProgressRingBufferTest {
+
+  /**
+   * Test consecutive records of the same stream are merged on read and the positions wrap around
+   */
+  @Test
+  public void readWrite() {
+    ProgressRingBuffer ringBuffer = new ProgressRingBuffer(100);
+    Assertions.assertEquals(128, ringBuffer.getCapacity());
+    Assertions.assertNull(ringBuffer.read());
+
+    for (int i = 0; i < 100; i++) {
+      ringBuffer.write("out " + i, false);
+      ringBuffer.write(" more", false);
+      ringBuffer.write("err " + i, true);
+      Assertions.assertEquals("out " + i + " more", ringBuffer.read().getData());
+      SystemExecuterProgressData data = ringBuffer.read();
+      Assertions.assertEquals("err " + i, data.getData());
+      Assertions.assertTrue(data.isError());
+    }
+
+    Assertions.assertFalse(ringBuffer.hasData());
+    ringBuffer.writeEnd();
+    Assertions.assertTrue(ringBuffer.isEndNext());
+    Assertions.assertTrue(ringBuffer.read().hasEnded());
+    Assertions.assertEquals(0, ringBuffer.getSize());
+  }
+
+
+  /**
+   * Test multi byte characters survive the split of a string which is larger than the ring
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void multiByteCharacters() throws Exception {
+    final ProgressRingBuffer ringBuffer = new ProgressRingBuffer(64);
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("a\u00e4\u20ac\ud83d\ude00");
+    }
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        ringBuffer.write(text.toString(), false);
+        ringBuffer.writeEnd();
+      }
+    };
+    writer.start();
+
+    StringBuilder result = new StringBuilder();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < deadline) {
+      SystemExecuterProgressData data = ringBuffer.read();
+      if (data == null) {
+        Thread.sleep(1);
+      } else if (data.hasEnded()) {
+        break;
+      } else {
+        result.append(data.getData());
+      }
+    }
+
+    writer.join(1000);
+    Assertions.assertEquals(text.toString(), result.toString());
+  }
+
+
+  /**
+   * Test a full ring blocks the writer until the reader has released space or the ring has been closed
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void fullRingBlocksWriter() throws Exception {
+    final ProgressRingBuffer ringBuffer = new ProgressRingBuffer(64);
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 10; i++) {
+          ringBuffer.write("0123456789012345678901234567890123456789", false);
+        }
+      }
+    };
+    writer.start();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (writer.getState() != Thread.State.TIMED_WAITING && writer.isAlive() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    Assertions.assertTrue(writer.isAlive());
+    Assertions.assertTrue(ringBuffer.getSize() <= 64);
+    Assertions.assertNotNull(ringBuffer.read());
+
+    ringBuffer.close();
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+    Assertions.assertFalse(writer.isAlive());
+  }
+
+
+  /**
+   * Test the ring buffer storage supports the reads and the subscriptions of the storage
+   */
+  @Test
+  public void ringBufferStorage() {
+    RingBufferSystemExecuterProgressStorageImpl storage = new RingBufferSystemExecuterProgressStorageImpl(1024);
+    SystemExecuterProgressKey key = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 1L);
+    storage.startProcessing(key);
+    storage.addInput(key, "a");
+    storage.addInput(key, "b");
+    storage.addError(key, "c");
+    Assertions.assertEquals(3 * (5 + 1), storage.getBufferedSize(key));
+    Assertions.assertEquals(0, storage.getMemorySize());
+
+    Assertions.assertEquals("ab", storage.readServerProgress(key).getData());
+    storage.endProcessing(key);
+    Assertions.assertEquals(2, storage.readServerProgress(key, 0, 1000).size());
+    Assertions.assertFalse(storage.exitProcessing(key));
+  }
+}
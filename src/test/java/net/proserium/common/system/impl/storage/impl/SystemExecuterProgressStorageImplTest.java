@@ -0,0 +1,504 @@
+/*
+ * SystemExecuterProgressStorageImplTest.java
+ *
+ * Copyright by proserium, all rights reserved.
+ * MIT License: https://mit-license.org
+ */
+package net.proserium.common.system.impl.storage.impl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.proserium.common.sdo.NodeKey;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscriber;
+import net.proserium.common.system.impl.storage.ISystemExecuterProgressSubscription;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressData;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressKey;
+import net.proserium.common.system.impl.storage.SystemExecuterProgressRange;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SystemExecuterProgressStorageImplTest {
+  private SystemExecuterProgressStorageImpl storage;
+  private SystemExecuterProgressKey key;
+  private SystemExecuterProgressKey otherKey;
+
+
+  /**
+   * Create the storage
+   */
+  @BeforeEach
+  public void setUp() {
+    storage = new SystemExecuterProgressStorageImpl();
+    key = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 1L);
+    otherKey = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 2L);
+    storage.startProcessing(key);
+    storage.startProcessing(otherKey);
+  }
+
+
+  /**
+   * Test the output is spilled to disk if the maximum memory size is exceeded and read back in order
+   */
+  @Test
+  public void spillToDisk() {
+    storage.setMaximumChunkSize(0);
+    storage.startProcessing(key);
+    storage.setMaximumMemorySize(100);
+    storage.addInput(otherKey, "0123456789012345678901234567890123456789");
+    for (int i = 0; i < 1000; i++) {
+      if (i % 10 == 0) {
+        storage.addError(key, "error " + i + "\n");
+      } else {
+        storage.addInput(key, "line " + i + "\n");
+      }
+
+      Assertions.assertTrue(storage.getMemorySize() <= 100 + 10);
+    }
+
+    storage.endProcessing(key);
+    File spillPath = storage.getSpillPath(key);
+    Assertions.assertTrue(spillPath.exists());
+
+    for (int i = 0; i < 1000; i++) {
+      SystemExecuterProgressData data = storage.readServerProgress(key);
+      Assertions.assertEquals(i % 10 == 0, data.isError());
+      Assertions.assertEquals((i % 10 == 0 ? "error " : "line ") + i + "\n", data.getData());
+    }
+
+    Assertions.assertTrue(storage.readServerProgress(key).hasEnded());
+    Assertions.assertFalse(spillPath.exists());
+    Assertions.assertEquals("0123456789012345678901234567890123456789", storage.readServerProgress(otherKey).getData());
+    Assertions.assertEquals(0, storage.getMemorySize());
+  }
+
+
+  /**
+   * Test an unread ended execution is spilled instead of the writing execution, which still merges its chunks
+   */
+  @Test
+  public void spillLargestExecution() {
+    storage.setMaximumChunkSize(100);
+    storage.setMaximumChunkAge(60000);
+    storage.startProcessing(key);
+    storage.startProcessing(otherKey);
+    for (int i = 0; i < 15; i++) {
+      storage.addInput(otherKey, "0123456789");
+      storage.addError(otherKey, "e");
+    }
+
+    storage.endProcessing(otherKey);
+    storage.setMaximumMemorySize(100);
+    for (int i = 0; i < 5; i++) {
+      storage.addInput(key, "0123456789");
+      Assertions.assertTrue(storage.getMemorySize() <= 100);
+    }
+
+    storage.endProcessing(key);
+    Assertions.assertFalse(storage.getSpillPath(key).exists());
+    Assertions.assertTrue(storage.getSpillPath(otherKey).exists());
+    Assertions.assertEquals(50, storage.readServerProgress(key).getData().length());
+    Assertions.assertTrue(storage.readServerProgress(key).hasEnded());
+
+    for (int i = 0; i < 15; i++) {
+      Assertions.assertEquals("0123456789", storage.readServerProgress(otherKey).getData());
+      Assertions.assertEquals("e", storage.readServerProgress(otherKey).getData());
+    }
+
+    Assertions.assertTrue(storage.readServerProgress(otherKey).hasEnded());
+    Assertions.assertFalse(storage.getSpillPath(otherKey).exists());
+  }
+
+
+  /**
+   * Test consecutive chunks of the same stream are merged and empty chunks are ignored
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void coalesceChunks() throws Exception {
+    storage.setMaximumChunkSize(20);
+    storage.setMaximumChunkAge(60000);
+    storage.startProcessing(key);
+
+    storage.addInput(key, "a");
+    storage.addInput(key, "");
+    storage.addInput(key, "b");
+    storage.addError(key, "c");
+    storage.addError(key, "d");
+    storage.addInput(key, "0123456789");
+    storage.addInput(key, "0123456789");
+    storage.addInput(key, "x");
+    storage.endProcessing(key);
+
+    Assertions.assertEquals("ab", storage.readServerProgress(key).getData());
+    SystemExecuterProgressData data = storage.readServerProgress(key);
+    Assertions.assertEquals("cd", data.getData());
+    Assertions.assertTrue(data.isError());
+    Assertions.assertEquals("01234567890123456789", storage.readServerProgress(key).getData());
+    Assertions.assertEquals("x", storage.readServerProgress(key).getData());
+    Assertions.assertTrue(storage.readServerProgress(key).hasEnded());
+
+    // a reader takes the pending chunk, the merging does not delay the output
+    storage.startProcessing(key);
+    storage.addInput(key, "first");
+    Assertions.assertEquals("first", storage.readServerProgress(key).getData());
+    Assertions.assertNull(storage.readServerProgress(key));
+
+    // the age of a chunk is limited
+    storage.setMaximumChunkAge(10);
+    storage.startProcessing(key);
+    storage.addInput(key, "old");
+    Thread.sleep(50);
+    storage.addInput(key, "new");
+    Assertions.assertEquals("old", storage.readServerProgress(key).getData());
+    Assertions.assertEquals("new", storage.readServerProgress(key).getData());
+  }
+
+
+  /**
+   * Test the long poll blocks until data arrives and drains all available data in one batch
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void longPoll() throws Exception {
+    storage.setMaximumChunkSize(0);
+    storage.startProcessing(key);
+
+    long startTime = System.currentTimeMillis();
+    Assertions.assertTrue(storage.readServerProgress(key, 10, 100).isEmpty());
+    Assertions.assertTrue(System.currentTimeMillis() - startTime >= 90);
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          return;
+        }
+
+        storage.addInput(key, "data");
+      }
+    };
+    writer.start();
+
+    startTime = System.currentTimeMillis();
+    List<SystemExecuterProgressData> dataList = storage.readServerProgress(key, 10, 10000);
+    Assertions.assertEquals(1, dataList.size());
+    Assertions.assertEquals("data", dataList.get(0).getData());
+    Assertions.assertTrue(System.currentTimeMillis() - startTime < 5000);
+    writer.join();
+
+    for (int i = 0; i < 5; i++) {
+      storage.addInput(key, "line " + i);
+    }
+
+    storage.endProcessing(key);
+    Assertions.assertEquals(3, storage.readServerProgress(key, 3, 0).size());
+    dataList = storage.readServerProgress(key, 0, 1000);
+    Assertions.assertEquals(3, dataList.size());
+    Assertions.assertTrue(dataList.get(2).hasEnded());
+    Assertions.assertTrue(storage.readServerProgress(key, 0, 100).isEmpty());
+  }
+
+
+  /**
+   * Test the progress is pushed to the subscribers as far as they have demand
+   */
+  @Test
+  public void subscribe() {
+    storage.setMaximumChunkSize(0);
+    storage.startProcessing(key);
+
+    final List<String> fastList = new ArrayList<String>();
+    final List<String> slowList = new ArrayList<String>();
+    final ISystemExecuterProgressSubscription[] slowSubscription = new ISystemExecuterProgressSubscription[1];
+    storage.subscribe(key, new ISystemExecuterProgressSubscriber() {
+      @Override
+      public void onSubscribe(ISystemExecuterProgressSubscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+
+      @Override
+      public void onNext(SystemExecuterProgressData data) {
+        fastList.add(data.getData());
+      }
+
+
+      @Override
+      public void onError(Throwable throwable) {
+        fastList.add("error");
+      }
+
+
+      @Override
+      public void onComplete() {
+        fastList.add("complete");
+      }
+    });
+
+    storage.subscribe(key, new ISystemExecuterProgressSubscriber() {
+      @Override
+      public void onSubscribe(ISystemExecuterProgressSubscription subscription) {
+        slowSubscription[0] = subscription;
+        subscription.request(1);
+      }
+
+
+      @Override
+      public void onNext(SystemExecuterProgressData data) {
+        slowList.add(data.getData());
+      }
+
+
+      @Override
+      public void onError(Throwable throwable) {
+        slowList.add("error");
+      }
+
+
+      @Override
+      public void onComplete() {
+        slowList.add("complete");
+      }
+    });
+
+    storage.addInput(key, "first");
+    storage.addError(key, "second");
+    storage.addInput(key, "third");
+    Assertions.assertEquals(Arrays.asList("first"), fastList);
+    Assertions.assertEquals(Arrays.asList("first"), slowList);
+
+    // the slowest subscriber paces the delivery
+    slowSubscription[0].request(2);
+    Assertions.assertEquals(Arrays.asList("first", "second", "third"), fastList);
+    Assertions.assertEquals(Arrays.asList("first", "second", "third"), slowList);
+
+    // the end is delivered without demand
+    storage.endProcessing(key);
+    Assertions.assertEquals(Arrays.asList("first", "second", "third", "complete"), slowList);
+    Assertions.assertEquals("complete", fastList.get(fastList.size() - 1));
+    Assertions.assertFalse(storage.exitProcessing(key));
+
+    final List<Throwable> errorList = new ArrayList<Throwable>();
+    storage.subscribe(key, new ISystemExecuterProgressSubscriber() {
+      @Override
+      public void onSubscribe(ISystemExecuterProgressSubscription subscription) {
+        subscription.request(1);
+      }
+
+
+      @Override
+      public void onNext(SystemExecuterProgressData data) {
+        Assertions.fail("Unexpected data");
+      }
+
+
+      @Override
+      public void onError(Throwable throwable) {
+        errorList.add(throwable);
+      }
+
+
+      @Override
+      public void onComplete() {
+        Assertions.fail("Unexpected completion");
+      }
+    });
+    Assertions.assertEquals(1, errorList.size());
+  }
+
+
+  /**
+   * Test readers at an offset follow the same execution independently and the retained progress survives the end
+   */
+  @Test
+  public void readAtOffset() {
+    Assertions.assertNull(storage.read(key, 0, 100));
+
+    storage.setRetentionPolicy(ProgressRetentionPolicy.RETAIN);
+    storage.startProcessing(key);
+    for (int i = 0; i < 10; i++) {
+      storage.addInput(key, "line " + i);
+    }
+
+    SystemExecuterProgressRange first = storage.read(key, 0, 12);
+    Assertions.assertEquals(2, first.getDataList().size());
+    Assertions.assertEquals(2, first.getNextOffset());
+    SystemExecuterProgressRange second = storage.read(key, 0, 1000);
+    Assertions.assertEquals(10, second.getDataList().size());
+    Assertions.assertEquals("line 2", storage.read(key, first.getNextOffset(), 1).getDataList().get(0).getData());
+
+    storage.addError(key, "failed");
+    storage.endProcessing(key);
+    SystemExecuterProgressRange range = storage.read(key, second.getNextOffset(), 1000);
+    Assertions.assertEquals(2, range.getDataList().size());
+    Assertions.assertTrue(range.getDataList().get(0).isError());
+    Assertions.assertTrue(range.hasEnded());
+    Assertions.assertTrue(storage.read(key, range.getNextOffset(), 1000).getDataList().isEmpty());
+    Assertions.assertNull(storage.read(key, range.getNextOffset() + 1, 1000));
+
+    // the consuming reader does not remove the retained progress
+    List<SystemExecuterProgressData> dataList = storage.readServerProgress(key, 0, 0);
+    Assertions.assertTrue(dataList.get(dataList.size() - 1).hasEnded());
+    Assertions.assertFalse(storage.exitProcessing(key));
+    Assertions.assertNull(storage.readServerProgress(key));
+    Assertions.assertEquals(12, storage.read(key, 0, 1000).getDataList().size());
+
+    Assertions.assertTrue(storage.removeProcessing(key));
+    Assertions.assertNull(storage.read(key, 0, 1000));
+  }
+
+
+  /**
+   * Test the retained progress is held once and a reader at an offset releases a writer of a bounded buffer
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void retainWithBoundedBuffer() throws Exception {
+    storage.setRetentionPolicy(ProgressRetentionPolicy.RETAIN);
+    storage.setMaximumBufferSize(100);
+    storage.startProcessing(key);
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 100; i++) {
+          storage.addInput(key, "0123456789");
+        }
+
+        storage.endProcessing(key);
+      }
+    };
+    writer.start();
+
+    int size = 0;
+    long offset = 0;
+    boolean ended = false;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!ended && System.currentTimeMillis() < deadline) {
+      Assertions.assertTrue(storage.getBufferedSize(key) <= 100);
+      SystemExecuterProgressRange range = storage.read(key, offset, 25);
+      for (SystemExecuterProgressData data : range.getDataList()) {
+        if (!data.hasEnded()) {
+          size += data.getData().length();
+        }
+      }
+
+      offset = range.getNextOffset();
+      ended = range.hasEnded();
+    }
+
+    writer.join(10000);
+    Assertions.assertFalse(writer.isAlive());
+    Assertions.assertTrue(ended);
+    Assertions.assertEquals(1000, size);
+    Assertions.assertEquals(0, storage.getMemorySize());
+
+    // the consuming reader follows the history and merges its chunks
+    List<SystemExecuterProgressData> dataList = storage.readServerProgress(key, 0, 0);
+    Assertions.assertEquals(2, dataList.size());
+    Assertions.assertEquals(1000, dataList.get(0).getData().length());
+    Assertions.assertTrue(dataList.get(dataList.size() - 1).hasEnded());
+    Assertions.assertEquals(101, storage.read(key, 0, 100000).getDataList().size());
+  }
+
+
+  /**
+   * Test the sweeper removes the idle ended executions and the least recently used ones and trims the retained progress
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void sweep() throws Exception {
+    storage.setRetentionPolicy(ProgressRetentionPolicy.RETAIN);
+    storage.startProcessing(key);
+    for (int i = 0; i < 10; i++) {
+      storage.addInput(key, "0123456789");
+    }
+
+    storage.setMaximumRetainedSize(35);
+    storage.sweep();
+    SystemExecuterProgressRange range = storage.read(key, 0, 1000);
+    Assertions.assertEquals(7, range.getOffset());
+    Assertions.assertEquals(3, range.getDataList().size());
+    Assertions.assertEquals(70, storage.getEvictedSize());
+
+    // running executions are never removed
+    storage.setMaximumIdleTime(10);
+    Thread.sleep(50);
+    storage.sweep();
+    Assertions.assertTrue(storage.exitProcessing(key));
+    Assertions.assertTrue(storage.exitProcessing(otherKey));
+
+    storage.endProcessing(key);
+    storage.endProcessing(otherKey);
+    Thread.sleep(50);
+    storage.sweep();
+    Assertions.assertEquals(0, storage.getNumberOfExecutions());
+    Assertions.assertEquals(2, storage.getNumberOfExpirations());
+
+    storage.setMaximumIdleTime(0);
+    storage.setMaximumNumberOfExecutions(2);
+    for (long i = 0; i < 4; i++) {
+      SystemExecuterProgressKey k = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 10 + i);
+      storage.startProcessing(k);
+      storage.endProcessing(k);
+      Thread.sleep(5);
+    }
+
+    SystemExecuterProgressKey running = new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 20L);
+    storage.startProcessing(running);
+    storage.read(new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 10L), 0, 100);
+    storage.sweep();
+    Assertions.assertEquals(2, storage.getNumberOfExecutions());
+    Assertions.assertEquals(3, storage.getNumberOfEvictions());
+    Assertions.assertTrue(storage.exitProcessing(running));
+    Assertions.assertNotNull(storage.read(new SystemExecuterProgressKey(new NodeKey("localhost", "dev", "test"), 10L), 0, 100));
+  }
+
+
+  /**
+   * Test the sweeper releases a writer which is blocked by a full buffer nobody reads
+   *
+   * @throws Exception in case of an error
+   */
+  @Test
+  public void sweepBlockedWriter() throws Exception {
+    storage.setMaximumChunkSize(0);
+    storage.setMaximumBufferSize(10);
+    storage.startProcessing(key);
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        for (int i = 0; i < 5; i++) {
+          storage.addInput(key, "0123456789");
+        }
+
+        storage.endProcessing(key);
+      }
+    };
+    writer.start();
+
+    storage.setMaximumIdleTime(50);
+    storage.addInput(otherKey, "0123456789");
+    Thread.sleep(100);
+    Assertions.assertTrue(writer.isAlive());
+    storage.sweep();
+    writer.join(10000);
+
+    // a running execution without blocked writer is kept
+    Assertions.assertTrue(storage.exitProcessing(otherKey));
+    Assertions.assertFalse(writer.isAlive());
+    Assertions.assertFalse(storage.exitProcessing(key));
+    Assertions.assertEquals(1, storage.getNumberOfExpirations());
+    Assertions.assertEquals(0, storage.getBufferedSize(key));
+  }
+}